@@ -0,0 +1,70 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.benchmarks;
+
+import org.dmonix.servlet.GsonCodec;
+import org.dmonix.servlet.JsonCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Measures the raw {@link JsonCodec} without any servlet plumbing.
+ * @author Peter Nerg
+ */
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    @Param({"1", "100"})
+    public int listSize;
+
+    private final JsonCodec codec = new GsonCodec();
+    private final InMemoryResponse sink = new InMemoryResponse();
+    private List<Payloads.Item> items;
+    private byte[] json;
+
+    @Setup
+    public void setup() {
+        items = Payloads.items(listSize);
+        json = Payloads.itemArrayJson(listSize);
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return codec.toJson(items);
+    }
+
+    @Benchmark
+    public long toJsonWriter() throws IOException {
+        sink.reset();
+        codec.toJson(items, new OutputStreamWriter(sink.getOutputStream(), StandardCharsets.UTF_8));
+        return sink.bytesWritten();
+    }
+
+    @Benchmark
+    public Payloads.Item[] fromJson() throws IOException {
+        return codec.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), Payloads.Item[].class);
+    }
+}
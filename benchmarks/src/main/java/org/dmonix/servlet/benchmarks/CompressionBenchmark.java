@@ -0,0 +1,88 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.benchmarks;
+
+import org.dmonix.servlet.JSONServlet;
+import org.dmonix.servlet.Request;
+import org.dmonix.servlet.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Measures the cost of compressing a json list response per compression level. <br>
+ * The compressed size is printed at the end of each trial to weigh latency against compression ratio,
+ * level <tt>0</tt> means compression disabled.
+ * @author Peter Nerg
+ */
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+    /**
+     * Servlet responding with a list of items.
+     */
+    public static final class ListServlet extends JSONServlet {
+        private static final long serialVersionUID = 1L;
+        private List<Payloads.Item> items;
+
+        @Override
+        protected Response get(Request request) {
+            return StreamedObjectResponse(items);
+        }
+    }
+
+    @Param({"0", "1", "3", "6", "9"})
+    public int level;
+
+    @Param({"1000"})
+    public int listSize;
+
+    private final ListServlet servlet = new ListServlet();
+    private final InMemoryRequest request = new InMemoryRequest("GET", "/items").header("Accept-Encoding", "gzip");
+    private final InMemoryResponse response = new InMemoryResponse();
+
+    @Setup
+    public void setup() throws ServletException {
+        servlet.items = Payloads.items(listSize);
+        InMemoryServletConfig config = new InMemoryServletConfig();
+        if (level > 0) {
+            config.param(JSONServlet.PARAM_COMPRESSION, "true").param(JSONServlet.PARAM_COMPRESSION_LEVEL, String.valueOf(level));
+        }
+        servlet.init(config);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws ServletException, IOException {
+        System.out.println();
+        System.out.println("level " + level + ": " + get() + " bytes");
+        servlet.destroy();
+    }
+
+    @Benchmark
+    public long get() throws ServletException, IOException {
+        response.reset();
+        servlet.service(request, response);
+        return response.bytesWritten();
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.benchmarks;
+
+import javascalautils.Try;
+import org.dmonix.servlet.JSONServlet;
+import org.dmonix.servlet.Request;
+import org.dmonix.servlet.Response;
+import org.dmonix.servlet.RoutingServlet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+
+import static javascalautils.TryCompanion.Failure;
+import static javascalautils.TryCompanion.Success;
+
+/**
+ * Measures the full dispatch path through {@link JSONServlet#service(javax.servlet.ServletRequest, javax.servlet.ServletResponse)}.
+ * @author Peter Nerg
+ */
+@State(Scope.Thread)
+public class DispatchBenchmark {
+
+    /**
+     * Servlet implementing GET with a small object response and POST with a failing handler.
+     */
+    public static final class ItemServlet extends JSONServlet {
+        private static final long serialVersionUID = 1L;
+        private final Payloads.Item item = Payloads.item();
+
+        @Override
+        protected Response get(Request request) {
+            return ObjectResponse(item);
+        }
+
+        @Override
+        protected Try<Response> postWithTry(Request request) {
+            return Failure(new IllegalStateException("Failed to process request"));
+        }
+    }
+
+    /**
+     * Front controller routing a handful of resources, the benchmarked route being the deepest one.
+     */
+    public static final class RoutedServlet extends RoutingServlet {
+        private static final long serialVersionUID = 1L;
+        private final Payloads.Item item = Payloads.item();
+
+        public RoutedServlet() {
+            onGet("/users", request -> Success(ObjectResponse(item)));
+            onGet("/users/{id}", request -> Success(ObjectResponse(item)));
+            onGet("/users/me/settings", request -> Success(ObjectResponse(item)));
+            onGet("/users/{id}/orders", request -> Success(ObjectResponse(item)));
+            onGet("/users/{id}/orders/{oid}", request -> Success(request.pathParam("oid").isDefined() ? ObjectResponse(item) : EmptyResponse(404)));
+            onGet("/orders/{oid}", request -> Success(ObjectResponse(item)));
+        }
+    }
+
+    private final ItemServlet servlet = new ItemServlet();
+    private final RoutedServlet routedServlet = new RoutedServlet();
+    private final ItemServlet meteredServlet = new ItemServlet();
+    private final InMemoryRequest get = new InMemoryRequest("GET", "/item");
+    private final InMemoryRequest getRouted = new InMemoryRequest("GET", "/users/42/orders/7");
+    private final InMemoryRequest post = new InMemoryRequest("POST", "/item", Payloads.itemJson());
+    private final InMemoryRequest put = new InMemoryRequest("PUT", "/item", Payloads.itemJson());
+    private final InMemoryRequest options = new InMemoryRequest("OPTIONS", "/item");
+    private final InMemoryResponse response = new InMemoryResponse();
+
+    @Setup
+    public void setup() throws ServletException {
+        servlet.init(new InMemoryServletConfig());
+        routedServlet.init(new InMemoryServletConfig());
+        meteredServlet.init(new InMemoryServletConfig().param(JSONServlet.PARAM_METRICS, "true"));
+    }
+
+    @Benchmark
+    public int getOk() throws ServletException, IOException {
+        return service(get);
+    }
+
+    @Benchmark
+    public int getOkMetered() throws ServletException, IOException {
+        return service(meteredServlet, get);
+    }
+
+    @Benchmark
+    public int getRouted() throws ServletException, IOException {
+        return service(routedServlet, getRouted);
+    }
+
+    @Benchmark
+    public int postFailure() throws ServletException, IOException {
+        return service(post);
+    }
+
+    @Benchmark
+    public int putNotAllowed() throws ServletException, IOException {
+        return service(put);
+    }
+
+    @Benchmark
+    public int options() throws ServletException, IOException {
+        return service(options);
+    }
+
+    private int service(InMemoryRequest request) throws ServletException, IOException {
+        return service(servlet, request);
+    }
+
+    private int service(JSONServlet target, InMemoryRequest request) throws ServletException, IOException {
+        response.reset();
+        target.service(request, response);
+        return response.getStatus();
+    }
+}
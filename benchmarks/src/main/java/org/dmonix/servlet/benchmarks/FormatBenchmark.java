@@ -0,0 +1,91 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.benchmarks;
+
+import javascalautils.Try;
+import org.dmonix.servlet.FormatCodec;
+import org.dmonix.servlet.Request;
+import org.dmonix.servlet.Response;
+import org.dmonix.servlet.ResponseBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Compares the payload size and the cost of encoding/decoding per negotiated format. <br>
+ * Only json is built in, other formats are measured by putting a {@link FormatCodec} registered as a service on the
+ * class path and selecting it with e.g. <tt>-p format=application/cbor</tt>.
+ * The size of the payload per format is printed when the trial is set up.
+ * @author Peter Nerg
+ */
+@State(Scope.Thread)
+public class FormatBenchmark implements ResponseBuilder {
+
+    @Param({"application/json"})
+    public String format;
+
+    @Param({"1", "100"})
+    public int listSize;
+
+    private final InMemoryResponse response = new InMemoryResponse();
+    private List<Payloads.Item> items;
+    private Request negotiating;
+    private Request parsing;
+
+    @Setup
+    public void setup() throws IOException {
+        items = Payloads.items(listSize);
+        byte[] payload = encode(items);
+        System.out.println(format + " payload for " + listSize + " items: " + payload.length + " bytes");
+        negotiating = new Request(new InMemoryRequest("GET", null).header("Accept", format));
+        parsing = new Request(new InMemoryRequest("POST", null, payload).header("Content-Type", format));
+    }
+
+    @Benchmark
+    public long encode() throws IOException {
+        response.reset();
+        Response resp = NegotiatedResponse(negotiating, items);
+        writeResponse(response, resp);
+        return response.bytesWritten();
+    }
+
+    @Benchmark
+    public Try<Payloads.Item[]> decode() {
+        return parsing.fromBody(Payloads.Item[].class);
+    }
+
+    private byte[] encode(Object object) throws IOException {
+        if (format.equals("application/json")) {
+            return jsonCodec().toJson(object).getBytes(StandardCharsets.UTF_8);
+        }
+        for (FormatCodec codec : ServiceLoader.load(FormatCodec.class)) {
+            if (codec.mediaType().equalsIgnoreCase(format)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                codec.encode(object, out);
+                return out.toByteArray();
+            }
+        }
+        throw new IllegalArgumentException("No codec registered for [" + format + "]");
+    }
+}
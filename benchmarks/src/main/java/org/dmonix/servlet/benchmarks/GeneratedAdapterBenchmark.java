@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.benchmarks;
+
+import org.dmonix.servlet.GsonCodec;
+import org.dmonix.servlet.JsonCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Compares the reflection based Gson binding with the adapters generated for <tt>@JsonCodec</tt> annotated DTOs. <br>
+ * Both DTOs have the same fields and render the same json.
+ * @author Peter Nerg
+ */
+@State(Scope.Thread)
+public class GeneratedAdapterBenchmark {
+
+    @Param({"1", "100"})
+    public int listSize;
+
+    private final JsonCodec codec = new GsonCodec();
+    private List<Payloads.Item> items;
+    private List<Payloads.GeneratedItem> generatedItems;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws ClassNotFoundException {
+        //fail fast if the processor didn't run
+        Class.forName(Payloads.class.getName() + "_GeneratedItem_TypeAdapterFactory");
+        items = Payloads.items(listSize);
+        generatedItems = Payloads.generatedItems(listSize);
+        json = Payloads.itemArrayJson(listSize);
+    }
+
+    @Benchmark
+    public String reflectiveToJson() {
+        return codec.toJson(items);
+    }
+
+    @Benchmark
+    public String generatedToJson() {
+        return codec.toJson(generatedItems);
+    }
+
+    @Benchmark
+    public Payloads.Item[] reflectiveFromJson() throws IOException {
+        return codec.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), Payloads.Item[].class);
+    }
+
+    @Benchmark
+    public Payloads.GeneratedItem[] generatedFromJson() throws IOException {
+        return codec.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), Payloads.GeneratedItem[].class);
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.benchmarks;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory {@link ServletConfig} used to initialize servlets without a container.
+ * @author Peter Nerg
+ */
+public final class InMemoryServletConfig implements ServletConfig {
+    private final Map<String, String> params = new HashMap<>();
+
+    /**
+     * Sets an init parameter.
+     * @param name The name
+     * @param value The value
+     * @return This config
+     */
+    public InMemoryServletConfig param(String name, String value) {
+        params.put(name, value);
+        return this;
+    }
+
+    @Override
+    public String getServletName() {
+        return "benchmark";
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return null;
+    }
+
+    @Override
+    public String getInitParameter(String name) {
+        return params.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getInitParameterNames() {
+        return Collections.enumeration(params.keySet());
+    }
+}
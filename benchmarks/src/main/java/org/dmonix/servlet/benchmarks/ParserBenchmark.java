@@ -0,0 +1,65 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.benchmarks;
+
+import javascalautils.Try;
+import org.dmonix.servlet.Request;
+import org.dmonix.servlet.benchmarks.Payloads.Item;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.stream.Stream;
+
+/**
+ * Measures parsing of request bodies through {@link Request}.
+ * @author Peter Nerg
+ */
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    @Param({"10", "1000"})
+    public int arraySize;
+
+    private Request single;
+    private Request array;
+
+    @Setup
+    public void setup() {
+        single = new Request(new InMemoryRequest("POST", null, Payloads.itemJson()));
+        array = new Request(new InMemoryRequest("POST", null, Payloads.itemArrayJson(arraySize)));
+    }
+
+    @Benchmark
+    public Try<Item> fromJson() {
+        return single.fromJson(Item.class);
+    }
+
+    @Benchmark
+    public Try<Item[]> fromJsonArray() {
+        return array.fromJson(Item[].class);
+    }
+
+    @Benchmark
+    public void streamJsonArray(Blackhole bh) throws Throwable {
+        try (Stream<Item> stream = array.streamJsonArray(Item.class).get()) {
+            stream.forEach(bh::consume);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.benchmarks;
+
+import org.dmonix.servlet.processor.JsonCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data types and pre-rendered payloads shared by the benchmarks.
+ * @author Peter Nerg
+ */
+public final class Payloads {
+
+    /**
+     * A typical small DTO.
+     */
+    public static final class Item {
+        public final String name;
+        public final int id;
+        public final double price;
+        public final boolean active;
+
+        public Item(String name, int id, double price, boolean active) {
+            this.name = name;
+            this.id = id;
+            this.price = price;
+            this.active = active;
+        }
+    }
+
+    /**
+     * The same DTO as {@link Item} but with a generated type adapter.
+     */
+    @JsonCodec
+    public static final class GeneratedItem {
+        public final String name;
+        public final int id;
+        public final double price;
+        public final boolean active;
+
+        public GeneratedItem(String name, int id, double price, boolean active) {
+            this.name = name;
+            this.id = id;
+            this.price = price;
+            this.active = active;
+        }
+    }
+
+    private Payloads() {
+    }
+
+    /**
+     * Create a single item.
+     * @return The item
+     */
+    public static Item item() {
+        return new Item("item-name", 666, 42.5d, true);
+    }
+
+    /**
+     * Create a list of items.
+     * @param size The number of items
+     * @return The items
+     */
+    public static List<Item> items(int size) {
+        List<Item> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new Item("item-" + i, i, i * 1.5d, (i & 1) == 0));
+        }
+        return items;
+    }
+
+    /**
+     * Create a list of items with a generated type adapter.
+     * @param size The number of items
+     * @return The items
+     */
+    public static List<GeneratedItem> generatedItems(int size) {
+        List<GeneratedItem> items = new ArrayList<>(size);
+        for (Item item : items(size)) {
+            items.add(new GeneratedItem(item.name, item.id, item.price, item.active));
+        }
+        return items;
+    }
+
+    /**
+     * Render a single item as json bytes.
+     * @return The json
+     */
+    public static byte[] itemJson() {
+        return "{\"name\":\"item-name\",\"id\":666,\"price\":42.5,\"active\":true}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Render a json array of items as bytes.
+     * @param size The number of items
+     * @return The json
+     */
+    public static byte[] itemArrayJson(int size) {
+        StringBuilder sb = new StringBuilder(size * 64).append('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"name\":\"item-").append(i).append("\",\"id\":").append(i)
+                    .append(",\"price\":").append(i * 1.5d).append(",\"active\":").append((i & 1) == 0).append('}');
+        }
+        return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
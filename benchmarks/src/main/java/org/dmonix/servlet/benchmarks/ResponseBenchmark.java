@@ -0,0 +1,82 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.benchmarks;
+
+import org.dmonix.servlet.Response;
+import org.dmonix.servlet.ResponseBuilder;
+import org.dmonix.servlet.ResponseTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Measures rendering and writing of responses through {@link ResponseBuilder}.
+ * @author Peter Nerg
+ */
+@State(Scope.Thread)
+public class ResponseBenchmark implements ResponseBuilder {
+
+    @Param({"1", "100"})
+    public int listSize;
+
+    private final InMemoryResponse response = new InMemoryResponse();
+    private final ResponseTemplate template = ResponseTemplate.of(404, "No such item");
+    private List<Payloads.Item> items;
+    private byte[] encodedItems;
+
+    @Setup
+    public void setup() {
+        items = Payloads.items(listSize);
+        encodedItems = jsonCodec().toJson(items).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long objectResponse() throws IOException {
+        return write(ObjectResponse(items));
+    }
+
+    @Benchmark
+    public long streamedObjectResponse() throws IOException {
+        return write(StreamedObjectResponse(items));
+    }
+
+    @Benchmark
+    public long bytesResponse() throws IOException {
+        return write(BytesResponse(encodedItems, "application/json;charset=UTF-8"));
+    }
+
+    @Benchmark
+    public long errorResponse() throws IOException {
+        return write(ErrorResponseNotFound("No such item"));
+    }
+
+    @Benchmark
+    public long templateResponse() throws IOException {
+        return write(template);
+    }
+
+    private long write(Response resp) throws IOException {
+        response.reset();
+        writeResponse(response, resp);
+        return response.bytesWritten();
+    }
+}
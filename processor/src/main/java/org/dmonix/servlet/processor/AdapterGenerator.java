@@ -0,0 +1,487 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the source of a reflection free <tt>TypeAdapterFactory</tt> for a single class annotated with {@link JsonCodec}. <br>
+ * The generated adapter reads/writes the fields directly, primitives, their boxed counterparts and strings are written
+ * straight onto the <tt>JsonWriter</tt>/read from the <tt>JsonReader</tt>.
+ * Any other field type is delegated to the adapter Gson provides for the type, resolved once per adapter.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class AdapterGenerator {
+
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+
+    private static final String FACTORY_SUFFIX = "_TypeAdapterFactory";
+
+    /**
+     * A serialized field of the class.
+     */
+    private static final class Property {
+        private final VariableElement field;
+        /** The json name followed by any alternate names accepted when parsing.*/
+        private final List<String> jsonNames;
+        /** Expression writing the value, <tt>null</tt> if delegated to a Gson adapter.*/
+        private final String write;
+        /** Expression reading the value, <tt>null</tt> if delegated to a Gson adapter.*/
+        private final String read;
+
+        private Property(VariableElement field, List<String> jsonNames, String write, String read) {
+            this.field = field;
+            this.jsonNames = jsonNames;
+            this.write = write;
+            this.read = read;
+        }
+
+        private boolean isDelegated() {
+            return write == null;
+        }
+
+        private TypeMirror type() {
+            return field.asType();
+        }
+
+        private String name() {
+            return field.getSimpleName().toString();
+        }
+    }
+
+    private final Elements elements;
+    private final Types types;
+    private final ProcessingEnvironment env;
+    private final TypeElement type;
+    private final List<Property> properties = new ArrayList<>();
+    /** If the fields are assigned on an instance created with the no-arg constructor, else all fields are passed to the constructor.*/
+    private final boolean assignFields;
+
+    /**
+     * Creates an instance.
+     * @param env The processing environment
+     * @param element The annotated element
+     * @throws InvalidTypeException If the element can't be handled by generated code
+     */
+    AdapterGenerator(ProcessingEnvironment env, Element element) throws InvalidTypeException {
+        this.env = env;
+        this.elements = env.getElementUtils();
+        this.types = env.getTypeUtils();
+        if (element.getKind() != ElementKind.CLASS) {
+            throw new InvalidTypeException(element, "@JsonCodec is only supported on classes");
+        }
+        this.type = (TypeElement) element;
+        validateType();
+        Set<String> jsonNames = new HashSet<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            Property property = property(field);
+            for (String name : property.jsonNames) {
+                if (!jsonNames.add(name)) {
+                    throw new InvalidTypeException(field, "Multiple fields are named [" + name + "] in json");
+                }
+            }
+            properties.add(property);
+        }
+        this.assignFields = resolveConstruction();
+    }
+
+    /**
+     * Generates the factory source.
+     * @return The fully qualified name of the generated factory
+     * @throws IOException If the source couldn't be written
+     */
+    String generate() throws IOException {
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String factoryName = type.getQualifiedName().toString().substring(packageName.isEmpty() ? 0 : packageName.length() + 1).replace('.', '_') + FACTORY_SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? factoryName : packageName + "." + factoryName;
+        JavaFileObject file = env.getFiler().createSourceFile(qualifiedName, type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(source(packageName, factoryName));
+        }
+        return qualifiedName;
+    }
+
+    private void validateType() throws InvalidTypeException {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new InvalidTypeException(type, "@JsonCodec is not supported on abstract classes");
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            throw new InvalidTypeException(type, "@JsonCodec is not supported on generic classes");
+        }
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            throw new InvalidTypeException(type, "@JsonCodec is not supported on local classes");
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            throw new InvalidTypeException(type, "@JsonCodec is not supported on inner classes, the class must be static");
+        }
+        for (Element enclosing = type; enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new InvalidTypeException(type, "@JsonCodec is not supported on private classes");
+            }
+        }
+        TypeMirror superclass = type.getSuperclass();
+        if (!(superclass instanceof DeclaredType) || !((TypeElement) ((DeclaredType) superclass).asElement()).getQualifiedName().contentEquals(Object.class.getName())) {
+            throw new InvalidTypeException(type, "@JsonCodec is only supported on classes extending Object");
+        }
+    }
+
+    private Property property(VariableElement field) throws InvalidTypeException {
+        if (field.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new InvalidTypeException(field, "Fields of a @JsonCodec class must not be private");
+        }
+        TypeMirror fieldType = field.asType();
+        if (fieldType.getKind() == TypeKind.ERROR) {
+            throw new InvalidTypeException(field, "Unresolved type [" + fieldType + "]");
+        }
+        if (containsTypeVariable(fieldType)) {
+            throw new InvalidTypeException(field, "Fields of a @JsonCodec class must not use type variables");
+        }
+        List<String> jsonNames = jsonNames(field);
+        if (fieldType.getKind().isPrimitive()) {
+            return new Property(field, jsonNames, primitiveWrite(fieldType.getKind()), primitiveRead(fieldType.getKind()));
+        }
+        if (isType(fieldType, String.class)) {
+            return new Property(field, jsonNames, "out.value(%s)", "in.nextString()");
+        }
+        TypeKind unboxed = unboxed(fieldType);
+        if (unboxed != null && unboxed != TypeKind.CHAR) {
+            //the boxed Boolean/Number overloads of JsonWriter.value handle null
+            return new Property(field, jsonNames, "out.value(%s)", primitiveRead(unboxed));
+        }
+        return new Property(field, jsonNames, null, null);
+    }
+
+    private static String primitiveWrite(TypeKind kind) {
+        switch (kind) {
+            case FLOAT:
+                //written as Number to get the same float rendering as Gson
+                return "out.value(Float.valueOf(%s))";
+            case CHAR:
+                return "out.value(String.valueOf(%s))";
+            default:
+                return "out.value(%s)";
+        }
+    }
+
+    private static String primitiveRead(TypeKind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return "in.nextBoolean()";
+            case BYTE:
+                return "(byte) in.nextInt()";
+            case SHORT:
+                return "(short) in.nextInt()";
+            case INT:
+                return "in.nextInt()";
+            case LONG:
+                return "in.nextLong()";
+            case FLOAT:
+                return "(float) in.nextDouble()";
+            case DOUBLE:
+                return "in.nextDouble()";
+            case CHAR:
+                return "in.nextString().charAt(0)";
+            default:
+                throw new IllegalArgumentException("Not a primitive [" + kind + "]");
+        }
+    }
+
+    private TypeKind unboxed(TypeMirror mirror) {
+        try {
+            return types.unboxedType(mirror).getKind();
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private boolean isType(TypeMirror mirror, Class<?> clazz) {
+        TypeElement element = elements.getTypeElement(clazz.getCanonicalName());
+        return element != null && types.isSameType(mirror, element.asType());
+    }
+
+    private static boolean containsTypeVariable(TypeMirror mirror) {
+        switch (mirror.getKind()) {
+            case TYPEVAR:
+                return true;
+            case ARRAY:
+                return containsTypeVariable(((ArrayType) mirror).getComponentType());
+            case WILDCARD:
+                WildcardType wildcard = (WildcardType) mirror;
+                return (wildcard.getExtendsBound() != null && containsTypeVariable(wildcard.getExtendsBound()))
+                        || (wildcard.getSuperBound() != null && containsTypeVariable(wildcard.getSuperBound()));
+            case DECLARED:
+                for (TypeMirror argument : ((DeclaredType) mirror).getTypeArguments()) {
+                    if (containsTypeVariable(argument)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Get the json names of the field, honoring <tt>@SerializedName</tt> including its alternate names.
+     * @param field The field
+     * @return The json name followed by any alternate names
+     */
+    private static List<String> jsonNames(VariableElement field) {
+        List<String> names = new ArrayList<>();
+        for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+            if (!((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(SERIALIZED_NAME)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+                String attribute = entry.getKey().getSimpleName().toString();
+                if ("value".equals(attribute)) {
+                    names.add(0, (String) entry.getValue().getValue());
+                } else if ("alternate".equals(attribute)) {
+                    for (Object alternate : (List<?>) entry.getValue().getValue()) {
+                        names.add((String) ((AnnotationValue) alternate).getValue());
+                    }
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            names.add(field.getSimpleName().toString());
+        }
+        return names;
+    }
+
+    /**
+     * Decides how instances are created when parsing.
+     * @return <tt>true</tt> if the fields are assigned on an instance created by the no-arg constructor
+     * @throws InvalidTypeException If the class has no suitable constructor
+     */
+    private boolean resolveConstruction() throws InvalidTypeException {
+        boolean finalFields = properties.stream().anyMatch(property -> property.field.getModifiers().contains(Modifier.FINAL));
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (!constructor.getModifiers().contains(Modifier.PRIVATE) && !finalFields && constructor.getParameters().isEmpty()) {
+                return true;
+            }
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (!constructor.getModifiers().contains(Modifier.PRIVATE) && takesAllFields(constructor)) {
+                return false;
+            }
+        }
+        throw new InvalidTypeException(type, "A @JsonCodec class needs either a non-private no-arg constructor and non-final fields or a non-private constructor taking all fields in declaration order");
+    }
+
+    private boolean takesAllFields(ExecutableElement constructor) {
+        List<? extends VariableElement> parameters = constructor.getParameters();
+        if (parameters.size() != properties.size()) {
+            return false;
+        }
+        for (int i = 0; i < parameters.size(); i++) {
+            if (!types.isSameType(parameters.get(i).asType(), properties.get(i).type())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String source(String packageName, String factoryName) {
+        String target = type.getQualifiedName().toString();
+        SourceWriter src = new SourceWriter();
+        if (!packageName.isEmpty()) {
+            src.line("package " + packageName + ";").line();
+        }
+        src.line("/**")
+                .line(" * Reflection free Gson type adapter for {@link " + target + "}.")
+                .line(" * Generated by {@code " + JsonCodecProcessor.class.getName() + "}, do not edit.")
+                .line(" */")
+                .line("public final class " + factoryName + " implements com.google.gson.TypeAdapterFactory {")
+                .line();
+        src.indent().line("@Override")
+                .line("@SuppressWarnings(\"unchecked\")")
+                .line("public <T> com.google.gson.TypeAdapter<T> create(com.google.gson.Gson gson, com.google.gson.reflect.TypeToken<T> type) {")
+                .indent().line("return type.getRawType() == " + target + ".class ? (com.google.gson.TypeAdapter<T>) new Adapter(gson) : null;")
+                .outdent().line("}")
+                .line();
+        src.line("private static final class Adapter extends com.google.gson.TypeAdapter<" + target + "> {").indent();
+        writeDelegates(src);
+        writeWrite(src, target);
+        src.line();
+        writeRead(src, target);
+        src.outdent().line("}");
+        src.outdent().line("}");
+        return src.toString();
+    }
+
+    private void writeDelegates(SourceWriter src) {
+        boolean delegates = false;
+        for (int i = 0; i < properties.size(); i++) {
+            if (properties.get(i).isDelegated()) {
+                src.line("private final com.google.gson.TypeAdapter<" + properties.get(i).type() + "> adapter" + i + ";");
+                delegates = true;
+            }
+        }
+        if (delegates) {
+            src.line();
+        }
+        src.line("private Adapter(com.google.gson.Gson gson) {").indent();
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            if (property.isDelegated()) {
+                TypeMirror erasure = types.erasure(property.type());
+                String token = types.isSameType(erasure, property.type()) ? erasure + ".class" : "new com.google.gson.reflect.TypeToken<" + property.type() + ">() {}";
+                src.line("adapter" + i + " = gson.getAdapter(" + token + ");");
+            }
+        }
+        src.outdent().line("}").line();
+    }
+
+    private void writeWrite(SourceWriter src, String target) {
+        src.line("@Override")
+                .line("public void write(com.google.gson.stream.JsonWriter out, " + target + " value) throws java.io.IOException {").indent()
+                .line("if (value == null) {").indent()
+                .line("out.nullValue();")
+                .line("return;")
+                .outdent().line("}")
+                .line("out.beginObject();");
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            String field = "value." + property.name();
+            src.line("out.name(" + elements.getConstantExpression(property.jsonNames.get(0)) + ");");
+            src.line(property.isDelegated() ? "adapter" + i + ".write(out, " + field + ");" : String.format(property.write, field) + ";");
+        }
+        src.line("out.endObject();")
+                .outdent().line("}");
+    }
+
+    private void writeRead(SourceWriter src, String target) {
+        src.line("@Override")
+                .line("public " + target + " read(com.google.gson.stream.JsonReader in) throws java.io.IOException {").indent()
+                .line("if (in.peek() == com.google.gson.stream.JsonToken.NULL) {").indent()
+                .line("in.nextNull();")
+                .line("return null;")
+                .outdent().line("}");
+        if (assignFields) {
+            src.line(target + " value = new " + target + "();");
+        } else {
+            for (int i = 0; i < properties.size(); i++) {
+                TypeMirror fieldType = properties.get(i).type();
+                src.line(fieldType + " field" + i + " = " + (fieldType.getKind() == TypeKind.BOOLEAN ? "false" : fieldType.getKind().isPrimitive() ? "0" : "null") + ";");
+            }
+        }
+        src.line("in.beginObject();")
+                .line("while (in.hasNext()) {").indent()
+                .line("switch (in.nextName()) {").indent();
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            String field = assignFields ? "value." + property.name() : "field" + i;
+            for (String name : property.jsonNames) {
+                src.line("case " + elements.getConstantExpression(name) + ":");
+            }
+            src.indent();
+            if (property.isDelegated()) {
+                src.line(field + " = adapter" + i + ".read(in);");
+            } else {
+                src.line("if (in.peek() == com.google.gson.stream.JsonToken.NULL) {").indent()
+                        .line("in.nextNull();");
+                if (!property.type().getKind().isPrimitive()) {
+                    src.line(field + " = null;");
+                }
+                src.outdent().line("} else {").indent()
+                        .line(field + " = " + property.read + ";")
+                        .outdent().line("}");
+            }
+            src.line("break;").outdent();
+        }
+        src.line("default:").indent()
+                .line("in.skipValue();")
+                .outdent().outdent().line("}")
+                .outdent().line("}")
+                .line("in.endObject();");
+        if (assignFields) {
+            src.line("return value;");
+        } else {
+            StringBuilder arguments = new StringBuilder();
+            for (int i = 0; i < properties.size(); i++) {
+                arguments.append(i > 0 ? ", " : "").append("field").append(i);
+            }
+            src.line("return new " + target + "(" + arguments + ");");
+        }
+        src.outdent().line("}");
+    }
+
+    /**
+     * Minimal indenting source builder.
+     */
+    private static final class SourceWriter {
+        private final StringBuilder source = new StringBuilder(4096);
+        private int indent;
+
+        private SourceWriter line(String line) {
+            for (int i = 0; i < indent; i++) {
+                source.append("    ");
+            }
+            source.append(line).append('\n');
+            return this;
+        }
+
+        private SourceWriter line() {
+            source.append('\n');
+            return this;
+        }
+
+        private SourceWriter indent() {
+            indent++;
+            return this;
+        }
+
+        private SourceWriter outdent() {
+            indent--;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return source.toString();
+        }
+    }
+}
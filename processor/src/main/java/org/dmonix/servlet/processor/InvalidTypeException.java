@@ -0,0 +1,41 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.processor;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Raised when an annotated type can't be handled by generated code.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class InvalidTypeException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The offending element, the error is reported on this element.*/
+    final transient Element element;
+
+    /**
+     * Creates an instance.
+     * @param element The offending element
+     * @param message The error message
+     */
+    InvalidTypeException(Element element, String message) {
+        super(message);
+        this.element = element;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.processor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a DTO for which a reflection free Gson <tt>TypeAdapter</tt> is generated at compile time. <br>
+ * The {@link JsonCodecProcessor} generates a <tt>TypeAdapterFactory</tt> named <tt>&lt;Type&gt;_TypeAdapterFactory</tt>
+ * in the package of the DTO and registers it under <tt>META-INF/services/com.google.gson.TypeAdapterFactory</tt>,
+ * the framework's Gson instance picks it up automatically. <br>
+ * The serialized form is the same as with the reflection based binding:
+ * <ul>
+ * <li>All non-static and non-transient fields are serialized, <tt>@SerializedName</tt> is honored</li>
+ * <li>Unknown fields are skipped when parsing</li>
+ * </ul>
+ * As the generated code accesses the DTO directly the following applies:
+ * <ul>
+ * <li>The DTO must be a non-generic, non-abstract class extending <tt>Object</tt>, nested classes must be static</li>
+ * <li>Neither the DTO nor its fields may be private</li>
+ * <li>The DTO must either have a non-private no-arg constructor and non-final fields,
+ * or a non-private constructor taking all fields in declaration order</li>
+ * </ul>
+ * @author Peter Nerg
+ * @since 1.7
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface JsonCodec {
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor generating reflection free Gson type adapters for classes annotated with {@link JsonCodec}. <br>
+ * For each annotated class a <tt>TypeAdapterFactory</tt> is generated, all generated factories are registered
+ * as services in <tt>META-INF/services/com.google.gson.TypeAdapterFactory</tt>. <br>
+ * Already existing entries in the service file (e.g. hand written adapters) are kept.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+@SupportedAnnotationTypes("org.dmonix.servlet.processor.JsonCodec")
+public final class JsonCodecProcessor extends AbstractProcessor {
+
+    /** The service file the generated factories are registered in.*/
+    static final String SERVICE_FILE = "META-INF/services/com.google.gson.TypeAdapterFactory";
+
+    /** The generated factories over all rounds.*/
+    private final Set<String> factories = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(JsonCodec.class)) {
+            try {
+                factories.add(new AdapterGenerator(processingEnv, element).generate());
+            } catch (InvalidTypeException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, ex.getMessage(), ex.element);
+            } catch (IOException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to generate the type adapter: " + ex.getMessage(), element);
+            }
+        }
+        if (roundEnv.processingOver() && !factories.isEmpty()) {
+            writeServiceFile();
+        }
+        return true;
+    }
+
+    private void writeServiceFile() {
+        Set<String> services = new TreeSet<>(factories);
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(reader(existing))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    String service = line.replaceFirst("#.*", "").trim();
+                    if (!service.isEmpty()) {
+                        services.add(service);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            //no existing service file
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String service : services) {
+                    writer.write(service);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write [" + SERVICE_FILE + "]: " + ex.getMessage());
+        }
+    }
+
+    private static Reader reader(FileObject file) throws IOException {
+        return new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8);
+    }
+}
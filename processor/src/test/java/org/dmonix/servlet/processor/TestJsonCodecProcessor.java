@@ -0,0 +1,224 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet.processor;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapterFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ServiceLoader;
+
+/**
+ * Test the class {@link JsonCodecProcessor} by compiling annotated sources and comparing the generated adapters with the reflection based binding.
+ * @author Peter Nerg
+ */
+public class TestJsonCodecProcessor extends Assert {
+
+    private static final String IMMUTABLE = "package test;\n"
+            + "import com.google.gson.annotations.SerializedName;\n"
+            + "import org.dmonix.servlet.processor.JsonCodec;\n"
+            + "import java.util.List;\n"
+            + "public class Outer {\n"
+            + "    public enum Color { RED, @SerializedName(\"verde\") GREEN }\n"
+            + "    @JsonCodec\n"
+            + "    public static final class Item {\n"
+            + "        static final int IGNORED = 1;\n"
+            + "        @SerializedName(value = \"item_name\", alternate = {\"itemName\"})\n"
+            + "        public final String name;\n"
+            + "        final int id;\n"
+            + "        final double price;\n"
+            + "        final List<String> tags;\n"
+            + "        final Color color;\n"
+            + "        transient int cached;\n"
+            + "        public Item(String name, int id, double price, List<String> tags, Color color) {\n"
+            + "            this.name = name; this.id = id; this.price = price; this.tags = tags; this.color = color;\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final String MUTABLE = "package test;\n"
+            + "import org.dmonix.servlet.processor.JsonCodec;\n"
+            + "@JsonCodec\n"
+            + "public class Mutable {\n"
+            + "    boolean flag;\n"
+            + "    byte b;\n"
+            + "    short s;\n"
+            + "    long l;\n"
+            + "    float f;\n"
+            + "    char c;\n"
+            + "    Integer boxed;\n"
+            + "    Double boxedDouble;\n"
+            + "    Boolean boxedFlag;\n"
+            + "    Character boxedChar;\n"
+            + "    int[] numbers;\n"
+            + "    Mutable child;\n"
+            + "}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void immutable() throws Exception {
+        ClassLoader loader = compile("test.Outer", IMMUTABLE);
+        Class<?> type = loader.loadClass("test.Outer$Item");
+        String json = "{\"item_name\":\"peter\",\"id\":69,\"price\":1.5,\"tags\":[\"a\",\"b\"],\"color\":\"verde\",\"cached\":3,\"unknown\":{\"x\":[1]}}";
+        assertGenerated(loader, type);
+        assertSameAsReflection(loader, type, json);
+        assertEquals("{\"item_name\":\"peter\",\"id\":69,\"price\":1.5,\"tags\":[\"a\",\"b\"],\"color\":\"verde\"}", roundTrip(loader, type, json));
+    }
+
+    @Test
+    public void alternateName() throws Exception {
+        ClassLoader loader = compile("test.Outer", IMMUTABLE);
+        Class<?> type = loader.loadClass("test.Outer$Item");
+        assertEquals("{\"item_name\":\"peter\",\"id\":0,\"price\":0.0}", roundTrip(loader, type, "{\"itemName\":\"peter\"}"));
+    }
+
+    @Test
+    public void mutable() throws Exception {
+        ClassLoader loader = compile("test.Mutable", MUTABLE);
+        Class<?> type = loader.loadClass("test.Mutable");
+        String json = "{\"flag\":true,\"b\":1,\"s\":2,\"l\":3,\"f\":0.1,\"c\":\"x\",\"boxed\":4,\"boxedDouble\":null,\"boxedFlag\":false,"
+                + "\"boxedChar\":\"y\",\"numbers\":[5,6],\"child\":{\"l\":7,\"child\":null}}";
+        assertGenerated(loader, type);
+        assertSameAsReflection(loader, type, json);
+        assertEquals("{\"flag\":true,\"b\":1,\"s\":2,\"l\":3,\"f\":0.1,\"c\":\"x\",\"boxed\":4,\"boxedFlag\":false,\"boxedChar\":\"y\",\"numbers\":[5,6],"
+                + "\"child\":{\"flag\":false,\"b\":0,\"s\":0,\"l\":7,\"f\":0.0,\"c\":\"\\u0000\"}}", roundTrip(loader, type, json));
+    }
+
+    @Test
+    public void nullValues() throws Exception {
+        ClassLoader loader = compile("test.Mutable", MUTABLE);
+        Class<?> type = loader.loadClass("test.Mutable");
+        assertSameAsReflection(loader, type, "{\"l\":null,\"boxed\":null,\"numbers\":null,\"child\":null}");
+        assertNull(gson(loader).fromJson("null", type));
+    }
+
+    @Test
+    public void serviceFile() throws Exception {
+        ClassLoader loader = compile("test.Mutable", MUTABLE);
+        assertNotNull(loader.getResource(JsonCodecProcessor.SERVICE_FILE));
+        assertTrue(ServiceLoader.load(TypeAdapterFactory.class, loader).iterator().hasNext());
+    }
+
+    @Test
+    public void privateField() throws Exception {
+        assertRejected("test.Dto", "package test;\n@org.dmonix.servlet.processor.JsonCodec\npublic class Dto {\n    private int id;\n}\n", "must not be private");
+    }
+
+    @Test
+    public void finalFieldsWithoutConstructor() throws Exception {
+        assertRejected("test.Dto", "package test;\n@org.dmonix.servlet.processor.JsonCodec\npublic class Dto {\n    final int id = 1;\n}\n", "constructor");
+    }
+
+    @Test
+    public void innerClass() throws Exception {
+        assertRejected("test.Dto", "package test;\npublic class Dto {\n    @org.dmonix.servlet.processor.JsonCodec\n    class Inner {}\n}\n", "inner classes");
+    }
+
+    @Test
+    public void genericClass() throws Exception {
+        assertRejected("test.Dto", "package test;\n@org.dmonix.servlet.processor.JsonCodec\npublic class Dto<T> {\n    T value;\n}\n", "generic");
+    }
+
+    private static void assertGenerated(ClassLoader loader, Class<?> type) {
+        assertTrue(gson(loader).getAdapter(type).getClass().getName().endsWith("_TypeAdapterFactory$Adapter"));
+    }
+
+    private static void assertSameAsReflection(ClassLoader loader, Class<?> type, String json) {
+        Gson reflective = new Gson();
+        assertEquals(reflective.toJson(reflective.fromJson(json, type)), roundTrip(loader, type, json));
+    }
+
+    private static String roundTrip(ClassLoader loader, Class<?> type, String json) {
+        Gson gson = gson(loader);
+        return gson.toJson(gson.fromJson(json, type));
+    }
+
+    private static Gson gson(ClassLoader loader) {
+        GsonBuilder builder = new GsonBuilder();
+        for (TypeAdapterFactory factory : ServiceLoader.load(TypeAdapterFactory.class, loader)) {
+            builder.registerTypeAdapterFactory(factory);
+        }
+        return builder.create();
+    }
+
+    private void assertRejected(String className, String source, String message) throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        assertFalse(run(className, source, diagnostics));
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getMessage(null).contains(message)) {
+                return;
+            }
+        }
+        fail("Expected an error containing [" + message + "] but got " + diagnostics.getDiagnostics());
+    }
+
+    private ClassLoader compile(String className, String source) throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        assertTrue(diagnostics.getDiagnostics().toString(), run(className, source, diagnostics));
+        return new URLClassLoader(new URL[]{folder.getRoot().toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    private boolean run(String className, String source, DiagnosticCollector<JavaFileObject> diagnostics) throws IOException, URISyntaxException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        String classPath = location(Gson.class) + File.pathSeparator + location(JsonCodec.class);
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-d", folder.getRoot().getPath(), "-classpath", classPath), null,
+                Collections.singletonList(new Source(className, source)));
+        task.setProcessors(Collections.singletonList(new JsonCodecProcessor()));
+        return task.call();
+    }
+
+    private static String location(Class<?> clazz) throws URISyntaxException {
+        return new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+    /**
+     * In-memory source file.
+     */
+    private static final class Source extends SimpleJavaFileObject {
+        private final String source;
+
+        private Source(String className, String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+}
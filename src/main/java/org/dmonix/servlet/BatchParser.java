@@ -0,0 +1,264 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser for the json array of sub-requests posted to the {@link BatchServlet}. <br>
+ * The body of each sub-request is kept as the raw json text it was sent as, i.e. it is never bound to a model of any
+ * json library nor re-serialized before handed to the target servlet. <br>
+ * The body is only delimited, it's up to the target servlet to validate it.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class BatchParser {
+    private final String json;
+    private int pos = 0;
+
+    private BatchParser(String json) {
+        this.json = json;
+    }
+
+    /**
+     * Parses the sub-requests of the batch.
+     * @param json The batch
+     * @return The sub-requests in the order of the batch, empty for an empty or <tt>null</tt> batch
+     * @throws IOException If the batch isn't a json array of objects
+     */
+    static List<BatchServlet.SubRequest> parse(String json) throws IOException {
+        BatchParser parser = new BatchParser(json);
+        List<BatchServlet.SubRequest> subRequests = new ArrayList<>();
+        if (parser.hasMore() && !parser.skipNull()) {
+            parser.expect('[');
+            if (!parser.next(']')) {
+                do {
+                    subRequests.add(parser.subRequest());
+                } while (parser.next(','));
+                parser.expect(']');
+            }
+        }
+        if (parser.hasMore()) {
+            throw parser.error("Unexpected data after the batch");
+        }
+        return subRequests;
+    }
+
+    private BatchServlet.SubRequest subRequest() throws IOException {
+        if (skipNull()) {
+            return null;
+        }
+        expect('{');
+        BatchServlet.SubRequest subRequest = new BatchServlet.SubRequest();
+        if (!next('}')) {
+            do {
+                String name = string();
+                expect(':');
+                switch (name) {
+                    case "method":
+                        subRequest.method = skipNull() ? null : string();
+                        break;
+                    case "path":
+                        subRequest.path = skipNull() ? null : string();
+                        break;
+                    case "headers":
+                        subRequest.headers = skipNull() ? null : headers();
+                        break;
+                    case "body":
+                        subRequest.body = skipNull() ? null : value();
+                        break;
+                    default:
+                        value();
+                }
+            } while (next(','));
+            expect('}');
+        }
+        return subRequest;
+    }
+
+    private Map<String, String> headers() throws IOException {
+        expect('{');
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (!next('}')) {
+            do {
+                String name = string();
+                expect(':');
+                //non-string scalars are accepted as their json text, e.g. a number
+                headers.put(name, skipNull() ? null : peek() == '"' ? string() : literal());
+            } while (next(','));
+            expect('}');
+        }
+        return headers;
+    }
+
+    /**
+     * Skips a json value returning its raw text. <br>
+     * Nested objects/arrays are delimited by counting brackets, not by recursion, as the nesting is decided by the client.
+     */
+    private String value() throws IOException {
+        peek();
+        int start = pos;
+        int depth = 0;
+        do {
+            char c = peek();
+            if (c == '"') {
+                string();
+            } else if (c == '{' || c == '[') {
+                depth++;
+                pos++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    throw error("Unexpected '" + c + "'");
+                }
+                depth--;
+                pos++;
+            } else if ((c == ',' || c == ':') && depth > 0) {
+                pos++;
+            } else {
+                literal();
+            }
+        } while (depth > 0);
+        return json.substring(start, pos);
+    }
+
+    private String literal() throws IOException {
+        int start = pos;
+        while (pos < json.length() && isLiteral(json.charAt(pos))) {
+            pos++;
+        }
+        if (start == pos) {
+            throw error("Unexpected character");
+        }
+        return json.substring(start, pos);
+    }
+
+    private String string() throws IOException {
+        if (peek() != '"') {
+            throw error("Expected a string");
+        }
+        StringBuilder value = new StringBuilder();
+        for (pos++; pos < json.length(); pos++) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                pos++;
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (++pos >= json.length()) {
+                break;
+            }
+            c = json.charAt(pos);
+            switch (c) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    value.append(unicode());
+                    break;
+                default:
+                    value.append(c);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private char unicode() throws IOException {
+        if (pos + 4 >= json.length()) {
+            throw error("Invalid unicode escape");
+        }
+        char value = 0;
+        for (int i = 1; i <= 4; i++) {
+            int digit = Character.digit(json.charAt(pos + i), 16);
+            if (digit < 0) {
+                throw error("Invalid unicode escape");
+            }
+            value = (char) (value * 16 + digit);
+        }
+        pos += 4;
+        return value;
+    }
+
+    private boolean skipNull() throws IOException {
+        peek();
+        if (json.startsWith("null", pos) && (pos + 4 == json.length() || !isLiteral(json.charAt(pos + 4)))) {
+            pos += 4;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean next(char expected) throws IOException {
+        if (peek() == expected) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (!next(expected)) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    /**
+     * Skips any whitespace returning the next character.
+     */
+    private char peek() throws IOException {
+        if (!hasMore()) {
+            throw error("Unexpected end of data");
+        }
+        return json.charAt(pos);
+    }
+
+    /**
+     * Skips any whitespace.
+     * @return <code>true</code> if there's more data
+     */
+    private boolean hasMore() {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+        return pos < json.length();
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at position " + pos);
+    }
+
+    private static boolean isLiteral(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.';
+    }
+}
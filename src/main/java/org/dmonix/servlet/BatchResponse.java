@@ -0,0 +1,91 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import com.google.gson.stream.JsonWriter;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static javascalautils.OptionCompanion.Some;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+/**
+ * Response streaming the results of a completed batch as a json array of <tt>{status, headers, body}</tt> objects. <br>
+ * The results are written in the order of the sub-requests. <br>
+ * Json bodies are embedded as is, other bodies as strings and empty bodies as <tt>null</tt>.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class BatchResponse extends Response {
+    private final List<BatchSubResponse> results;
+
+    BatchResponse(List<BatchSubResponse> results) {
+        super(SC_OK, "", Some("application/json;charset=UTF-8"), Some("UTF-8"));
+        this.results = results;
+    }
+
+    @Override
+    boolean isBuffered() {
+        return false;
+    }
+
+    @Override
+    void writeBody(HttpServletResponse resp) throws IOException {
+        //deliberately not closing the writer, the stream is owned by the container
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(resp.getOutputStream(), StandardCharsets.UTF_8));
+        writer.beginArray();
+        for (BatchSubResponse result : results) {
+            write(writer, result);
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    private static void write(JsonWriter writer, BatchSubResponse result) throws IOException {
+        writer.beginObject();
+        writer.name("status").value(result.getStatus());
+        writer.name("headers").beginObject();
+        for (Map.Entry<String, String> header : result.headers().entrySet()) {
+            writer.name(header.getKey()).value(header.getValue());
+        }
+        writer.endObject();
+        writer.name("body");
+        byte[] body = result.body();
+        if (body.length == 0) {
+            writer.nullValue();
+        } else if (isJson(result.getContentType())) {
+            writer.jsonValue(new String(body, Charset.forName(result.getCharacterEncoding())));
+        } else {
+            writer.value(new String(body, Charset.forName(result.getCharacterEncoding())));
+        }
+        writer.endObject();
+    }
+
+    static boolean isJson(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int paramStart = contentType.indexOf(';');
+        String mediaType = (paramStart < 0 ? contentType : contentType.substring(0, paramStart)).trim().toLowerCase();
+        return mediaType.equals("application/json") || mediaType.endsWith("+json");
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Option;
+import javascalautils.Try;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Option;
+import static javascalautils.OptionCompanion.Some;
+import static javascalautils.TryCompanion.Failure;
+import static javascalautils.TryCompanion.Try;
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_FORBIDDEN;
+import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE;
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+
+/**
+ * Servlet executing a batch of sub-requests in a single HTTP round trip. <br>
+ * The batch is <tt>POST</tt>:ed as a json array of sub-requests:
+ * <pre>
+ * [
+ *   {"method":"GET", "path":"/users/42"},
+ *   {"method":"PUT", "path":"/users/42/settings?notify=true", "body":{"theme":"dark"}, "headers":{"X-Trace":"abc"}}
+ * ]
+ * </pre>
+ * Each sub-request is dispatched to the {@link JSONServlet} mapped to the path in the same servlet context,
+ * using a synthetic request inheriting the headers (e.g. authentication) of the batch request. <br>
+ * The body of a sub-request is passed to the target as the exact json text it was sent as. <br>
+ * Servlets register their mappings when initialized, i.e. target servlets should be loaded on startup. <br>
+ * <b>Limitation:</b> sub-requests are passed directly to the target servlet, i.e. the container does not apply filters or security
+ * constraints to them. Targets guarded by a filter (mapped to the path or servlet) or by a {@link javax.servlet.annotation.ServletSecurity}
+ * annotation are therefore refused with a <tt>403</tt>. This includes filters mapped to <tt>/*</tt>, filters that may safely be bypassed
+ * (e.g. CORS, logging or encoding filters) must be listed in {@link #PARAM_BATCH_ALLOWED_FILTERS}.
+ * Security constraints declared in <tt>web.xml</tt> can't be detected,
+ * the batch path must hence be protected by constraints at least as strict as those of any servlet reachable through it. <br>
+ * The sub-requests are independent and run in parallel on a bounded pool with a bounded queue, sub-requests not fitting in the
+ * queue are answered with a <tt>503</tt>. Once all sub-requests are completed the results are written in the order of the
+ * sub-requests as a json array of <tt>{status, headers, body}</tt> objects. <br>
+ * The servlet should be async supported, the container thread is then released while the sub-requests execute.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+public class BatchServlet extends JSONServlet {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Init parameter for the max number of sub-requests in a batch. <br>
+     * Larger batches are rejected with a <tt>413</tt>, defaults to {@value #DEFAULT_MAX_BATCH_SIZE}
+     */
+    public static final String PARAM_MAX_BATCH_SIZE = "max-batch-size";
+
+    /**
+     * Init parameter for the max number of sub-requests executed in parallel. <br>
+     * Defaults to {@value #DEFAULT_BATCH_POOL_SIZE}
+     */
+    public static final String PARAM_BATCH_POOL_SIZE = "batch-pool-size";
+
+    /**
+     * Init parameter for the max number of sub-requests waiting for a thread in the pool. <br>
+     * Defaults to {@value #DEFAULT_BATCH_QUEUE_SIZE}
+     */
+    public static final String PARAM_BATCH_QUEUE_SIZE = "batch-queue-size";
+
+    /**
+     * Init parameter with a comma separated list of the names of the filters that may be bypassed by sub-requests. <br>
+     * Targets guarded by any other filter are refused, by default no filter may be bypassed.
+     */
+    public static final String PARAM_BATCH_ALLOWED_FILTERS = "batch-allowed-filters";
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+    private static final int DEFAULT_BATCH_POOL_SIZE = 16;
+
+    private static final int DEFAULT_BATCH_QUEUE_SIZE = 500;
+
+    /**
+     * A sub-request of a batch.
+     */
+    static final class SubRequest {
+        String method;
+        String path;
+        Map<String, String> headers;
+        /** The raw json text of the body.*/
+        String body;
+    }
+
+    private BatchTargets targets = new BatchTargets();
+
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private Option<ExecutorService> executor = None();
+
+    private ServletContext context;
+
+    private Set<String> allowedFilters = Collections.emptySet();
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        context = config.getServletContext();
+        if (context != null) {
+            targets = BatchTargets.of(context);
+        }
+        allowedFilters = Option(config.getInitParameter(PARAM_BATCH_ALLOWED_FILTERS))
+                .map(names -> Arrays.stream(names.split(",")).map(String::trim).filter(name -> !name.isEmpty()).collect(Collectors.toSet()))
+                .getOrElse(Collections::emptySet);
+        maxBatchSize = Option(config.getInitParameter(PARAM_MAX_BATCH_SIZE)).map(Integer::parseInt).getOrElse(() -> DEFAULT_MAX_BATCH_SIZE);
+        int poolSize = Option(config.getInitParameter(PARAM_BATCH_POOL_SIZE)).map(Integer::parseInt).getOrElse(() -> DEFAULT_BATCH_POOL_SIZE);
+        int queueSize = Option(config.getInitParameter(PARAM_BATCH_QUEUE_SIZE)).map(Integer::parseInt).getOrElse(() -> DEFAULT_BATCH_QUEUE_SIZE);
+        executor = Some(HandlerExecutors.newPlatformThreadExecutor(poolSize, queueSize));
+    }
+
+    @Override
+    public void destroy() {
+        executor.forEach(ExecutorService::shutdown);
+        executor = None();
+        super.destroy();
+    }
+
+    /**
+     * Get the registry used to resolve the targets of sub-requests.
+     * @return The registry
+     */
+    BatchTargets targets() {
+        return targets;
+    }
+
+    /**
+     * Executes the batch. <br>
+     * The returned stage completes once all sub-requests are completed, thus the container thread isn't blocked while waiting for them.
+     * @param request The request data
+     * @return The stage completing with the batch response
+     */
+    @Override
+    protected CompletionStage<Response> postAsync(Request request) {
+        return parse(request).map(subRequests -> execute(request, subRequests)).recover(BatchServlet::failed).orNull();
+    }
+
+    private CompletionStage<Response> execute(Request request, List<SubRequest> subRequests) {
+        if (subRequests.size() > maxBatchSize) {
+            return CompletableFuture.completedFuture(ErrorResponse(SC_REQUEST_ENTITY_TOO_LARGE, "Max " + maxBatchSize + " sub-requests per batch"));
+        }
+        List<CompletableFuture<BatchSubResponse>> results = new ArrayList<>(subRequests.size());
+        for (SubRequest subRequest : subRequests) {
+            results.add(submit(request.request(), subRequest));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<BatchSubResponse> responses = new ArrayList<>(results.size());
+            //all futures are completed, join does not block
+            results.forEach(result -> responses.add(result.join()));
+            return new BatchResponse(responses);
+        });
+    }
+
+    /**
+     * Parses the batch using the body size limit of the servlet. <br>
+     * The bodies of the sub-requests are kept as raw json text, hence the batch is not parsed with the json codec of the servlet
+     * as that would bind the bodies to the model of a specific json library.
+     */
+    private Try<List<SubRequest>> parse(Request request) {
+        return request.readBody("UTF-8")
+                .flatMap(batch -> Try(() -> BatchParser.parse(batch)))
+                //failures already carrying a response, e.g. a too large body, are kept as is
+                .recoverWith(ex -> Failure(ex instanceof JSONServletException ? ex : new JSONServletException(ErrorResponse(SC_BAD_REQUEST, "Invalid batch: " + ex.getMessage()), ex)));
+    }
+
+    private static CompletionStage<Response> failed(Throwable throwable) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    private CompletableFuture<BatchSubResponse> submit(HttpServletRequest batch, SubRequest subRequest) {
+        CompletableFuture<BatchSubResponse> future = new CompletableFuture<>();
+        if (executor.isEmpty()) {
+            complete(future, batch, subRequest);
+            return future;
+        }
+        try {
+            executor.orNull().execute(() -> complete(future, batch, subRequest));
+        } catch (RejectedExecutionException ex) {
+            future.complete(executor.orNull().isShutdown() ? error(SC_INTERNAL_SERVER_ERROR, "Batch servlet is shutting down") : error(SC_SERVICE_UNAVAILABLE, "Too many pending sub-requests"));
+        }
+        return future;
+    }
+
+    /**
+     * Executes a sub-request completing the future with its response. <br>
+     * The future is always completed, even if the target fails in an unexpected way, as the batch waits for all sub-requests.
+     */
+    private void complete(CompletableFuture<BatchSubResponse> future, HttpServletRequest batch, SubRequest subRequest) {
+        try {
+            future.complete(execute(batch, subRequest));
+        } catch (Throwable throwable) {
+            future.complete(error(SC_INTERNAL_SERVER_ERROR, String.valueOf(throwable)));
+        }
+    }
+
+    /**
+     * Executes a single sub-request.
+     * @param batch The batch request
+     * @param subRequest The sub-request
+     * @return The captured response
+     */
+    BatchSubResponse execute(HttpServletRequest batch, SubRequest subRequest) {
+        if (subRequest == null || subRequest.method == null || subRequest.path == null || !subRequest.path.startsWith("/")) {
+            return error(SC_BAD_REQUEST, "Sub-request must have a method and an absolute path");
+        }
+        int queryStart = subRequest.path.indexOf('?');
+        String path = queryStart < 0 ? subRequest.path : subRequest.path.substring(0, queryStart);
+        String query = queryStart < 0 ? null : subRequest.path.substring(queryStart + 1);
+        Option<BatchTargets.Target> target = targets.resolve(path);
+        if (target.isEmpty()) {
+            return error(SC_NOT_FOUND, "No servlet mapped to [" + path + "]");
+        }
+        if (target.orNull().servlet instanceof BatchServlet) {
+            return error(SC_BAD_REQUEST, "Nested batches are not supported");
+        }
+        if (BatchTargets.isGuarded(context, allowedFilters, target.orNull(), path)) {
+            return error(SC_FORBIDDEN, "The target [" + path + "] is guarded by filters or security constraints and can't be batched");
+        }
+        byte[] body = subRequest.body == null ? new byte[0] : subRequest.body.getBytes(StandardCharsets.UTF_8);
+        Map<String, String> headers = subRequest.headers != null ? subRequest.headers : Collections.emptyMap();
+        BatchSubResponse response = new BatchSubResponse();
+        try {
+            target.orNull().servlet.service(new BatchSubRequest(batch, subRequest.method.toUpperCase(), target.orNull(), query, headers, body), response);
+        } catch (ServletException | IOException | RuntimeException ex) {
+            response.reset();
+            return error(SC_INTERNAL_SERVER_ERROR, ex.getMessage() != null ? ex.getMessage() : ex.toString());
+        }
+        return response;
+    }
+
+    private BatchSubResponse error(int status, String message) {
+        BatchSubResponse response = new BatchSubResponse();
+        try {
+            writeResponse(response, ErrorResponse(status, message));
+        } catch (IOException ex) {
+            //never happens as the response is written to memory
+            response.setStatus(status);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Synthetic request for a sub-request of a batch. <br>
+ * Wraps the batch request, thus inheriting e.g. authentication headers, cookies and the remote address,
+ * but has its own method, path, query parameters, body and attributes. <br>
+ * Headers describing the batch request body or negotiating the batch response (e.g. <tt>Accept-Encoding</tt>) are hidden.
+ * Sub-requests are always processed synchronously.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class BatchSubRequest extends HttpServletRequestWrapper {
+    private static final Set<String> HIDDEN_HEADERS = new HashSet<>();
+
+    static {
+        for (String header : new String[]{"content-length", "content-type", "content-encoding", "transfer-encoding", "accept-encoding", "if-none-match", "if-match", "if-modified-since", "range"}) {
+            HIDDEN_HEADERS.add(header);
+        }
+    }
+
+    private final String method;
+    private final String servletPath;
+    private final String pathInfo;
+    private final String queryString;
+    private final byte[] body;
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, Object> attributes = new HashMap<>();
+    private Map<String, String[]> parameters;
+
+    /**
+     * Creates a sub-request
+     * @param batch The batch request
+     * @param method The HTTP method
+     * @param target The resolved target of the sub-request
+     * @param queryString The query string, <code>null</code> if none
+     * @param headers Additional headers for the sub-request
+     * @param body The body, empty if none
+     */
+    BatchSubRequest(HttpServletRequest batch, String method, BatchTargets.Target target, String queryString, Map<String, String> headers, byte[] body) {
+        super(batch);
+        this.method = method;
+        this.servletPath = target.servletPath;
+        this.pathInfo = target.pathInfo;
+        this.queryString = queryString;
+        this.body = body;
+        this.headers.putAll(headers);
+        if (body.length > 0) {
+            this.headers.putIfAbsent("Content-Type", "application/json;charset=UTF-8");
+        }
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getServletPath() {
+        return servletPath;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return pathInfo;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return getContextPath() + servletPath + (pathInfo != null ? pathInfo : "");
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        return new StringBuffer(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort()).append(getRequestURI());
+    }
+
+    @Override
+    public String getHeader(String name) {
+        if (headers.containsKey(name)) {
+            return headers.get(name);
+        }
+        return HIDDEN_HEADERS.contains(name.toLowerCase()) ? null : super.getHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        String value = getHeader(name);
+        if (headers.containsKey(name) || value == null) {
+            return value == null ? Collections.emptyEnumeration() : Collections.enumeration(Collections.singleton(value));
+        }
+        return super.getHeaders(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        Set<String> names = new HashSet<>(headers.keySet());
+        for (Enumeration<String> batchNames = super.getHeaderNames(); batchNames != null && batchNames.hasMoreElements(); ) {
+            String name = batchNames.nextElement();
+            if (!HIDDEN_HEADERS.contains(name.toLowerCase())) {
+                names.add(name);
+            }
+        }
+        return Collections.enumeration(names);
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        return getHeader(name) == null ? -1 : super.getDateHeader(name);
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return value == null ? -1 : Integer.parseInt(value);
+    }
+
+    @Override
+    public String getContentType() {
+        return headers.get("Content-Type");
+    }
+
+    @Override
+    public int getContentLength() {
+        return body.length;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return body.length;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return "UTF-8";
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        return new ServletInputStream() {
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return in.read(b, off, len);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException("Non-blocking IO is not supported for batch sub-requests");
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters().get(name);
+        return values != null ? values[0] : null;
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters());
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters().keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters().get(name);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        Object value = attributes.get(name);
+        return value != null ? value : super.getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        Set<String> names = new HashSet<>(attributes.keySet());
+        Enumeration<String> batchNames = super.getAttributeNames();
+        if (batchNames != null) {
+            names.addAll(Collections.list(batchNames));
+        }
+        return Collections.enumeration(names);
+    }
+
+    /**
+     * Sets the attribute on the sub-request only as sub-requests of the batch run in parallel.
+     */
+    @Override
+    public void setAttribute(String name, Object o) {
+        attributes.put(name, o);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return false;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        throw new IllegalStateException("Asynchronous processing is not supported for batch sub-requests");
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+        throw new IllegalStateException("Asynchronous processing is not supported for batch sub-requests");
+    }
+
+    private Map<String, String[]> parameters() {
+        if (parameters == null) {
+            parameters = parseQuery(queryString);
+        }
+        return parameters;
+    }
+
+    static Map<String, String[]> parseQuery(String queryString) {
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        if (queryString != null) {
+            for (String pair : queryString.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int eq = pair.indexOf('=');
+                String name = decode(eq < 0 ? pair : pair.substring(0, eq));
+                String value = eq < 0 ? "" : decode(pair.substring(eq + 1));
+                values.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+            }
+        }
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        values.forEach((name, list) -> parameters.put(name, list.toArray(new String[list.size()])));
+        return parameters;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException ex) {
+            return value;
+        }
+    }
+}
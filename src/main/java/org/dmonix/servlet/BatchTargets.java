@@ -0,0 +1,222 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Option;
+
+import javax.servlet.FilterRegistration;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRegistration;
+import javax.servlet.annotation.ServletSecurity;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Option;
+import static javascalautils.OptionCompanion.Some;
+
+/**
+ * Registry of the {@link JSONServlet} instances in a servlet context keyed on their URL mappings. <br>
+ * Each servlet registers itself when initialized, allowing the {@link BatchServlet} to dispatch sub-requests to it. <br>
+ * Mappings are resolved as the container does: exact match, longest path prefix (<tt>/path/*</tt>) and last the default servlet (<tt>/</tt>).
+ * Extension mappings (<tt>*.ext</tt>) are not supported.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class BatchTargets {
+    private static final String ATTRIBUTE = BatchTargets.class.getName();
+
+    private final Map<String, JSONServlet> exact = new ConcurrentHashMap<>();
+    private final Map<String, JSONServlet> prefix = new ConcurrentHashMap<>();
+    private volatile JSONServlet defaultServlet;
+
+    /**
+     * A resolved sub-request target.
+     */
+    static final class Target {
+        final JSONServlet servlet;
+        final String servletPath;
+        final String pathInfo;
+
+        Target(JSONServlet servlet, String servletPath, String pathInfo) {
+            this.servlet = servlet;
+            this.servletPath = servletPath;
+            this.pathInfo = pathInfo;
+        }
+    }
+
+    /**
+     * Get the registry of the servlet context, created if not already existing.
+     * @param context The servlet context
+     * @return The registry
+     */
+    static BatchTargets of(ServletContext context) {
+        synchronized (context) {
+            Object targets = context.getAttribute(ATTRIBUTE);
+            if (targets instanceof BatchTargets) {
+                return (BatchTargets) targets;
+            }
+            BatchTargets created = new BatchTargets();
+            context.setAttribute(ATTRIBUTE, created);
+            return created;
+        }
+    }
+
+    /**
+     * Registers the servlet on all URL mappings of its registration in the servlet context.
+     * @param context The servlet context, <code>null</code> if the servlet is not run by a container
+     * @param servletName The name of the servlet
+     * @param servlet The servlet
+     */
+    static void register(ServletContext context, String servletName, JSONServlet servlet) {
+        mappings(context, servletName).forEach(mappings -> {
+            BatchTargets targets = of(context);
+            mappings.forEach(mapping -> targets.add(mapping, servlet));
+        });
+    }
+
+    /**
+     * Removes the servlet from the registry of the servlet context.
+     * @param context The servlet context, <code>null</code> if the servlet is not run by a container
+     * @param servlet The servlet
+     */
+    static void unregister(ServletContext context, JSONServlet servlet) {
+        if (context != null && context.getAttribute(ATTRIBUTE) instanceof BatchTargets) {
+            ((BatchTargets) context.getAttribute(ATTRIBUTE)).remove(servlet);
+        }
+    }
+
+    void add(String mapping, JSONServlet servlet) {
+        if (mapping.equals("/")) {
+            defaultServlet = servlet;
+        } else if (mapping.endsWith("/*")) {
+            prefix.put(mapping.substring(0, mapping.length() - 2), servlet);
+        } else if (mapping.startsWith("/")) {
+            exact.put(mapping, servlet);
+        }
+    }
+
+    void remove(JSONServlet servlet) {
+        exact.values().remove(servlet);
+        prefix.values().remove(servlet);
+        if (defaultServlet == servlet) {
+            defaultServlet = null;
+        }
+    }
+
+    /**
+     * Resolves the servlet for a path.
+     * @param path The path relative to the servlet context, without query string
+     * @return The target, None if there's no matching servlet
+     */
+    Option<Target> resolve(String path) {
+        JSONServlet servlet = exact.get(path);
+        if (servlet != null) {
+            return Some(new Target(servlet, path, null));
+        }
+        for (String candidate = path; !candidate.isEmpty(); candidate = candidate.substring(0, Math.max(candidate.lastIndexOf('/'), 0))) {
+            servlet = prefix.get(candidate);
+            if (servlet != null) {
+                return Some(new Target(servlet, candidate, candidate.length() == path.length() ? null : path.substring(candidate.length())));
+            }
+        }
+        servlet = prefix.get("");
+        if (servlet != null) {
+            return Some(new Target(servlet, "", path));
+        }
+        return Option(defaultServlet).map(s -> new Target(s, path, null));
+    }
+
+    /**
+     * Checks if the target is guarded by anything the container applies when it dispatches a request to the servlet. <br>
+     * That is, a filter is mapped to the path or servlet, or the servlet class is annotated with {@link ServletSecurity}.
+     * Sub-requests are passed straight to the servlet and would bypass these, so guarded targets must not be batched. <br>
+     * Security constraints declared in the deployment descriptor are not exposed by the servlet API and are therefore not detected. <br>
+     * Filters known not to guard anything (e.g. CORS, logging or encoding filters) are ignored if listed as allowed.
+     * @param context The servlet context, <code>null</code> if the servlet is not run by a container
+     * @param allowedFilters The names of the filters that may be bypassed
+     * @param target The target
+     * @param path The path of the sub-request relative to the servlet context
+     * @return <code>true</code> if guarded
+     */
+    static boolean isGuarded(ServletContext context, Set<String> allowedFilters, Target target, String path) {
+        if (target.servlet.getClass().isAnnotationPresent(ServletSecurity.class)) {
+            return true;
+        }
+        if (context == null) {
+            return false;
+        }
+        Map<String, ? extends FilterRegistration> filters;
+        try {
+            filters = context.getFilterRegistrations();
+        } catch (UnsupportedOperationException ex) {
+            //the filters can't be inspected, assume the worst
+            return true;
+        }
+        String servletName = target.servlet.getServletConfig() != null ? target.servlet.getServletName() : null;
+        for (Map.Entry<String, ? extends FilterRegistration> entry : filters.entrySet()) {
+            if (allowedFilters.contains(entry.getKey())) {
+                continue;
+            }
+            FilterRegistration filter = entry.getValue();
+            Collection<String> servletNames = filter.getServletNameMappings();
+            if (servletNames.contains("*") || (servletName != null && servletNames.contains(servletName))) {
+                return true;
+            }
+            for (String pattern : filter.getUrlPatternMappings()) {
+                if (matches(pattern, path)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a path is matched by a URL pattern as defined by the servlet specification. <br>
+     * The default mapping (<tt>/</tt>) is treated as matching any path.
+     * @param pattern The URL pattern
+     * @param path The path relative to the servlet context
+     * @return <code>true</code> if matched
+     */
+    static boolean matches(String pattern, String path) {
+        if (pattern.equals("/") || pattern.equals("/*")) {
+            return true;
+        }
+        if (pattern.endsWith("/*")) {
+            String prefix = pattern.substring(0, pattern.length() - 2);
+            return path.equals(prefix) || path.startsWith(prefix + "/");
+        }
+        if (pattern.startsWith("*.")) {
+            return path.endsWith(pattern.substring(1));
+        }
+        return pattern.equals(path);
+    }
+
+    private static Option<Collection<String>> mappings(ServletContext context, String servletName) {
+        if (context == null || servletName == null) {
+            return None();
+        }
+        try {
+            return Option(context.getServletRegistration(servletName)).map(ServletRegistration::getMappings);
+        } catch (UnsupportedOperationException ex) {
+            //the context is not allowed to provide registrations, e.g. a programmatically added listener
+            return None();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream counting the bytes read and failing as soon as more than the allowed number of bytes have been read. <br>
+ * Used to protect against request bodies larger than the configured limit when the <tt>Content-Length</tt> is missing or incorrect.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class BoundedInputStream extends FilterInputStream {
+    private final long maxBytes;
+    private long count = 0;
+
+    /**
+     * Creates an instance
+     * @param in The stream to wrap
+     * @param maxBytes The max number of bytes allowed to be read
+     */
+    BoundedInputStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * If more bytes than allowed were found in the stream.
+     * @return <code>true</code> if exceeded
+     */
+    boolean isExceeded() {
+        return count > maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        //read one byte more than allowed in order to detect an oversized body
+        int read = super.read(b, off, (int) Math.min(len, Math.max(1, maxBytes - count + 1)));
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(long read) throws IOException {
+        count += read;
+        if (isExceeded()) {
+            throw new IOException("The request body exceeds the max size of [" + maxBytes + "] bytes");
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator parsing from a {@link BoundedInputStream} turning failures caused by a too large body into the
+ * {@link JSONServletException#PayloadTooLargeException()}. <br>
+ * The body size is in that case only detected as the elements are consumed, the exception is thus thrown from the
+ * stream operations even though it is checked. A handler failing with it is answered with a <tt>413</tt>.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class BoundedSpliterator<T> implements Spliterator<T> {
+    private final Spliterator<T> elements;
+    private final BoundedInputStream in;
+
+    /**
+     * Creates an instance
+     * @param elements The spliterator parsing from the stream
+     * @param in The stream
+     */
+    BoundedSpliterator(Spliterator<T> elements, BoundedInputStream in) {
+        this.elements = elements;
+        this.in = in;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        try {
+            return elements.tryAdvance(action);
+        } catch (RuntimeException ex) {
+            throw checkExceeded(ex);
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        try {
+            elements.forEachRemaining(action);
+        } catch (RuntimeException ex) {
+            throw checkExceeded(ex);
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        try {
+            return elements.trySplit();
+        } catch (RuntimeException ex) {
+            throw checkExceeded(ex);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return elements.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return elements.characteristics();
+    }
+
+    /**
+     * Throws the payload too large exception if the failure was caused by exceeding the body size.
+     * @return The failure as is if caused by anything else
+     */
+    private RuntimeException checkExceeded(RuntimeException ex) {
+        if (in.isExceeded()) {
+            throw BoundedSpliterator.<RuntimeException>uncheckedThrow(JSONServletException.PayloadTooLargeException());
+        }
+        return ex;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> E uncheckedThrow(Throwable throwable) throws E {
+        throw (E) throwable;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Option;
+
+/**
+ * Response with a pre-encoded body. <br>
+ * The body is written with a single write straight to the output stream together with the <tt>Content-Length</tt>,
+ * i.e. bypassing the writer and its character encoding. <br>
+ * The body is not available as {@link #message}, which is always empty. <br>
+ * The buffer is never consumed, the same response can thus be written any number of times.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class BytesResponse extends Response {
+
+    private final ByteBuffer body;
+
+    /**
+     * Creates an instance
+     * @param responseCode The HTTP response code
+     * @param body The body, the remaining bytes of the buffer are written
+     * @param mediaType The media type of the body, may be <code>null</code>
+     */
+    BytesResponse(int responseCode, ByteBuffer body, String mediaType) {
+        super(responseCode, "", Option(mediaType), None());
+        this.body = body;
+    }
+
+    /**
+     * The body is not in the message.
+     * @return <code>false</code>
+     */
+    @Override
+    boolean isBuffered() {
+        return false;
+    }
+
+    @Override
+    long contentLength() {
+        return body.remaining();
+    }
+
+    @Override
+    void writeBody(HttpServletResponse resp) throws IOException {
+        int length = body.remaining();
+        resp.setContentLength(length);
+        if (body.hasArray()) {
+            resp.getOutputStream().write(body.array(), body.arrayOffset() + body.position(), length);
+            return;
+        }
+        //direct and read-only buffers have no accessible array, copy from a duplicate as to not move the position
+        byte[] bytes = new byte[length];
+        body.duplicate().get(bytes);
+        resp.getOutputStream().write(bytes);
+    }
+}
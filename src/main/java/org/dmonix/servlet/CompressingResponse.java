@@ -0,0 +1,250 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Response wrapper compressing the body on the fly. <br>
+ * The body is buffered until it exceeds the threshold, smaller bodies are sent as is with a <tt>Content-Length</tt>.
+ * Once the threshold is exceeded the <tt>Content-Encoding</tt> header is set and the body is compressed with a pooled {@link Deflater}. <br>
+ * The gzip header and trailer are written by this class as {@link java.util.zip.GZIPOutputStream} can't use a provided deflater. <br>
+ * Flushes are ignored while buffering, once compressing they're translated into a sync flush of the deflater.
+ * A threshold of <tt>0</tt> compresses from the first byte, so that flushes of streamed bodies reach the client.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class CompressingResponse extends HttpServletResponseWrapper {
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+    private final Compression.Encoding encoding;
+    private final DeflaterPool pool;
+    private final CompressingOutputStream stream;
+    private PrintWriter writer;
+
+    CompressingResponse(HttpServletResponse response, Compression.Encoding encoding, DeflaterPool pool, int threshold) {
+        super(response);
+        this.encoding = encoding;
+        this.pool = pool;
+        this.stream = new CompressingOutputStream(response, threshold);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(stream, Charset.forName(getCharacterEncoding())));
+        }
+        return writer;
+    }
+
+    /**
+     * Ignored as the length is either known once the body is written or unknown due to compression.
+     */
+    @Override
+    public void setContentLength(int len) {
+    }
+
+    /**
+     * Ignored as the length is either known once the body is written or unknown due to compression.
+     */
+    @Override
+    public void setContentLengthLong(long len) {
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        stream.flush();
+    }
+
+    /**
+     * Writes any buffered or pending compressed data to the wrapped response and returns the deflater to the pool.
+     * @throws IOException Any exception during writing
+     */
+    void finish() throws IOException {
+        try {
+            if (writer != null) {
+                writer.flush();
+            }
+            stream.finish();
+        } finally {
+            stream.release();
+        }
+    }
+
+    /**
+     * Returns the deflater to the pool without writing anything, used when writing the response failed.
+     */
+    void release() {
+        stream.release();
+    }
+
+    /**
+     * Tells if the body is compressed.
+     * @return <tt>true</tt> once the threshold was exceeded
+     */
+    boolean isCompressing() {
+        return stream.deflater != null;
+    }
+
+    private final class CompressingOutputStream extends ServletOutputStream {
+        private final HttpServletResponse target;
+        private final byte[] buffer;
+        private int buffered;
+        private Deflater deflater;
+        private byte[] output;
+        private CRC32 crc;
+        private boolean finished;
+        private boolean released;
+
+        private CompressingOutputStream(HttpServletResponse target, int threshold) {
+            this.target = target;
+            this.buffer = new byte[threshold];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (deflater == null && buffered < buffer.length) {
+                buffer[buffered++] = (byte) b;
+                return;
+            }
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (deflater == null && buffered + len <= buffer.length) {
+                System.arraycopy(b, off, buffer, buffered, len);
+                buffered += len;
+                return;
+            }
+            if (deflater == null) {
+                startCompression();
+            }
+            deflate(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (deflater == null) {
+                return;
+            }
+            int written;
+            do {
+                written = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+                target.getOutputStream().write(output, 0, written);
+            } while (written == output.length);
+            target.getOutputStream().flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException("Non-blocking IO is not supported for compressed responses");
+        }
+
+        private void startCompression() throws IOException {
+            target.setHeader("Content-Encoding", encoding.token);
+            //the compressed representation is not byte-for-byte identical, only weakly equal
+            String etag = target.getHeader("ETag");
+            if (etag != null && !etag.startsWith("W/")) {
+                target.setHeader("ETag", "W/" + etag);
+            }
+            deflater = pool.acquire();
+            output = new byte[OUTPUT_BUFFER_SIZE];
+            if (encoding == Compression.Encoding.GZIP) {
+                crc = new CRC32();
+                target.getOutputStream().write(GZIP_HEADER);
+            }
+            deflate(buffer, 0, buffered);
+        }
+
+        private void deflate(byte[] b, int off, int len) throws IOException {
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            int written = deflater.deflate(output, 0, output.length, Deflater.NO_FLUSH);
+            if (written > 0) {
+                target.getOutputStream().write(output, 0, written);
+            }
+        }
+
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (deflater == null) {
+                if (buffered > 0) {
+                    target.setContentLength(buffered);
+                    target.getOutputStream().write(buffer, 0, buffered);
+                }
+                return;
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain();
+            }
+            if (crc != null) {
+                writeIntLE((int) crc.getValue());
+                writeIntLE((int) deflater.getBytesRead());
+            }
+        }
+
+        private void writeIntLE(int value) throws IOException {
+            ServletOutputStream out = target.getOutputStream();
+            out.write(value & 0xff);
+            out.write((value >>> 8) & 0xff);
+            out.write((value >>> 16) & 0xff);
+            out.write((value >>> 24) & 0xff);
+        }
+
+        private void release() {
+            if (deflater != null && !released) {
+                released = true;
+                pool.release(deflater);
+            }
+        }
+    }
+}
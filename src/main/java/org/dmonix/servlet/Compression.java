@@ -0,0 +1,130 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Option;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Some;
+
+/**
+ * Compression settings of a servlet and the negotiation of the content encoding with the client. <br>
+ * Supports <tt>gzip</tt> (preferred) and <tt>deflate</tt>.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class Compression {
+    /** The content encodings.*/
+    enum Encoding {
+        GZIP("gzip"), DEFLATE("deflate");
+
+        final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+    }
+
+    final int threshold;
+    private final DeflaterPool gzipPool;
+    private final DeflaterPool deflatePool;
+
+    /**
+     * Creates an instance
+     * @param level The compression level <tt>1-9</tt>
+     * @param threshold The min size in bytes of bodies to compress
+     */
+    Compression(int level, int threshold) {
+        int maxIdle = Runtime.getRuntime().availableProcessors() * 2;
+        this.threshold = threshold;
+        this.gzipPool = new DeflaterPool(level, true, maxIdle);
+        this.deflatePool = new DeflaterPool(level, false, maxIdle);
+    }
+
+    /**
+     * Wraps the response in a compressing response if the client accepts any of the supported encodings. <br>
+     * Unbuffered bodies are compressed from the first byte, buffering them up to the threshold would hold back
+     * flushes made to get the first data to the client early.
+     * @param req The HTTP request
+     * @param resp The HTTP response
+     * @param buffered If the body is produced in memory up front, only such bodies are subject to the threshold
+     * @return The compressing response, None if the client doesn't accept compressed responses
+     */
+    Option<CompressingResponse> wrap(HttpServletRequest req, HttpServletResponse resp, boolean buffered) {
+        int minSize = buffered ? threshold : 0;
+        return negotiate(req.getHeader("Accept-Encoding")).map(encoding -> new CompressingResponse(resp, encoding, pool(encoding), minSize));
+    }
+
+    DeflaterPool pool(Encoding encoding) {
+        return encoding == Encoding.GZIP ? gzipPool : deflatePool;
+    }
+
+    /**
+     * Ends all pooled deflaters.
+     */
+    void close() {
+        gzipPool.close();
+        deflatePool.close();
+    }
+
+    /**
+     * Selects the encoding to use based on the <tt>Accept-Encoding</tt> header. <br>
+     * Codings with <tt>q=0</tt> are not acceptable, the wildcard <tt>*</tt> accepts any coding.
+     * @param acceptEncoding The header, may be <code>null</code>
+     * @return The encoding, None if no supported encoding is accepted
+     */
+    static Option<Encoding> negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return None();
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            int paramStart = coding.indexOf(';');
+            String name = (paramStart < 0 ? coding : coding.substring(0, paramStart)).trim();
+            boolean acceptable = paramStart < 0 || !isZeroQuality(coding.substring(paramStart + 1));
+            if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                gzip = acceptable;
+            } else if (name.equalsIgnoreCase("deflate")) {
+                deflate = acceptable;
+            } else if (name.equals("*")) {
+                wildcard = acceptable;
+            }
+        }
+        if (gzip || (wildcard && !acceptEncoding.toLowerCase().contains("gzip"))) {
+            return Some(Encoding.GZIP);
+        }
+        return deflate ? Some(Encoding.DEFLATE) : None();
+    }
+
+    private static boolean isZeroQuality(String params) {
+        for (String param : params.split(";")) {
+            String p = param.trim();
+            if (p.startsWith("q=") || p.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(p.substring(2).trim()) <= 0;
+                } catch (NumberFormatException ex) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
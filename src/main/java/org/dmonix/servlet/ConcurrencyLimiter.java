@@ -0,0 +1,135 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive limit of the number of concurrently executing handlers. <br>
+ * The limit follows a gradient algorithm (in the spirit of TCP Vegas) comparing the latency of each handler invocation
+ * with the long term average latency. <br>
+ * As long as the latency stays within the tolerance of the average the limit grows by roughly its square root,
+ * once requests start queuing up and the latency increases the limit shrinks by the ratio of the average to the measured latency. <br>
+ * Admission is a single CAS on the in-flight counter. Updating the limit is lock-free, a sample arriving while another
+ * thread is updating the limit is simply dropped.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class ConcurrencyLimiter {
+    /** How much the measured latency may exceed the average before the limit is shrunk.*/
+    private static final double TOLERANCE = 1.5;
+
+    /** The weight of each new limit, smooths out the effect of single slow/fast requests.*/
+    private static final double SMOOTHING = 0.2;
+
+    /** The weight of each sample in the long term average latency, i.e. an average over roughly the last 600 samples.*/
+    private static final double AVERAGE_WEIGHT = 1.0 / 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicBoolean updating = new AtomicBoolean();
+
+    /** The current limit, only written by the thread holding {@link #updating}.*/
+    private volatile double limit;
+
+    /** The long term average latency, only accessed by the thread holding {@link #updating}.*/
+    private double averageNanos;
+
+    /**
+     * Creates an instance.
+     * @param initialLimit The initial limit
+     * @param minLimit The min limit
+     * @param maxLimit The max limit
+     */
+    ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.min(Math.max(initialLimit, minLimit), maxLimit);
+    }
+
+    /**
+     * Tries to admit a request.
+     * @return <code>true</code> if admitted in which case {@link #release(long)} must be invoked once the handler is done
+     */
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Releases an admitted request and adjusts the limit from its latency.
+     * @param latencyNanos The time spent in the handler
+     */
+    void release(long latencyNanos) {
+        int concurrent = inFlight.getAndDecrement();
+        if (latencyNanos <= 0 || !updating.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            update(latencyNanos, concurrent);
+        } finally {
+            updating.set(false);
+        }
+    }
+
+    private void update(long latencyNanos, int concurrent) {
+        if (averageNanos == 0) {
+            averageNanos = latencyNanos;
+            return;
+        }
+        averageNanos += (latencyNanos - averageNanos) * AVERAGE_WEIGHT;
+        //the load has dropped, let the average recover faster than the long window would allow
+        if (averageNanos > 2 * latencyNanos) {
+            averageNanos *= 0.95;
+        }
+
+        double current = limit;
+        //far from the limit the latency says nothing about the capacity, don't grow the limit without load
+        if (concurrent < current / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * averageNanos / latencyNanos));
+        double target = current * gradient + Math.sqrt(current);
+        double newLimit = current * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.min(Math.max(newLimit, minLimit), maxLimit);
+    }
+
+    /**
+     * The current limit.
+     * @return The limit
+     */
+    int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * The number of currently admitted requests.
+     * @return The number of requests
+     */
+    int inFlight() {
+        return inFlight.get();
+    }
+}
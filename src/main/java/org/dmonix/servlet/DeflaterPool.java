@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Bounded pool of {@link Deflater} instances. <br>
+ * Each deflater holds native zlib state, pooling them avoids allocating (and later finalizing) that state for every response.
+ * Deflaters returned to a full pool are ended directly.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class DeflaterPool {
+    private final BlockingQueue<Deflater> idle;
+    private final int level;
+    private final boolean nowrap;
+
+    /**
+     * Creates a pool
+     * @param level The compression level of the deflaters
+     * @param nowrap <tt>true</tt> for raw deflate data (as used in gzip), <tt>false</tt> for the zlib format
+     * @param maxIdle The max number of idle deflaters kept in the pool
+     */
+    DeflaterPool(int level, boolean nowrap, int maxIdle) {
+        this.idle = new ArrayBlockingQueue<>(maxIdle);
+        this.level = level;
+        this.nowrap = nowrap;
+    }
+
+    /**
+     * Get a deflater, either from the pool or a new one.
+     * @return The deflater
+     */
+    Deflater acquire() {
+        Deflater deflater = idle.poll();
+        return deflater != null ? deflater : new Deflater(level, nowrap);
+    }
+
+    /**
+     * Returns a deflater to the pool.
+     * @param deflater The deflater
+     */
+    void release(Deflater deflater) {
+        deflater.reset();
+        if (!idle.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Ends all idle deflaters.
+     */
+    void close() {
+        for (Deflater deflater = idle.poll(); deflater != null; deflater = idle.poll()) {
+            deflater.end();
+        }
+    }
+
+    int idle() {
+        return idle.size();
+    }
+}
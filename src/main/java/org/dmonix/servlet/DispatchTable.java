@@ -0,0 +1,141 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+/**
+ * Immutable table of the HTTP methods a {@link JSONServlet} class implements. <br>
+ * The table is computed once per servlet class by inspecting the handler methods declared in the class hierarchy,
+ * the <tt>Allow</tt> header and the <tt>405</tt> response for unsupported methods are rendered up front.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class DispatchTable {
+
+    private static final ClassValue<DispatchTable> tables = new ClassValue<DispatchTable>() {
+        @Override
+        protected DispatchTable computeValue(Class<?> type) {
+            return new DispatchTable(type);
+        }
+    };
+
+    /** Bitset of the methods the servlet has a handler for.*/
+    private final int supported;
+
+    /** Bitset of the methods the servlet has an asynchronous handler for.*/
+    private final int async;
+
+    /** The method whose handler answers <tt>HEAD</tt>, i.e. <tt>GET</tt> unless the servlet has a dedicated head handler.*/
+    private final HttpMethod headHandler;
+
+    /** The pre-rendered value for the <tt>Allow</tt> header.*/
+    final String allow;
+
+    /** The response to send for methods not supported by the servlet.*/
+    final ResponseTemplate methodNotAllowed;
+
+    private DispatchTable(Class<?> type) {
+        int supported = 0;
+        int async = 0;
+        for (HttpMethod method : HttpMethod.values()) {
+            if (declaresHandler(type, method.handlerName) || declaresHandler(type, method.handlerName + "WithTry")) {
+                supported |= method.bit;
+            }
+            if (declaresHandler(type, method.handlerName + "Async")) {
+                supported |= method.bit;
+                async |= method.bit;
+            }
+        }
+        this.headHandler = (supported & HttpMethod.HEAD.bit) != 0 ? HttpMethod.HEAD : HttpMethod.GET;
+        //without a dedicated head handler HEAD is answered by the GET handler
+        if ((supported & HttpMethod.GET.bit) != 0) {
+            supported |= HttpMethod.HEAD.bit;
+        }
+        this.supported = supported;
+        this.async = async;
+        this.allow = renderAllow();
+        this.methodNotAllowed = ResponseTemplate.METHOD_NOT_ALLOWED.withHeader("Allow", allow);
+    }
+
+    /**
+     * Get the dispatch table for the provided servlet class.
+     * @param type The servlet class
+     * @return The table
+     */
+    static DispatchTable of(Class<? extends JSONServlet> type) {
+        return tables.get(type);
+    }
+
+    /**
+     * If the servlet has a handler for the method.
+     * @param method The method
+     * @return <code>true</code> if supported
+     */
+    boolean isSupported(HttpMethod method) {
+        return (supported & method.bit) != 0;
+    }
+
+    /**
+     * If the servlet has an asynchronous handler for the method.
+     * @param method The method
+     * @return <code>true</code> if asynchronous
+     */
+    boolean isAsync(HttpMethod method) {
+        return (async & method.bit) != 0;
+    }
+
+    /**
+     * Get the method whose handler is invoked for the method. <br>
+     * <tt>HEAD</tt> is handled by the <tt>GET</tt> handler unless the servlet has a dedicated head handler, all other methods by their own handler.
+     * @param method The method
+     * @return The method of the handler
+     */
+    HttpMethod handlerFor(HttpMethod method) {
+        return method == HttpMethod.HEAD ? headHandler : method;
+    }
+
+    private String renderAllow() {
+        StringBuilder allow = new StringBuilder();
+        //OPTIONS and TRACE are always enabled
+        allow.append("OPTIONS, TRACE");
+        //if GET is supported then HEAD is also supported
+        if (isSupported(HttpMethod.GET)) {
+            allow.append(", GET, HEAD");
+        } else if (isSupported(HttpMethod.HEAD)) {
+            allow.append(", HEAD");
+        }
+        for (HttpMethod method : new HttpMethod[]{HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE}) {
+            if (isSupported(method)) {
+                allow.append(", ").append(method.name());
+            }
+        }
+        return allow.toString();
+    }
+
+    /**
+     * Checks if any class in the hierarchy below {@link JSONServlet} declares the handler.
+     */
+    private static boolean declaresHandler(Class<?> type, String name) {
+        for (Class<?> clazz = type; clazz != null && clazz != JSONServlet.class; clazz = clazz.getSuperclass()) {
+            try {
+                clazz.getDeclaredMethod(name, Request.class);
+                return true;
+            } catch (NoSuchMethodException ex) {
+                //not declared on this level, try the super class
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Option;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Option;
+import static javascalautils.OptionCompanion.Some;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+/**
+ * Utility for managing ETags and conditional <tt>GET</tt> requests.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class ETags {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ETags() {
+    }
+
+    /**
+     * Get the ETag for the response. <br>
+     * An <tt>ETag</tt> header provided by the handler takes precedence, else the tag is a hash of the body.
+     * Only successful responses with a buffered body get a generated tag.
+     * @param response The response
+     * @return The ETag if one could be resolved
+     */
+    static Option<String> of(Response response) {
+        if (response.responseCode != SC_OK) {
+            return None();
+        }
+        Option<String> provided = Option(response.header("ETag"));
+        if (provided.isDefined() || !response.isBuffered()) {
+            return provided;
+        }
+        return Some(hash(response.message));
+    }
+
+    /**
+     * Tags the HTTP response with the ETag of the response. <br>
+     * If the ETag matches the <tt>If-None-Match</tt> header of the request a <tt>304</tt> is set on the HTTP response
+     * together with the headers and cookies of the response, e.g. <tt>Cache-Control</tt> and <tt>Vary</tt>.
+     * @param req The HTTP request
+     * @param resp The HTTP response
+     * @param response The response
+     * @return <code>true</code> if the client already has the response, i.e. nothing more to write
+     */
+    static boolean notModified(HttpServletRequest req, HttpServletResponse resp, Response response) {
+        Option<String> etag = of(response);
+        if (etag.isEmpty()) {
+            return false;
+        }
+        String tag = etag.orNull();
+        resp.setHeader("ETag", tag);
+        if (matches(req.getHeader("If-None-Match"), tag)) {
+            response.writeHeadersAndCookies(resp);
+            resp.setStatus(SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the ETag is matched by the <tt>If-None-Match</tt> header. <br>
+     * Uses weak comparison as mandated for <tt>If-None-Match</tt>, i.e. any <tt>W/</tt> prefix is ignored.
+     * @param ifNoneMatch The header value, may be <code>null</code>
+     * @param etag The ETag
+     * @return <code>true</code> if matched
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = stripWeak(etag);
+        int start = 0;
+        while (start < ifNoneMatch.length()) {
+            int end = ifNoneMatch.indexOf(',', start);
+            if (end < 0) {
+                end = ifNoneMatch.length();
+            }
+            String candidate = ifNoneMatch.substring(start, end).trim();
+            if (candidate.equals("*") || stripWeak(candidate).equals(opaqueTag)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Creates a strong ETag from the body using 64 bit FNV-1a over the characters and the length.
+     * @param body The body
+     * @return The quoted ETag
+     */
+    static String hash(String body) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < body.length(); i++) {
+            hash ^= body.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return '"' + Long.toHexString(hash) + '-' + Integer.toHexString(body.length()) + '"';
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes events to clients subscribing using Server-Sent Events (<tt>text/event-stream</tt>). <br>
+ * Clients subscribe by a handler returning {@link ResponseBuilder#EventStreamResponse(Request, EventPublisher)}, the connection is
+ * then kept open using asynchronous processing and each published event is pushed to all subscribers. <br>
+ * Events are serialized to json once regardless of the number of subscribers and written using non-blocking IO,
+ * i.e. no thread is held per subscriber and a slow subscriber never blocks the publisher.
+ * Subscribers falling too far behind are disconnected, they will reconnect and resume. <br>
+ * The last events are kept to let reconnecting clients resume from the <tt>Last-Event-ID</tt> they provide. <br>
+ * Idle connections are kept alive with a periodic heartbeat comment.
+ * <pre>
+ * private final EventPublisher publisher = new EventPublisher();
+ *
+ * protected Response get(Request request) {
+ *     return EventStreamResponse(request, publisher);
+ * }
+ *
+ * void onUpdate(Data data) {
+ *     publisher.publish("update", data);
+ * }
+ * </pre>
+ * @author Peter Nerg
+ * @since 1.7
+ */
+public final class EventPublisher implements AutoCloseable {
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final int DEFAULT_HISTORY_SIZE = 256;
+    private static final long DEFAULT_HEARTBEAT_SECONDS = 15;
+    private static final int MAX_PENDING_EVENTS = 1024;
+
+    private final Object lock = new Object();
+    private final Set<EventSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final long[] historyIds;
+    private final byte[][] historyFrames;
+    private final ScheduledExecutorService heartbeat;
+    private final JsonCodec codec;
+    private long lastEventId;
+    private volatile boolean closed;
+
+    /**
+     * Creates a publisher keeping the last {@value #DEFAULT_HISTORY_SIZE} events and sending heartbeats every {@value #DEFAULT_HEARTBEAT_SECONDS} seconds.
+     */
+    public EventPublisher() {
+        this(DEFAULT_HISTORY_SIZE, DEFAULT_HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a publisher.
+     * @param historySize The number of events to keep for resuming clients
+     * @param heartbeatInterval The interval for heartbeats, <tt>0</tt> for no heartbeats
+     * @param unit The unit of the interval
+     */
+    public EventPublisher(int historySize, long heartbeatInterval, TimeUnit unit) {
+        this(historySize, heartbeatInterval, unit, JsonCodecs.defaultCodec());
+    }
+
+    /**
+     * Creates a publisher.
+     * @param historySize The number of events to keep for resuming clients
+     * @param heartbeatInterval The interval for heartbeats, <tt>0</tt> for no heartbeats
+     * @param unit The unit of the interval
+     * @param codec The codec used to serialize the event data
+     */
+    public EventPublisher(int historySize, long heartbeatInterval, TimeUnit unit, JsonCodec codec) {
+        this.historyIds = new long[Math.max(historySize, 1)];
+        this.historyFrames = new byte[historyIds.length][];
+        this.codec = codec;
+        if (heartbeatInterval > 0) {
+            heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "event-publisher-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            heartbeat.scheduleAtFixedRate(this::sendHeartbeat, heartbeatInterval, heartbeatInterval, unit);
+        } else {
+            heartbeat = null;
+        }
+    }
+
+    /**
+     * Publishes an unnamed event to all subscribers.
+     * @param data The event data, serialized to json
+     * @return The id of the event
+     */
+    public long publish(Object data) {
+        return publish(null, data);
+    }
+
+    /**
+     * Publishes an event to all subscribers.
+     * @param eventName The name of the event, <code>null</code> for unnamed events
+     * @param data The event data, serialized to json
+     * @return The id of the event
+     */
+    public long publish(String eventName, Object data) {
+        String payload = frameBody(eventName, codec.toJson(data));
+        long id;
+        synchronized (lock) {
+            id = ++lastEventId;
+            byte[] frame = ("id: " + id + "\n" + payload).getBytes(StandardCharsets.UTF_8);
+            int slot = (int) (id % historyIds.length);
+            historyIds[slot] = id;
+            historyFrames[slot] = frame;
+            //enqueued while holding the lock to guarantee the same order of events to all subscribers
+            subscribers.forEach(subscriber -> subscriber.enqueue(frame));
+        }
+        subscribers.forEach(EventSubscriber::drain);
+        return id;
+    }
+
+    /**
+     * Get the number of connected subscribers.
+     * @return The number of subscribers
+     */
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * Stops the heartbeats and disconnects all subscribers.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+        subscribers.forEach(EventSubscriber::close);
+    }
+
+    /**
+     * Subscribes an asynchronous request for events.
+     * @param asyncContext The context of the request
+     * @param out The output stream of the response
+     * @param lastEventId The id of the last event received by the client, <tt>-1</tt> if none
+     * @throws IOException If failing to setup the subscriber
+     */
+    void subscribe(AsyncContext asyncContext, ServletOutputStream out, long lastEventId) throws IOException {
+        EventSubscriber subscriber = new EventSubscriber(this, asyncContext, out, MAX_PENDING_EVENTS);
+        asyncContext.setTimeout(0);
+        asyncContext.addListener(subscriber);
+        out.setWriteListener(subscriber);
+        synchronized (lock) {
+            eventsSince(lastEventId).forEach(subscriber::enqueue);
+            subscribers.add(subscriber);
+        }
+        if (subscriber.isClosed()) {
+            //the request completed/failed while subscribing, i.e. the subscriber may have unsubscribed before being added
+            unsubscribe(subscriber);
+            return;
+        }
+        if (closed) {
+            subscriber.close();
+            return;
+        }
+        subscriber.drain();
+    }
+
+    /**
+     * Writes all kept events after the provided id, used for clients not able to keep the connection open.
+     * @param out The output stream to write to
+     * @param lastEventId The id of the last event received by the client, <tt>-1</tt> if none
+     * @throws IOException Any exception during writing
+     */
+    void writeEventsSince(ServletOutputStream out, long lastEventId) throws IOException {
+        List<byte[]> frames;
+        synchronized (lock) {
+            frames = eventsSince(lastEventId);
+        }
+        for (byte[] frame : frames) {
+            out.write(frame);
+        }
+    }
+
+    void unsubscribe(EventSubscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Get the kept events after the provided id, must be invoked holding the lock. <br>
+     * New clients (id <tt>-1</tt>) get no history, resuming clients get all kept events in case they've missed more than what's kept.
+     */
+    private List<byte[]> eventsSince(long eventId) {
+        List<byte[]> frames = new ArrayList<>();
+        if (eventId < 0) {
+            return frames;
+        }
+        long oldest = Math.max(eventId + 1, lastEventId - historyIds.length + 1);
+        for (long id = oldest; id <= lastEventId; id++) {
+            int slot = (int) (id % historyIds.length);
+            if (historyIds[slot] == id) {
+                frames.add(historyFrames[slot]);
+            }
+        }
+        return frames;
+    }
+
+    private void sendHeartbeat() {
+        subscribers.forEach(subscriber -> {
+            subscriber.enqueue(HEARTBEAT);
+            subscriber.drain();
+        });
+    }
+
+    /**
+     * Renders the event name and data lines of an event frame, multi-line data is split into several data lines.
+     */
+    private static String frameBody(String eventName, String data) {
+        StringBuilder sb = new StringBuilder(data.length() + 32);
+        if (eventName != null) {
+            sb.append("event: ").append(eventName).append('\n');
+        }
+        for (String line : data.split("\r\n|\r|\n", -1)) {
+            sb.append("data: ").append(line).append('\n');
+        }
+        return sb.append('\n').toString();
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static javascalautils.OptionCompanion.Some;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+/**
+ * Response subscribing the client on the events of an {@link EventPublisher}. <br>
+ * The request is put in asynchronous mode and the connection kept open until either side closes it. <br>
+ * Containers/servlets not supporting asynchronous processing get the events since the <tt>Last-Event-ID</tt> and
+ * a <tt>retry</tt> hint, i.e. the client falls back to reconnecting (polling).
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class EventStreamResponse extends Response {
+    static final String MEDIA_TYPE = "text/event-stream";
+    private static final byte[] RETRY = "retry: 3000\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final Request request;
+    private final EventPublisher publisher;
+
+    EventStreamResponse(Request request, EventPublisher publisher) {
+        super(SC_OK, "", Some(MEDIA_TYPE), Some("UTF-8"));
+        this.request = request;
+        this.publisher = publisher;
+        addHeader("Cache-Control", "no-cache");
+        //prevent proxies such as nginx from buffering the stream
+        addHeader("X-Accel-Buffering", "no");
+    }
+
+    @Override
+    boolean isBuffered() {
+        return false;
+    }
+
+    @Override
+    boolean isOpenEnded() {
+        return true;
+    }
+
+    @Override
+    void writeBody(HttpServletResponse resp) throws IOException {
+        HttpServletRequest req = request.request();
+        long lastEventId = lastEventId(req.getHeader("Last-Event-ID"));
+        if (!req.isAsyncSupported()) {
+            publisher.writeEventsSince(resp.getOutputStream(), lastEventId);
+            resp.getOutputStream().write(RETRY);
+            return;
+        }
+        AsyncContext asyncContext = req.isAsyncStarted() ? req.getAsyncContext() : req.startAsync();
+        publisher.subscribe(asyncContext, resp.getOutputStream(), lastEventId);
+    }
+
+    static long lastEventId(String header) {
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A client subscribing on events from an {@link EventPublisher}. <br>
+ * Events are queued and written using non-blocking IO, the queue is drained by whichever thread publishes
+ * or by the container once the connection can accept more data.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class EventSubscriber implements WriteListener, AsyncListener {
+    private final EventPublisher publisher;
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream out;
+    private final int maxPending;
+    private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    /** If data has been written since the last flush, initially set to flush the headers.*/
+    private boolean unflushed = true;
+
+    EventSubscriber(EventPublisher publisher, AsyncContext asyncContext, ServletOutputStream out, int maxPending) {
+        this.publisher = publisher;
+        this.asyncContext = asyncContext;
+        this.out = out;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Queues an event frame, a subscriber with too many pending frames is disconnected.
+     * @param frame The frame
+     */
+    void enqueue(byte[] frame) {
+        if (pendingCount.incrementAndGet() > maxPending) {
+            close();
+            return;
+        }
+        pending.add(frame);
+    }
+
+    /**
+     * Writes as many pending frames as the connection accepts without blocking.
+     */
+    synchronized void drain() {
+        if (closed.get()) {
+            return;
+        }
+        try {
+            while (out.isReady()) {
+                byte[] frame = pending.poll();
+                if (frame != null) {
+                    pendingCount.decrementAndGet();
+                    out.write(frame);
+                    unflushed = true;
+                } else if (unflushed) {
+                    unflushed = false;
+                    out.flush();
+                } else {
+                    return;
+                }
+            }
+        } catch (IOException | IllegalStateException ex) {
+            close();
+        }
+    }
+
+    /**
+     * Disconnects the subscriber.
+     */
+    void close() {
+        if (closed.compareAndSet(false, true)) {
+            publisher.unsubscribe(this);
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException ex) {
+                //already completed by the container
+            }
+        }
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    @Override
+    public void onWritePossible() {
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        closed.set(true);
+        publisher.unsubscribe(this);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Table mapping exception classes to the responses rendered for them. <br>
+ * A thrown exception is mapped by the mapping registered for its class or the closest registered super class.
+ * The resolved mapping is cached per exception class, i.e. the class hierarchy is only traversed once per exception class. <br>
+ * Exceptions without a registered mapping are rendered by the provided fallback.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class ExceptionMappings {
+
+    private final Map<Class<?>, Function<Throwable, Response>> registered = new ConcurrentHashMap<>();
+
+    private final Function<Throwable, Response> fallback;
+
+    /** The resolved mappings, cleared on each registration. Held per instance, thus released together with the servlet.*/
+    private final Map<Class<?>, Function<Throwable, Response>> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an instance.
+     * @param fallback Renders exceptions without a registered mapping
+     */
+    ExceptionMappings(Function<Throwable, Response> fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Registers a mapping for an exception class and all its sub classes. <br>
+     * Mappings are expected to be registered while initializing the servlet, i.e. before any exception is mapped.
+     * @param type The exception class
+     * @param mapper Creates the response for the exception
+     * @param <T> The exception type
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T extends Throwable> void register(Class<T> type, Function<? super T, Response> mapper) {
+        registered.put(type, (Function<Throwable, Response>) mapper);
+        resolved.clear();
+    }
+
+    /**
+     * Get the response for an exception.
+     * @param throwable The exception
+     * @return The response
+     */
+    Response responseFor(Throwable throwable) {
+        return resolved.computeIfAbsent(throwable.getClass(), this::resolve).apply(throwable);
+    }
+
+    private Function<Throwable, Response> resolve(Class<?> type) {
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            Function<Throwable, Response> mapper = registered.get(clazz);
+            if (mapper != null) {
+                return mapper;
+            }
+        }
+        return fallback;
+    }
+}
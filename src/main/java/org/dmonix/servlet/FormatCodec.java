@@ -0,0 +1,59 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * SPI for additional body formats negotiated with the client, e.g. <tt>CBOR</tt>, <tt>MessagePack</tt> or <tt>Smile</tt>. <br>
+ * Json is always supported and the default, formats are added by registering the implementation as a service under
+ * <tt>META-INF/services/org.dmonix.servlet.FormatCodec</tt>. <br>
+ * The format of a request body is chosen on the <tt>Content-Type</tt> of the request (see {@link Request#fromBody(Class)}),
+ * the format of a response on the <tt>Accept</tt> header (see {@link ResponseBuilder#NegotiatedResponse(Request, Object)}). <br>
+ * Implementations must be thread safe and have a public no-arg constructor.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+public interface FormatCodec {
+
+    /**
+     * Get the media type of the format.
+     * @return The media type, e.g. <tt>application/cbor</tt>
+     */
+    String mediaType();
+
+    /**
+     * Parses an object from the encoded data. <br>
+     * The stream must not be closed.
+     * @param in The encoded data
+     * @param type The type to parse
+     * @param <T> The return type
+     * @return The parsed object
+     * @throws IOException Any exception during reading/parsing
+     */
+    <T> T decode(InputStream in, Class<T> type) throws IOException;
+
+    /**
+     * Encodes the object onto the stream. <br>
+     * The stream must not be closed.
+     * @param object The object, may be <code>null</code>
+     * @param out The stream to write to
+     * @throws IOException Any exception during writing/encoding
+     */
+    void encode(Object object, OutputStream out) throws IOException;
+}
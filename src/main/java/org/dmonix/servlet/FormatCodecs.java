@@ -0,0 +1,113 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Option;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Some;
+
+/**
+ * Negotiates the {@link FormatCodec} to use for request and response bodies. <br>
+ * Json is not represented by a codec, a negotiation resulting in json yields <code>None</code>.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class FormatCodecs {
+
+    /** The media type of the default format.*/
+    static final String JSON = "application/json";
+
+    /** The codecs registered as services.*/
+    private static final FormatCodecs registered = new FormatCodecs(loadRegistered());
+
+    private final List<FormatCodec> codecs;
+
+    FormatCodecs(List<FormatCodec> codecs) {
+        this.codecs = codecs;
+    }
+
+    /**
+     * Get the codecs registered as services.
+     * @return The codecs
+     */
+    static FormatCodecs registered() {
+        return registered;
+    }
+
+    /**
+     * If there are no other formats than json, i.e. there is nothing to negotiate.
+     * @return <code>true</code> if json only
+     */
+    boolean isEmpty() {
+        return codecs.isEmpty();
+    }
+
+    /**
+     * Chooses the format for a response. <br>
+     * The first media range matching any acceptable format decides, json wins if it's matched by the same range as another format.
+     * Formats refused by a more specific range with <tt>q=0</tt> are skipped, e.g. <tt>*&#47;*, application/json;q=0</tt> doesn't yield json. <br>
+     * If no format is acceptable json is used, i.e. the client gets the default format rather than a <tt>406</tt>.
+     * @param ranges The accepted media ranges ordered with the most preferred first, see {@link MediaRanges#parse(String)}
+     * @param refused The refused media ranges, see {@link MediaRanges#refused(String)}
+     * @return The codec, None for json
+     */
+    Option<FormatCodec> forAccept(List<String> ranges, List<String> refused) {
+        if (codecs.isEmpty()) {
+            return None();
+        }
+        for (String range : ranges) {
+            if (MediaRanges.matches(range, JSON) && MediaRanges.isAcceptable(JSON, ranges, refused)) {
+                return None();
+            }
+            for (FormatCodec codec : codecs) {
+                if (MediaRanges.matches(range, codec.mediaType()) && MediaRanges.isAcceptable(codec.mediaType(), ranges, refused)) {
+                    return Some(codec);
+                }
+            }
+        }
+        return None();
+    }
+
+    /**
+     * Chooses the format of a request body. <br>
+     * Bodies without a <tt>Content-Type</tt> or with a type not matching any format are treated as json.
+     * @param contentType The content type of the request, may be <code>null</code>
+     * @return The codec, None for json
+     */
+    Option<FormatCodec> forContentType(String contentType) {
+        if (contentType == null) {
+            return None();
+        }
+        for (FormatCodec codec : codecs) {
+            if (MediaRanges.matches(codec.mediaType(), contentType)) {
+                return Some(codec);
+            }
+        }
+        return None();
+    }
+
+    private static List<FormatCodec> loadRegistered() {
+        List<FormatCodec> codecs = new ArrayList<>();
+        ServiceLoader.load(FormatCodec.class).forEach(codecs::add);
+        return Collections.unmodifiableList(codecs);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonNull;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Spliterator;
+
+/**
+ * The default {@link JsonCodec} based on {@link Gson}.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+public final class GsonCodec implements JsonCodec {
+    private final Gson gson;
+
+    /**
+     * Creates a codec using the shared Gson instance of the framework.
+     */
+    public GsonCodec() {
+        this(GsonProvider.gson);
+    }
+
+    /**
+     * Creates a codec using the provided Gson instance, e.g. one with custom adapters or settings.
+     * @param gson The Gson instance
+     */
+    public GsonCodec(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public <T> T fromJson(Reader reader, Class<T> type) {
+        return gson.fromJson(reader, type);
+    }
+
+    @Override
+    public String toJson(Object object) {
+        return gson.toJson(object);
+    }
+
+    @Override
+    public void toJson(Object object, Writer writer) throws IOException {
+        JsonWriter jsonWriter = gson.newJsonWriter(writer);
+        if (object == null) {
+            gson.toJson(JsonNull.INSTANCE, jsonWriter);
+        } else {
+            gson.toJson(object, object.getClass(), jsonWriter);
+        }
+        jsonWriter.flush();
+    }
+
+    @Override
+    public <T> Spliterator<T> arrayElements(Reader reader, Class<T> type, int chunkSize) throws IOException {
+        JsonReader jsonReader = gson.newJsonReader(reader);
+        jsonReader.beginArray();
+        return new JsonArraySpliterator<>(gson, jsonReader, type, chunkSize);
+    }
+}
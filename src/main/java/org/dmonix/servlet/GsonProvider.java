@@ -0,0 +1,53 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapterFactory;
+
+import java.util.ServiceLoader;
+
+/**
+ * Provides the single {@link Gson} instance shared by the parsing and response building parts of the framework. <br>
+ * Sharing the instance means the type adapters are resolved and cached once. <br>
+ * Any {@link TypeAdapterFactory} registered as a service under
+ * <tt>META-INF/services/com.google.gson.TypeAdapterFactory</tt> is automatically registered with the instance.
+ * This allows for plugging in pre-compiled adapters for hot types instead of relying on the reflection based binding,
+ * e.g. the adapters generated for <tt>@JsonCodec</tt> annotated DTOs by the <tt>simple-servlet-framework-processor</tt>.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class GsonProvider {
+
+    /** The shared instance.*/
+    static final Gson gson = create();
+
+    private GsonProvider() {
+    }
+
+    /**
+     * Creates a Gson instance with all {@link TypeAdapterFactory} services registered.
+     * @return The instance
+     */
+    static Gson create() {
+        GsonBuilder builder = new GsonBuilder();
+        for (TypeAdapterFactory factory : ServiceLoader.load(TypeAdapterFactory.class)) {
+            builder.registerTypeAdapterFactory(factory);
+        }
+        return builder.create();
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory for the executors used to offload blocking handlers from the container threads. <br>
+ * The framework is compiled for Java 8 hence the presence of virtual threads is detected at runtime.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class HandlerExecutors {
+
+    private static final AtomicInteger poolCounter = new AtomicInteger();
+
+    private HandlerExecutors() {
+    }
+
+    /**
+     * Creates an executor for running handlers. <br>
+     * On a JDK with virtual threads a virtual-thread-per-task executor is returned,
+     * else a pool of at most <tt>maxPlatformThreads</tt> daemon threads with a queue of at most <tt>maxQueued</tt> tasks.
+     * @param maxPlatformThreads The max number of threads in case the platform pool is used
+     * @param maxQueued The max number of tasks waiting for a thread in case the platform pool is used
+     * @return The executor
+     */
+    static ExecutorService newHandlerExecutor(int maxPlatformThreads, int maxQueued) {
+        ExecutorService executor = newVirtualThreadExecutor();
+        return executor != null ? executor : newPlatformThreadExecutor(maxPlatformThreads, maxQueued);
+    }
+
+    /**
+     * Creates an executor with one virtual thread per task.
+     * @return The executor or <code>null</code> if virtual threads are not supported by the JDK
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            //not a JDK with (enabled) virtual threads
+            return null;
+        }
+    }
+
+    /**
+     * Creates a bounded pool of daemon platform threads with a bounded queue. <br>
+     * Tasks submitted while the queue is full are rejected with a {@link java.util.concurrent.RejectedExecutionException}.
+     * Idle threads are allowed to time out.
+     * @param maxThreads The max number of threads
+     * @param maxQueued The max number of tasks waiting for a thread
+     * @return The executor
+     */
+    static ExecutorService newPlatformThreadExecutor(int maxThreads, int maxQueued) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(maxQueued), threadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory threadFactory() {
+        String prefix = "json-servlet-handler-" + poolCounter.incrementAndGet() + "-";
+        AtomicInteger threadCounter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Try;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The HTTP methods with handlers in the {@link JSONServlet}. <br>
+ * Each method knows the name of its handlers and how to invoke them.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+enum HttpMethod {
+    GET("get") {
+        @Override
+        Try<Response> invokeWithTry(JSONServlet servlet, Request request) {
+            return servlet.getWithTry(request);
+        }
+
+        @Override
+        CompletionStage<Response> invokeAsync(JSONServlet servlet, Request request) {
+            return servlet.getAsync(request);
+        }
+    },
+    HEAD("head") {
+        @Override
+        Try<Response> invokeWithTry(JSONServlet servlet, Request request) {
+            return servlet.headWithTry(request);
+        }
+
+        @Override
+        CompletionStage<Response> invokeAsync(JSONServlet servlet, Request request) {
+            return servlet.headAsync(request);
+        }
+    },
+    POST("post") {
+        @Override
+        Try<Response> invokeWithTry(JSONServlet servlet, Request request) {
+            return servlet.postWithTry(request);
+        }
+
+        @Override
+        CompletionStage<Response> invokeAsync(JSONServlet servlet, Request request) {
+            return servlet.postAsync(request);
+        }
+    },
+    PUT("put") {
+        @Override
+        Try<Response> invokeWithTry(JSONServlet servlet, Request request) {
+            return servlet.putWithTry(request);
+        }
+
+        @Override
+        CompletionStage<Response> invokeAsync(JSONServlet servlet, Request request) {
+            return servlet.putAsync(request);
+        }
+    },
+    DELETE("delete") {
+        @Override
+        Try<Response> invokeWithTry(JSONServlet servlet, Request request) {
+            return servlet.deleteWithTry(request);
+        }
+
+        @Override
+        CompletionStage<Response> invokeAsync(JSONServlet servlet, Request request) {
+            return servlet.deleteAsync(request);
+        }
+    };
+
+    /** The name of the plain handler method, e.g. <tt>get</tt>.*/
+    final String handlerName;
+
+    /** The bit representing this method in a bitset.*/
+    final int bit;
+
+    HttpMethod(String handlerName) {
+        this.handlerName = handlerName;
+        this.bit = 1 << ordinal();
+    }
+
+    /**
+     * Invokes the <tt>*WithTry</tt> handler for this method.
+     * @param servlet The servlet
+     * @param request The request data
+     * @return The response data in case of Success, else a Failure
+     */
+    abstract Try<Response> invokeWithTry(JSONServlet servlet, Request request);
+
+    /**
+     * Invokes the <tt>*Async</tt> handler for this method.
+     * @param servlet The servlet
+     * @param request The request data
+     * @return The stage completing with the response data
+     */
+    abstract CompletionStage<Response> invokeAsync(JSONServlet servlet, Request request);
+}
@@ -15,18 +15,32 @@
  */
 package org.dmonix.servlet;
 
+import javascalautils.Option;
 import javascalautils.Try;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Option;
+import static javascalautils.OptionCompanion.Some;
+import static javascalautils.TryCompanion.Failure;
+import static javascalautils.TryCompanion.Success;
 import static javascalautils.TryCompanion.Try;
 
 /**
@@ -36,61 +50,669 @@ import static javascalautils.TryCompanion.Try;
  */
 public abstract class JSONServlet extends HttpServlet implements RequestParser, ResponseBuilder {
 
+    /**
+     * Init parameter (<tt>true/false</tt>) enabling offloading of the handlers to a separate executor. <br>
+     * The request is put in asynchronous mode and the handler is run on a virtual thread (if supported by the JDK) or
+     * on a bounded pool of platform threads, thus releasing the container thread during blocking operations. <br>
+     * Requests not fitting in the queue of the platform pool are answered with a <tt>503</tt>.
+     * @since 1.7
+     */
+    public static final String PARAM_OFFLOAD_HANDLERS = "offload-handlers";
+
+    /**
+     * Init parameter for the max number of platform threads used when offloading handlers on a JDK without virtual threads. <br>
+     * Defaults to {@value #DEFAULT_OFFLOAD_POOL_SIZE}
+     * @since 1.7
+     */
+    public static final String PARAM_OFFLOAD_POOL_SIZE = "offload-pool-size";
+
+    /**
+     * Init parameter for the max number of handlers waiting for a platform thread when offloading handlers on a JDK without virtual threads. <br>
+     * Defaults to {@value #DEFAULT_OFFLOAD_QUEUE_SIZE}
+     * @since 1.7
+     */
+    public static final String PARAM_OFFLOAD_QUEUE_SIZE = "offload-queue-size";
+
+    /**
+     * Init parameter for the max time in milliseconds an asynchronous handler may take to respond. <br>
+     * Requests not responded to in time are answered with a <tt>503 - Service unavailable</tt>, <tt>0</tt> disables the timeout. <br>
+     * Defaults to {@value #DEFAULT_ASYNC_TIMEOUT}
+     * @since 1.7
+     */
+    public static final String PARAM_ASYNC_TIMEOUT = "async-timeout";
+
+    /**
+     * Init parameter (<tt>true/false</tt>) enabling ETags for <tt>GET</tt> responses. <br>
+     * Successful responses are tagged either with the <tt>ETag</tt> header provided by the handler or a hash of the body.
+     * Requests with a matching <tt>If-None-Match</tt> header are answered with a bodiless <tt>304 - Not Modified</tt>.
+     * @since 1.7
+     */
+    public static final String PARAM_ETAG = "etag";
+
+    /**
+     * Init parameter for the max allowed size in bytes of request bodies. <br>
+     * The limit can be overridden per method by suffixing the parameter with the method name, e.g. <tt>max-body-size.POST</tt>. <br>
+     * Requests with a larger <tt>Content-Length</tt> are rejected with a <tt>413</tt> without invoking the handler,
+     * bodies found to be larger while parsing fail with a {@link JSONServletException#PayloadTooLargeException()}. <br>
+     * No limit by default.
+     * @since 1.7
+     */
+    public static final String PARAM_MAX_BODY_SIZE = "max-body-size";
+
+    /**
+     * Init parameter for the class name of the {@link JsonCodec} to use for the servlet. <br>
+     * The class must have a public no-arg constructor. <br>
+     * If not set the first codec registered as a service is used, else {@link GsonCodec}.
+     * @since 1.7
+     */
+    public static final String PARAM_JSON_CODEC = "json-codec";
+
+    /**
+     * Init parameter (<tt>true/false</tt>) enabling latency metrics for the servlet. <br>
+     * The time spent per request is recorded per HTTP method and status class, split on parsing, handler and writing.
+     * The metrics are exposed by the {@link MetricsServlet} keyed on the name of the servlet.
+     * @since 1.7
+     */
+    public static final String PARAM_METRICS = "metrics";
+
+    /**
+     * Init parameter (<tt>true/false</tt>) enabling compression of responses. <br>
+     * Responses to clients accepting <tt>gzip</tt> or <tt>deflate</tt> are compressed on the fly, bodies smaller than
+     * {@link #PARAM_COMPRESSION_THRESHOLD} are sent uncompressed.
+     * @since 1.7
+     */
+    public static final String PARAM_COMPRESSION = "compression";
+
+    /**
+     * Init parameter for the min size in bytes of response bodies to compress. <br>
+     * Applies to buffered bodies only, streamed bodies are compressed from the first byte to not hold back their flushes. <br>
+     * Defaults to {@value #DEFAULT_COMPRESSION_THRESHOLD}
+     * @since 1.7
+     */
+    public static final String PARAM_COMPRESSION_THRESHOLD = "compression-threshold";
+
+    /**
+     * Init parameter for the compression level <tt>1</tt> (fastest) to <tt>9</tt> (best compression). <br>
+     * Defaults to {@value #DEFAULT_COMPRESSION_LEVEL}, already shrinking typical json lists by ~85% while the higher levels
+     * cost considerably more CPU for a few percent smaller bodies.
+     * @since 1.7
+     */
+    public static final String PARAM_COMPRESSION_LEVEL = "compression-level";
+
+    /**
+     * Init parameter (<tt>true/false</tt>) enabling coalescing of concurrent identical <tt>GET</tt> requests. <br>
+     * Requests for the same path and query arriving while a request for it is being handled wait for that request and
+     * share its response instead of invoking the handler again. <br>
+     * Only enable for servlets whose <tt>GET</tt> responses depend on nothing but the path and query, e.g. not on headers or cookies.
+     * The one exception is the <tt>Accept</tt> header, when {@link FormatCodec}s are registered it's part of what identifies a request
+     * as the negotiated format of a shared response would otherwise be that of the first request. <br>
+     * Followers of a request producing a response that can't be shared (e.g. a streamed response) invoke the handler themselves
+     * on the handler executor, or on a pool sized by {@link #PARAM_OFFLOAD_POOL_SIZE} and {@link #PARAM_OFFLOAD_QUEUE_SIZE} if handlers are not offloaded.
+     * @since 1.7
+     */
+    public static final String PARAM_COALESCE_GET = "coalesce-get";
+
+    /**
+     * Init parameter (<tt>true/false</tt>) enabling adaptive concurrency limiting. <br>
+     * The number of concurrently executing handlers is limited to a limit continuously adapted from the measured handler latency,
+     * growing while the latency is stable and shrinking as soon as requests start queuing up. <br>
+     * Requests exceeding the limit are immediately rejected with a <tt>503 - Service unavailable</tt> and a <tt>Retry-After</tt> header.
+     * @since 1.7
+     */
+    public static final String PARAM_CONCURRENCY_LIMIT = "concurrency-limit";
+
+    /**
+     * Init parameter for the initial concurrency limit. <br>
+     * Defaults to {@value #DEFAULT_CONCURRENCY_LIMIT_INITIAL}
+     * @since 1.7
+     */
+    public static final String PARAM_CONCURRENCY_LIMIT_INITIAL = "concurrency-limit-initial";
+
+    /**
+     * Init parameter for the max concurrency limit. <br>
+     * Defaults to {@value #DEFAULT_CONCURRENCY_LIMIT_MAX}
+     * @since 1.7
+     */
+    public static final String PARAM_CONCURRENCY_LIMIT_MAX = "concurrency-limit-max";
+
+    private static final int DEFAULT_OFFLOAD_POOL_SIZE = 200;
+
+    private static final int DEFAULT_OFFLOAD_QUEUE_SIZE = 1000;
+
+    private static final long DEFAULT_ASYNC_TIMEOUT = 30_000;
+
+    private static final int DEFAULT_CONCURRENCY_LIMIT_INITIAL = 20;
+
+    private static final int DEFAULT_CONCURRENCY_LIMIT_MAX = 1000;
+
+    private static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    private static final int DEFAULT_COMPRESSION_LEVEL = 1;
+
+    private Option<ExecutorService> handlerExecutor = None();
+
+    /** Runs the handler for coalesced followers in case handlers are not offloaded.*/
+    private Option<ExecutorService> followerExecutor = None();
+
+    private DispatchTable dispatchTable;
+
+    private boolean etags;
+
+    private long asyncTimeout = DEFAULT_ASYNC_TIMEOUT;
+
+    private JsonCodec jsonCodec = JsonCodecs.defaultCodec();
+
+    private Option<ServletMetrics> metrics = None();
+
+    private Option<Compression> compression = None();
+
+    private Option<SingleFlight> singleFlight = None();
+
+    private Option<ConcurrencyLimiter> limiter = None();
+
+    private final ExceptionMappings exceptionMappings = new ExceptionMappings(this::defaultErrorResponse);
+
+    /** The max body size per method indexed on the ordinal of the method.*/
+    private final long[] maxBodySize = unlimitedBodySize();
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        dispatchTable = DispatchTable.of(getClass());
+        BatchTargets.register(config.getServletContext(), config.getServletName(), this);
+        etags = Boolean.parseBoolean(config.getInitParameter(PARAM_ETAG));
+        asyncTimeout = Option(config.getInitParameter(PARAM_ASYNC_TIMEOUT)).map(Long::parseLong).getOrElse(() -> DEFAULT_ASYNC_TIMEOUT);
+        String codecName = config.getInitParameter(PARAM_JSON_CODEC);
+        try {
+            jsonCodec = codecName != null ? JsonCodecs.forName(codecName) : JsonCodecs.defaultCodec();
+        } catch (IllegalArgumentException ex) {
+            throw new ServletException(ex);
+        }
+        long defaultMaxBodySize = Option(config.getInitParameter(PARAM_MAX_BODY_SIZE)).map(Long::parseLong).getOrElse(() -> Long.MAX_VALUE);
+        for (HttpMethod method : HttpMethod.values()) {
+            maxBodySize[method.ordinal()] = Option(config.getInitParameter(PARAM_MAX_BODY_SIZE + "." + method.name())).map(Long::parseLong).getOrElse(() -> defaultMaxBodySize);
+        }
+        if (Boolean.parseBoolean(config.getInitParameter(PARAM_METRICS))) {
+            metrics = Some(ServletMetrics.register(Option(config.getServletName()).getOrElse(() -> getClass().getName())));
+        }
+        if (Boolean.parseBoolean(config.getInitParameter(PARAM_COMPRESSION))) {
+            int threshold = Option(config.getInitParameter(PARAM_COMPRESSION_THRESHOLD)).map(Integer::parseInt).getOrElse(() -> DEFAULT_COMPRESSION_THRESHOLD);
+            int level = Option(config.getInitParameter(PARAM_COMPRESSION_LEVEL)).map(Integer::parseInt).getOrElse(() -> DEFAULT_COMPRESSION_LEVEL);
+            compression = Some(new Compression(level, threshold));
+        }
+        if (Boolean.parseBoolean(config.getInitParameter(PARAM_CONCURRENCY_LIMIT))) {
+            int initialLimit = Option(config.getInitParameter(PARAM_CONCURRENCY_LIMIT_INITIAL)).map(Integer::parseInt).getOrElse(() -> DEFAULT_CONCURRENCY_LIMIT_INITIAL);
+            int maxLimit = Option(config.getInitParameter(PARAM_CONCURRENCY_LIMIT_MAX)).map(Integer::parseInt).getOrElse(() -> DEFAULT_CONCURRENCY_LIMIT_MAX);
+            limiter = Some(new ConcurrencyLimiter(initialLimit, 1, maxLimit));
+        }
+        int poolSize = Option(config.getInitParameter(PARAM_OFFLOAD_POOL_SIZE)).map(Integer::parseInt).getOrElse(() -> DEFAULT_OFFLOAD_POOL_SIZE);
+        int queueSize = Option(config.getInitParameter(PARAM_OFFLOAD_QUEUE_SIZE)).map(Integer::parseInt).getOrElse(() -> DEFAULT_OFFLOAD_QUEUE_SIZE);
+        if (Boolean.parseBoolean(config.getInitParameter(PARAM_OFFLOAD_HANDLERS))) {
+            handlerExecutor = Some(HandlerExecutors.newHandlerExecutor(poolSize, queueSize));
+        }
+        if (Boolean.parseBoolean(config.getInitParameter(PARAM_COALESCE_GET))) {
+            //followers not sharing the response of the leader invoke the handler themselves, never on the thread completing the leader
+            if (handlerExecutor.isEmpty()) {
+                followerExecutor = Some(HandlerExecutors.newHandlerExecutor(poolSize, queueSize));
+            }
+            singleFlight = Some(new SingleFlight(handlerExecutor.isDefined() ? handlerExecutor.orNull() : followerExecutor.orNull()));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        handlerExecutor.forEach(ExecutorService::shutdown);
+        handlerExecutor = None();
+        followerExecutor.forEach(ExecutorService::shutdown);
+        followerExecutor = None();
+        compression.forEach(Compression::close);
+        ServletConfig config = getServletConfig();
+        if (config != null) {
+            BatchTargets.unregister(config.getServletContext(), this);
+        }
+        super.destroy();
+    }
+
+    /**
+     * Maps an exception type to the response rendered when a handler fails with it. <br>
+     * The mapping applies to the type and all its sub types unless they have a mapping of their own.
+     * Lookups are cached per exception class, mappings should therefore be registered when the servlet is created or initialized.
+     * @param type The exception type
+     * @param mapper Creates the response for the exception
+     * @param <T> The exception type
+     * @since 1.7
+     */
+    protected final <T extends Throwable> void mapException(Class<T> type, Function<? super T, Response> mapper) {
+        exceptionMappings.register(type, mapper);
+    }
+
+    /**
+     * Maps an exception type to a fixed response rendered when a handler fails with it. <br>
+     * Using a {@link ResponseTemplate} makes the error path allocation free.
+     * @param type The exception type
+     * @param response The response
+     * @since 1.7
+     * @see #mapException(Class, Function)
+     */
+    protected final void mapException(Class<? extends Throwable> type, Response response) {
+        exceptionMappings.register(type, throwable -> response);
+    }
+
+    /**
+     * Creates the error response for an exception. <br>
+     * Uses the mapping registered for the type of the exception with {@link #mapException(Class, Function)}, if any.
+     * @param throwable The underlying issue
+     * @return The response object
+     * @since 1.7
+     */
+    @Override
+    public Response ErrorResponse(Throwable throwable) {
+        return exceptionMappings.responseFor(throwable);
+    }
+
+    private Response defaultErrorResponse(Throwable throwable) {
+        return ResponseBuilder.super.ErrorResponse(throwable);
+    }
+
+    /**
+     * Get the codec used for parsing/serializing json. <br>
+     * Either the codec configured with {@link #PARAM_JSON_CODEC} or the default codec.
+     * @return The codec
+     * @since 1.7
+     */
+    @Override
+    public JsonCodec jsonCodec() {
+        return jsonCodec;
+    }
+
+    /**
+     * Parses an object from the json stream in the HTTP request. <br>
+     * The body is limited by the max body size configured for the method of the request and parsed with the configured {@link #jsonCodec()}.
+     * @param req The HTTP request
+     * @param type The type to parse
+     * @param <T> The return type
+     * @return The parsed object
+     * @since 1.7
+     */
+    @Override
+    public <T> Try<T> fromJson(HttpServletRequest req, Class<T> type) {
+        return fromJson(req, "UTF-8", type);
+    }
+
+    /**
+     * Parses an object from the json stream in the HTTP request. <br>
+     * The body is limited by the max body size configured for the method of the request and parsed with the configured {@link #jsonCodec()}.
+     * @param req The HTTP request
+     * @param charsetName The charset to expect
+     * @param type The type to parse
+     * @param <T> The return type
+     * @return The parsed object
+     * @since 1.7
+     */
+    @Override
+    public <T> Try<T> fromJson(HttpServletRequest req, String charsetName, Class<T> type) {
+        return ParserUtils.fromJson(req, charsetName, type, maxBodySize(req), jsonCodec);
+    }
+
+    /**
+     * Lazily parses the elements of a json array from the json stream in the HTTP request. <br>
+     * The body is limited by the max body size configured for the method of the request and parsed with the configured {@link #jsonCodec()}.
+     * @param req The HTTP request
+     * @param type The type of the elements
+     * @param <T> The element type
+     * @return The stream of elements, failure if the request doesn't start with a json array
+     * @since 1.7
+     */
+    @Override
+    public <T> Try<Stream<T>> streamJsonArray(HttpServletRequest req, Class<T> type) {
+        return ParserUtils.streamJsonArray(req, "UTF-8", type, maxBodySize(req), jsonCodec);
+    }
+
+    /**
+     * Get the max body size configured for the method of the request.
+     * @param req The HTTP request
+     * @return The max size in bytes, {@link Long#MAX_VALUE} for methods without a limit
+     */
+    private long maxBodySize(HttpServletRequest req) {
+        for (HttpMethod method : HttpMethod.values()) {
+            if (method.name().equals(req.getMethod())) {
+                return maxBodySize[method.ordinal()];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
     @Override
     protected final void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        writeResponse(resp, getWithTry(new Request(req)));
+        handle(HttpMethod.GET, req, resp);
+    }
+
+    /**
+     * Answers <tt>HEAD</tt> without writing a body. <br>
+     * The request is handled by the head handler if the servlet has one, else by the <tt>GET</tt> handler.
+     * The <tt>Content-Length</tt> is computed without rendering the body whenever possible.
+     * @since 1.7
+     */
+    @Override
+    protected final void doHead(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        handle(HttpMethod.HEAD, req, resp);
     }
 
     @Override
     protected final void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        writeResponse(resp, deleteWithTry(new Request(req)));
+        handle(HttpMethod.DELETE, req, resp);
     }
 
     @Override
     protected final void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        writeResponse(resp, postWithTry(new Request(req)));
+        handle(HttpMethod.POST, req, resp);
     }
 
     @Override
     protected final void doPut(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        writeResponse(resp, putWithTry(new Request(req)));
+        handle(HttpMethod.PUT, req, resp);
     }
 
     @Override
     protected final void doOptions(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        //get all methods the sub class is implementing
-        Set<String> methods = Arrays.stream(getClass().getDeclaredMethods()).map(Method::getName).collect(Collectors.toSet());
+        resp.setHeader("Allow", dispatchTable().allow);
+    }
+
+    /**
+     * Get the dispatch table for this servlet class. <br>
+     * The table is resolved during {@link #init(ServletConfig)}, servlets not initialized by a container resolve it on demand.
+     * @return The dispatch table
+     */
+    private DispatchTable dispatchTable() {
+        DispatchTable table = dispatchTable;
+        return table != null ? table : DispatchTable.of(getClass());
+    }
+
+    /**
+     * Invokes the handler for the method and writes the response. <br>
+     * Methods the servlet has no handler for are directly answered with a <tt>405</tt>,
+     * requests with a declared body larger than the configured limit with a <tt>413</tt>. <br>
+     * In case concurrency limiting is enabled requests exceeding the limit are directly answered with a <tt>503</tt>. <br>
+     * Coalesced <tt>GET</tt> requests are dispatched as asynchronous as they may have to wait for another request. <br>
+     * <tt>HEAD</tt> requests are handled by the <tt>GET</tt> handler unless the servlet has a dedicated head handler, thus also coalesced with <tt>GET</tt>.
+     * @param method The HTTP method
+     * @param req The HTTP request
+     * @param resp The HTTP response
+     * @throws IOException Any exception during processing
+     */
+    private void handle(HttpMethod method, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        DispatchTable table = dispatchTable();
+        HttpMethod handler = table.handlerFor(method);
+        long bodyLimit = maxBodySize[method.ordinal()];
+        RequestTimer timer = metrics.isDefined() ? metrics.orNull().start(method) : RequestTimer.NONE;
+        if (!table.isSupported(method)) {
+            writeResponse(resp, table.methodNotAllowed);
+            timer.completed(resp.getStatus());
+        } else if (req.getContentLengthLong() > bodyLimit) {
+            writeResponse(resp, ResponseTemplate.PAYLOAD_TOO_LARGE);
+            timer.completed(resp.getStatus());
+        } else if (limiter.isDefined() && !limiter.orNull().tryAcquire()) {
+            writeResponse(resp, ResponseTemplate.SERVICE_UNAVAILABLE);
+            timer.completed(resp.getStatus());
+        } else if (handler == HttpMethod.GET && singleFlight.isDefined()) {
+            Request request = new Request(req, bodyLimit, jsonCodec, timer);
+            dispatch(method, req, resp, limited(() -> singleFlight.orNull().execute(coalescingKey(req), () -> handler.invokeAsync(this, request))), timer);
+        } else if (table.isAsync(handler) || handlerExecutor.isDefined()) {
+            Request request = new Request(req, bodyLimit, jsonCodec, timer);
+            dispatch(method, req, resp, limited(() -> handler.invokeAsync(this, request)), timer);
+        } else {
+            long start = System.nanoTime();
+            Try<Response> response;
+            try {
+                response = handler.invokeWithTry(this, new Request(req, bodyLimit, jsonCodec, timer));
+            } finally {
+                if (limiter.isDefined()) {
+                    limiter.orNull().release(System.nanoTime() - start);
+                }
+            }
+            timer.handled();
+            respond(method, req, resp, response);
+            timer.completed(resp.getStatus());
+        }
+    }
+
+    /**
+     * Writes the response produced by a handler. <br>
+     * In case compression is enabled and accepted by the client the response is written through a compressing wrapper,
+     * except for <tt>HEAD</tt> as there is no body to compress. <br>
+     * Only buffered bodies are subject to the compression threshold, unbuffered ones are compressed from the first byte.
+     * @param method The HTTP method
+     * @param req The HTTP request
+     * @param resp The HTTP response
+     * @param response The response from the handler
+     * @throws IOException Any exception during processing
+     */
+    private void respond(HttpMethod method, HttpServletRequest req, HttpServletResponse resp, Try<Response> response) throws IOException {
+        //event streams stay open and flush on their own, compressing them would hold back the events
+        if (compression.isEmpty() || (response.isSuccess() && response.orNull().isOpenEnded())) {
+            write(method, req, resp, response);
+            return;
+        }
+        resp.setHeader("Vary", "Accept-Encoding");
+        Option<CompressingResponse> compressing = method == HttpMethod.HEAD ? None() : compression.orNull().wrap(req, resp, response.isFailure() || response.orNull().isBuffered());
+        if (compressing.isEmpty()) {
+            write(method, req, resp, response);
+            return;
+        }
+        CompressingResponse compressingResp = compressing.orNull();
+        try {
+            write(method, req, compressingResp, response);
+            compressingResp.finish();
+        } finally {
+            compressingResp.release();
+        }
+    }
+
+    /**
+     * Writes the response produced by a handler. <br>
+     * In case ETags are enabled a successful <tt>GET/HEAD</tt> response is tagged and answered with a <tt>304</tt> if the client already has it.
+     * @param method The HTTP method
+     * @param req The HTTP request
+     * @param resp The HTTP response
+     * @param response The response from the handler
+     * @throws IOException Any exception during processing
+     */
+    private void write(HttpMethod method, HttpServletRequest req, HttpServletResponse resp, Try<Response> response) throws IOException {
+        boolean conditional = etags && (method == HttpMethod.GET || method == HttpMethod.HEAD);
+        if (!conditional && method != HttpMethod.HEAD) {
+            writeResponse(resp, response);
+            return;
+        }
+        Response rsp;
+        try {
+            //get on a Failure throws the exception as is, thus avoiding the allocations of recover
+            rsp = response.get();
+        } catch (Throwable throwable) {
+            rsp = ErrorResponse(throwable);
+        }
+        if (conditional && ETags.notModified(req, resp, rsp)) {
+            rsp.discard();
+            return;
+        }
+        if (method == HttpMethod.HEAD) {
+            writeHead(resp, rsp);
+        } else {
+            writeResponse(resp, rsp);
+        }
+    }
+
+    /**
+     * Writes everything but the body of the response. <br>
+     * The <tt>Content-Length</tt> is set to the length the body would have had, unless it can't be known without writing the body.
+     * The response is discarded once written as its body never will be.
+     * @param resp The HTTP response
+     * @param response The response
+     * @throws IOException Any exception while computing the length
+     */
+    private static void writeHead(HttpServletResponse resp, Response response) throws IOException {
+        try {
+            writeHeaders(resp, response);
+        } finally {
+            response.discard();
+        }
+    }
+
+    private static void writeHeaders(HttpServletResponse resp, Response response) throws IOException {
+        resp.setStatus(response.responseCode);
+        response.writeHeadersAndCookies(resp);
+        if (response.mediaType.isDefined()) {
+            resp.setContentType(response.mediaType.orNull());
+        }
+        if (response.charEncoding.isDefined()) {
+            resp.setCharacterEncoding(response.charEncoding.orNull());
+        }
+        long length = response.contentLength();
+        if (length >= 0) {
+            resp.setContentLengthLong(length);
+        }
+    }
+
+    /**
+     * Writes the response produced by a handler. <br>
+     * Already completed responses are written directly on the calling thread.
+     * Pending responses put the request in asynchronous mode releasing the container thread, the response is then written once the future completes.
+     * Requests not responded to within {@link #PARAM_ASYNC_TIMEOUT} are answered with a <tt>503</tt>, requests failed by the container with a <tt>500</tt>.
+     * @param method The HTTP method
+     * @param req The HTTP request
+     * @param resp The HTTP response
+     * @param future The future owned by the request completing with the response from the handler
+     * @param timer The timer of the request
+     * @throws IOException Any exception during processing
+     */
+    private void dispatch(HttpMethod method, HttpServletRequest req, HttpServletResponse resp, CompletableFuture<Response> future, RequestTimer timer) throws IOException {
+        //already completed or the container can't do async, nothing to gain from going async
+        if (future.isDone() || !req.isAsyncSupported()) {
+            Try<Response> rsp = future.handle(JSONServlet::asTry).join();
+            timer.handled();
+            respond(method, req, resp, rsp);
+            timer.completed(resp.getStatus());
+            return;
+        }
+
+        AsyncContext asyncContext = req.startAsync();
+        //a timed out or failed request is answered by completing the future, whatever completes it first is responded with
+        asyncContext.setTimeout(asyncTimeout);
+        asyncContext.addListener(new PendingResponseListener(future));
+        future.whenComplete((rsp, throwable) -> {
+            timer.handled();
+            HttpServletResponse asyncResp = (HttpServletResponse) asyncContext.getResponse();
+            //open ended responses take over the request and complete it themselves, unless only the head is written
+            boolean complete = rsp == null || !rsp.isOpenEnded() || method == HttpMethod.HEAD;
+            try {
+                respond(method, (HttpServletRequest) asyncContext.getRequest(), asyncResp, asTry(rsp, throwable));
+            } catch (IOException | IllegalStateException ex) {
+                //the client has gone or the container has timed out the request
+                log("Failed to write asynchronous response", ex);
+                complete = true;
+            } finally {
+                timer.completed(asyncResp.getStatus());
+                if (complete) {
+                    asyncContext.complete();
+                }
+            }
+        });
+    }
+
+    /**
+     * Invokes an admitted handler releasing the admission once the handler completes. <br>
+     * The returned future is owned by the request, completing it before the handler (e.g. on a timeout) releases the admission
+     * and leaves any response shared with other requests untouched.
+     * @param handler The handler
+     * @return The future completing with the response data
+     */
+    private CompletableFuture<Response> limited(Supplier<CompletionStage<Response>> handler) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        if (limiter.isEmpty()) {
+            handler.get().whenComplete((rsp, throwable) -> complete(future, rsp, throwable));
+            return future;
+        }
+        ConcurrencyLimiter admitted = limiter.orNull();
+        long start = System.nanoTime();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                admitted.release(System.nanoTime() - start);
+            }
+        };
+        future.whenComplete((rsp, throwable) -> release.run());
+        CompletionStage<Response> response;
+        try {
+            response = handler.get();
+        } catch (RuntimeException ex) {
+            release.run();
+            throw ex;
+        }
+        response.whenComplete((rsp, throwable) -> {
+            release.run();
+            complete(future, rsp, throwable);
+        });
+        return future;
+    }
+
+    private static String coalescingKey(HttpServletRequest req) {
+        String query = req.getQueryString();
+        String key = query != null ? req.getRequestURI() + '?' + query : req.getRequestURI();
+        //responses negotiated on the Accept header may only be shared with requests accepting the same
+        return FormatCodecs.registered().isEmpty() ? key : key + '\n' + req.getHeader("Accept");
+    }
 
-        StringBuilder allow = new StringBuilder();
-        //OPTIONS and TRACE are always enabled
-        allow.append("OPTIONS");
-        allow.append(", ");
-        allow.append("TRACE");
-        //if GET is supported then HEAD is also supported
-        if (isOperationSupported(methods, "get")) {
-            allow.append(", ");
-            allow.append("GET");
-            allow.append(", ");
-            allow.append("HEAD");
+    private static long[] unlimitedBodySize() {
+        long[] sizes = new long[HttpMethod.values().length];
+        Arrays.fill(sizes, Long.MAX_VALUE);
+        return sizes;
+    }
+
+    private static Try<Response> asTry(Response response, Throwable throwable) {
+        if (throwable == null) {
+            return Success(response);
         }
-        if (isOperationSupported(methods, "post")) {
-            allow.append(", ");
-            allow.append("POST");
+        //futures wrap the cause when completing dependent stages
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        //the handler executor is saturated, the request is shed the same way as when exceeding the concurrency limit
+        if (cause instanceof RejectedExecutionException) {
+            return Success(ResponseTemplate.SERVICE_UNAVAILABLE);
         }
-        if (isOperationSupported(methods, "put")) {
-            allow.append(", ");
-            allow.append("PUT");
+        return Failure(cause);
+    }
+
+    /**
+     * Invokes the handler either directly or on the handler executor in case offloading is enabled.
+     * @param handler The handler
+     * @return The stage completing with the response data
+     */
+    private CompletionStage<Response> invoke(Supplier<Try<Response>> handler) {
+        if (handlerExecutor.isEmpty()) {
+            return complete(new CompletableFuture<>(), handler.get());
         }
-        if (isOperationSupported(methods, "delete")) {
-            allow.append(", ");
-            allow.append("DELETE");
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        try {
+            handlerExecutor.orNull().execute(() -> complete(future, handler.get()));
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
         }
+        return future;
+    }
 
-        resp.setHeader("Allow", allow.toString());
+    private static void complete(CompletableFuture<Response> future, Response response, Throwable throwable) {
+        if (throwable == null) {
+            future.complete(response);
+        } else {
+            future.completeExceptionally(throwable);
+        }
     }
 
-    private boolean isOperationSupported(Set<String> methods, String operation) {
-        return methods.contains(operation) || methods.contains(operation+"WithTry");
+    private static CompletableFuture<Response> complete(CompletableFuture<Response> future, Try<Response> response) {
+        if (response.isSuccess()) {
+            future.complete(response.orNull());
+        } else {
+            future.completeExceptionally(response.failed().orNull());
+        }
+        return future;
     }
 
     /**
@@ -120,6 +742,64 @@ public abstract class JSONServlet extends HttpServlet implements RequestParser,
         return Try(() -> get(request));
     }
 
+    /**
+     * Implements the <tt>GET</tt> method asynchronously. <br>
+     * Should be overridden by servlets with handlers that complete at a later point, e.g. non-blocking I/O. <br>
+     * If the returned stage is not yet completed the request is put in asynchronous mode (requires the servlet to be async supported)
+     * and the container thread is released until the stage completes. <br>
+     * An exceptionally completed stage is rendered using {@link #ErrorResponse(Throwable)}. <br>
+     * If not overridden this method invokes {@link #getWithTry(Request)}, on the handler executor in case {@link #PARAM_OFFLOAD_HANDLERS} is enabled. <br>
+     * In other words this method takes precedence over {@link #getWithTry(Request)} and {@link #get(Request)}.
+     * @param request The request data
+     * @return The stage completing with the response data
+     * @since 1.7
+     * @see #getWithTry(Request)
+     */
+    protected CompletionStage<Response> getAsync(Request request) {
+        return invoke(() -> getWithTry(request));
+    }
+
+    /**
+     * Implements the <tt>HEAD</tt> method. <br>
+     * May be overridden by servlets that can answer <tt>HEAD</tt> cheaper than <tt>GET</tt>, e.g. without loading the entity. <br>
+     * If not overridden <tt>HEAD</tt> is answered by the <tt>GET</tt> handler. <br>
+     * Only the status, headers and <tt>Content-Length</tt> of the returned response are written.
+     * @param request The request data
+     * @return The response data.
+     * @throws ServletException Any exception during processing
+     * @throws IOException Any exception during processing
+     * @since 1.7
+     */
+    protected Response head(Request request) throws ServletException, IOException {
+        return ErrorResponseUnsupportedOperation();
+    }
+
+    /**
+     * Implements the <tt>HEAD</tt> method. <br>
+     * If not overridden this method invokes {@link #head(Request)}. <br>
+     * In other words this method takes precedence over {@link #head(Request)} so overriding both will not make sense.
+     * @param request The request data
+     * @return The response data in case of Success, else a Failure
+     * @since 1.7
+     * @see #head(Request)
+     */
+    protected Try<Response> headWithTry(Request request) {
+        return Try(() -> head(request));
+    }
+
+    /**
+     * Implements the <tt>HEAD</tt> method asynchronously. <br>
+     * If not overridden this method invokes {@link #headWithTry(Request)}, on the handler executor in case {@link #PARAM_OFFLOAD_HANDLERS} is enabled. <br>
+     * In other words this method takes precedence over {@link #headWithTry(Request)} and {@link #head(Request)}.
+     * @param request The request data
+     * @return The stage completing with the response data
+     * @since 1.7
+     * @see #headWithTry(Request)
+     */
+    protected CompletionStage<Response> headAsync(Request request) {
+        return invoke(() -> headWithTry(request));
+    }
+
     /**
      * Implements the <tt>DELETE</tt> method. <br>
      * Should be overridden by servlets needing to support this method. <br>
@@ -147,6 +827,23 @@ public abstract class JSONServlet extends HttpServlet implements RequestParser,
         return Try(() -> delete(request));
     }
 
+    /**
+     * Implements the <tt>DELETE</tt> method asynchronously. <br>
+     * Should be overridden by servlets with handlers that complete at a later point, e.g. non-blocking I/O. <br>
+     * If the returned stage is not yet completed the request is put in asynchronous mode (requires the servlet to be async supported)
+     * and the container thread is released until the stage completes. <br>
+     * An exceptionally completed stage is rendered using {@link #ErrorResponse(Throwable)}. <br>
+     * If not overridden this method invokes {@link #deleteWithTry(Request)}, on the handler executor in case {@link #PARAM_OFFLOAD_HANDLERS} is enabled. <br>
+     * In other words this method takes precedence over {@link #deleteWithTry(Request)} and {@link #delete(Request)}.
+     * @param request The request data
+     * @return The stage completing with the response data
+     * @since 1.7
+     * @see #deleteWithTry(Request)
+     */
+    protected CompletionStage<Response> deleteAsync(Request request) {
+        return invoke(() -> deleteWithTry(request));
+    }
+
     /**
      * Implements the <tt>POST</tt> method. <br>
      * Should be overridden by servlets needing to support this method. <br>
@@ -174,6 +871,23 @@ public abstract class JSONServlet extends HttpServlet implements RequestParser,
         return Try(() -> post(request));
     }
 
+    /**
+     * Implements the <tt>POST</tt> method asynchronously. <br>
+     * Should be overridden by servlets with handlers that complete at a later point, e.g. non-blocking I/O. <br>
+     * If the returned stage is not yet completed the request is put in asynchronous mode (requires the servlet to be async supported)
+     * and the container thread is released until the stage completes. <br>
+     * An exceptionally completed stage is rendered using {@link #ErrorResponse(Throwable)}. <br>
+     * If not overridden this method invokes {@link #postWithTry(Request)}, on the handler executor in case {@link #PARAM_OFFLOAD_HANDLERS} is enabled. <br>
+     * In other words this method takes precedence over {@link #postWithTry(Request)} and {@link #post(Request)}.
+     * @param request The request data
+     * @return The stage completing with the response data
+     * @since 1.7
+     * @see #postWithTry(Request)
+     */
+    protected CompletionStage<Response> postAsync(Request request) {
+        return invoke(() -> postWithTry(request));
+    }
+
     /**
      * Implements the <tt>PUT</tt> method. <br>
      * Should be overridden by servlets needing to support this method. <br>
@@ -200,4 +914,21 @@ public abstract class JSONServlet extends HttpServlet implements RequestParser,
     protected Try<Response> putWithTry(Request request) {
         return Try(() -> put(request));
     }
+
+    /**
+     * Implements the <tt>PUT</tt> method asynchronously. <br>
+     * Should be overridden by servlets with handlers that complete at a later point, e.g. non-blocking I/O. <br>
+     * If the returned stage is not yet completed the request is put in asynchronous mode (requires the servlet to be async supported)
+     * and the container thread is released until the stage completes. <br>
+     * An exceptionally completed stage is rendered using {@link #ErrorResponse(Throwable)}. <br>
+     * If not overridden this method invokes {@link #putWithTry(Request)}, on the handler executor in case {@link #PARAM_OFFLOAD_HANDLERS} is enabled. <br>
+     * In other words this method takes precedence over {@link #putWithTry(Request)} and {@link #put(Request)}.
+     * @param request The request data
+     * @return The stage completing with the response data
+     * @since 1.7
+     * @see #putWithTry(Request)
+     */
+    protected CompletionStage<Response> putAsync(Request request) {
+        return invoke(() -> putWithTry(request));
+    }
 }
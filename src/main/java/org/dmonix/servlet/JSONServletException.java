@@ -15,6 +15,9 @@
  */
 package org.dmonix.servlet;
 
+import javascalautils.Failure;
+import javascalautils.Try;
+
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_UNAUTHORIZED;
 
@@ -23,19 +26,52 @@ import static javax.servlet.http.HttpServletResponse.SC_UNAUTHORIZED;
  * The point is to be able to return a Failure containing this exception and get an automated rendering out the
  * response sent to the client with the response code in the exception. <br>
  * Use cases are failed validation where one wants to return a client error code but still perform the validation using
- * Try clauses.
+ * Try clauses. <br>
+ * The exceptions with a fixed response used internally by the framework are shared instances without stack trace
+ * nor suppressed exceptions, making the error path cheap. All other instances are regular exceptions.
  * @author Peter Nerg
  * @since 1.3
  */
 public class JSONServletException extends Exception {
 
     static final long serialVersionUID = 923874239472389472L;
+
+    private static final JSONServletException MISSING_PATH = new JSONServletException(ResponseTemplate.MISSING_PATH, false);
+
+    private static final JSONServletException PAYLOAD_TOO_LARGE = new JSONServletException(ResponseTemplate.PAYLOAD_TOO_LARGE, false);
+
+    private static final Try<?> MISSING_PATH_FAILURE = new Failure<>(MISSING_PATH);
+
+    private static final Try<?> PAYLOAD_TOO_LARGE_FAILURE = new Failure<>(PAYLOAD_TOO_LARGE);
+
     final Response response;
 
     public JSONServletException(Response response) {
         this.response = response;
     }
 
+    /**
+     * Creates an exception caused by another exception. <br>
+     * The exception keeps its stack trace and cause.
+     * @param response The response to render
+     * @param cause The cause
+     * @since 1.7
+     */
+    protected JSONServletException(Response response, Throwable cause) {
+        super(cause);
+        this.response = response;
+    }
+
+    /**
+     * Creates an exception without stack trace and suppressed exceptions, used for the shared instances.
+     * @param response The response to render
+     * @param writableStackTrace Always <code>false</code>
+     */
+    private JSONServletException(Response response, boolean writableStackTrace) {
+        super(null, null, false, writableStackTrace);
+        this.response = response;
+    }
+
     /**
      * Creates an exception containing error code <tt>401</tt> with the provided message.
      * @param message The message for the response
@@ -47,11 +83,45 @@ public class JSONServletException extends Exception {
     }
 
     /**
-     * Creates an exception containing error code <tt>400</tt> with the message <tt>missing path</tt>
+     * Creates an exception containing error code <tt>400</tt> with the message <tt>missing path</tt>. <br>
+     * The response is mutable, i.e. the same as {@link ResponseBuilder#ErrorResponseMissingPath()}.
+     * Note that unlike this method the framework answers a missing path with a shared exception with an immutable response,
+     * see {@link #MissingPathFailure()}.
      * @return The exception
      */
     public static JSONServletException MissingPathException() {
         return new JSONServletException(new Response(SC_BAD_REQUEST, "Missing path"));
     }
 
+    /**
+     * Get the exception containing error code <tt>413</tt> stating the request body is larger than allowed. <br>
+     * The returned exception is a shared instance.
+     * @return The exception
+     * @since 1.7
+     */
+    public static JSONServletException PayloadTooLargeException() {
+        return PAYLOAD_TOO_LARGE;
+    }
+
+    /**
+     * Get the shared Failure containing an exception with the immutable {@link ResponseTemplate#MISSING_PATH}.
+     * @param <T> The type of the Try
+     * @return The Failure
+     * @since 1.7
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Try<T> MissingPathFailure() {
+        return (Try<T>) MISSING_PATH_FAILURE;
+    }
+
+    /**
+     * Get the shared Failure containing the {@link #PayloadTooLargeException()}.
+     * @param <T> The type of the Try
+     * @return The Failure
+     * @since 1.7
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Try<T> PayloadTooLargeFailure() {
+        return (Try<T>) PAYLOAD_TOO_LARGE_FAILURE;
+    }
 }
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator lazily pulling the elements of a json array from a {@link JsonReader}. <br>
+ * When consumed sequentially only the element currently being parsed is held in memory. <br>
+ * If created with a chunk size the spliterator can be split, each split parses the next <tt>chunkSize</tt> elements
+ * into a chunk that can be processed in parallel. <br>
+ * The size is unknown, i.e. {@link #estimateSize()} reports {@link Long#MAX_VALUE}, thus a parallel stream would split eagerly
+ * until the array is exhausted. The chunks are instead split off one at a time by
+ * {@link Request#forEachJsonArrayElement(Class, int, int, java.util.concurrent.Executor, Consumer)} bounding the number of pending chunks.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class JsonArraySpliterator<T> implements Spliterator<T> {
+    private final Gson gson;
+    private final JsonReader reader;
+    private final Class<T> type;
+    private final int chunkSize;
+    private boolean exhausted = false;
+
+    /**
+     * Creates an instance.
+     * @param gson The Gson instance to parse elements with
+     * @param reader The reader positioned inside the array, i.e. <tt>beginArray</tt> already invoked
+     * @param type The type of the elements
+     * @param chunkSize The number of elements in each split, <tt>0</tt> disables splitting
+     */
+    JsonArraySpliterator(Gson gson, JsonReader reader, Class<T> type, int chunkSize) {
+        this.gson = gson;
+        this.reader = reader;
+        this.type = type;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (exhausted) {
+            return false;
+        }
+        try {
+            if (!reader.hasNext()) {
+                exhausted = true;
+                reader.endArray();
+                return false;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        action.accept(gson.fromJson(reader, type));
+        return true;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        if (chunkSize <= 0 || exhausted) {
+            return null;
+        }
+        Object[] chunk = new Object[chunkSize];
+        int size = 0;
+        Slot<T> slot = new Slot<>();
+        while (size < chunkSize && tryAdvance(slot)) {
+            chunk[size++] = slot.element;
+        }
+        return size == 0 ? null : Spliterators.spliterator(chunk, 0, size, ORDERED);
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED;
+    }
+
+    /**
+     * Captures the element handed out by a single advance.
+     */
+    private static final class Slot<T> implements Consumer<T> {
+        private T element;
+
+        @Override
+        public void accept(T element) {
+            this.element = element;
+        }
+    }
+}
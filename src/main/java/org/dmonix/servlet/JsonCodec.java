@@ -0,0 +1,72 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Spliterator;
+
+/**
+ * SPI for the engine used to parse/serialize json. <br>
+ * The framework by default uses {@link GsonCodec}. <br>
+ * An alternative engine is plugged in either by registering the implementation as a service under
+ * <tt>META-INF/services/org.dmonix.servlet.JsonCodec</tt> or per servlet using the init parameter {@link JSONServlet#PARAM_JSON_CODEC}. <br>
+ * Implementations must be thread safe and have a public no-arg constructor.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+public interface JsonCodec {
+
+    /**
+     * Parses an object from the json data.
+     * @param reader The json data
+     * @param type The type to parse
+     * @param <T> The return type
+     * @return The parsed object
+     * @throws IOException Any exception during reading/parsing
+     */
+    <T> T fromJson(Reader reader, Class<T> type) throws IOException;
+
+    /**
+     * Serializes the object to json.
+     * @param object The object, may be <code>null</code>
+     * @return The json
+     */
+    String toJson(Object object);
+
+    /**
+     * Serializes the object to json directly onto the writer. <br>
+     * The writer is flushed but not closed.
+     * @param object The object, may be <code>null</code>
+     * @param writer The writer
+     * @throws IOException Any exception during writing/serialization
+     */
+    void toJson(Object object, Writer writer) throws IOException;
+
+    /**
+     * Lazily parses the elements of a json array. <br>
+     * The spliterator must only parse elements as they are requested.
+     * A chunk size larger than <tt>0</tt> must make the spliterator split off chunks of that many elements.
+     * @param reader The json data
+     * @param type The type of the elements
+     * @param chunkSize The number of elements per split, <tt>0</tt> for no splitting
+     * @param <T> The element type
+     * @return The spliterator
+     * @throws IOException If the data doesn't start with an array or any exception during reading
+     */
+    <T> Spliterator<T> arrayElements(Reader reader, Class<T> type, int chunkSize) throws IOException;
+}
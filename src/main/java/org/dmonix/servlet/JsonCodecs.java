@@ -0,0 +1,61 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Resolves the {@link JsonCodec} to use.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class JsonCodecs {
+
+    /** The default codec, the first registered service or else Gson.*/
+    private static final JsonCodec defaultCodec = loadDefault();
+
+    private JsonCodecs() {
+    }
+
+    /**
+     * Get the default codec. <br>
+     * That is the first {@link JsonCodec} registered as a service, if none is registered the {@link GsonCodec}.
+     * @return The codec
+     */
+    static JsonCodec defaultCodec() {
+        return defaultCodec;
+    }
+
+    /**
+     * Creates a codec from the provided class name.
+     * @param className The name of a {@link JsonCodec} class with a public no-arg constructor
+     * @return The codec
+     * @throws IllegalArgumentException If the codec could not be created
+     */
+    static JsonCodec forName(String className) {
+        try {
+            return Class.forName(className, true, Thread.currentThread().getContextClassLoader()).asSubclass(JsonCodec.class).newInstance();
+        } catch (ReflectiveOperationException | ClassCastException ex) {
+            throw new IllegalArgumentException("Failed to create json codec [" + className + "]", ex);
+        }
+    }
+
+    private static JsonCodec loadDefault() {
+        Iterator<JsonCodec> codecs = ServiceLoader.load(JsonCodec.class).iterator();
+        return codecs.hasNext() ? codecs.next() : new GsonCodec();
+    }
+}
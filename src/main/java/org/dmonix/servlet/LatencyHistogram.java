@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with logarithmic (power of two) buckets. <br>
+ * Bucket <tt>i</tt> counts the latencies below <tt>2^(i+10)</tt> nanoseconds, i.e. from ~1&micro;s up to ~34s, anything slower
+ * goes to an overflow bucket. <br>
+ * Recording is a bit scan and two {@link LongAdder} increments, no locks are taken and no memory is allocated.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class LatencyHistogram {
+    /** The shift of the upper bound of the first bucket, i.e. 2^10 ns.*/
+    private static final int MIN_SHIFT = 10;
+
+    /** The number of bounded buckets.*/
+    static final int BUCKETS = 26;
+
+    /** The buckets, the last one being the overflow bucket.*/
+    private final LongAdder[] buckets = new LongAdder[BUCKETS + 1];
+
+    private final LongAdder sumNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a latency.
+     * @param nanos The latency in nanoseconds
+     */
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets[bucketOf(value)].increment();
+        sumNanos.add(value);
+    }
+
+    /**
+     * Get the upper bound of a bucket.
+     * @param bucket The bucket index, must be less than {@link #BUCKETS}
+     * @return The upper bound in nanoseconds (exclusive)
+     */
+    static long upperBoundNanos(int bucket) {
+        return 1L << (bucket + MIN_SHIFT);
+    }
+
+    static int bucketOf(long nanos) {
+        int bits = 64 - Long.numberOfLeadingZeros(nanos);
+        return Math.min(Math.max(bits - MIN_SHIFT, 0), BUCKETS);
+    }
+
+    /**
+     * Takes a snapshot of the current state of the histogram. <br>
+     * Concurrent recordings may or may not be part of the snapshot.
+     * @return The snapshot
+     */
+    Snapshot snapshot() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(counts, sumNanos.sum());
+    }
+
+    /**
+     * Immutable point in time copy of a histogram. <br>
+     * As all histograms share the same buckets snapshots can be merged, e.g. to aggregate several servlets or methods.
+     */
+    static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new long[BUCKETS + 1], 0);
+
+        private final long[] counts;
+        final long count;
+        final long sumNanos;
+
+        private Snapshot(long[] counts, long sumNanos) {
+            this.counts = counts;
+            this.sumNanos = sumNanos;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+        }
+
+        /**
+         * Get the number of recordings in a bucket.
+         * @param bucket The bucket index, {@link #BUCKETS} for the overflow bucket
+         * @return The count
+         */
+        long count(int bucket) {
+            return counts[bucket];
+        }
+
+        /**
+         * Merges this snapshot with another.
+         * @param other The other snapshot
+         * @return A new snapshot containing the recordings of both
+         */
+        Snapshot merge(Snapshot other) {
+            long[] merged = new long[counts.length];
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] = counts[i] + other.counts[i];
+            }
+            return new Snapshot(merged, sumNanos + other.sumNanos);
+        }
+    }
+}
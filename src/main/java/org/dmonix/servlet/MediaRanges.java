@@ -0,0 +1,140 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsing and matching of the media ranges in an <tt>Accept</tt> header.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class MediaRanges {
+
+    private MediaRanges() {
+    }
+
+    /**
+     * Parses the media ranges from an <tt>Accept</tt> header. <br>
+     * The ranges are returned in lower case without parameters, ordered on the quality (<tt>q</tt>) with the most preferred first.
+     * Ranges with the same quality keep the order of the header. Ranges with <tt>q=0</tt> are not acceptable and thus left out. <br>
+     * A missing or empty header accepts anything, i.e. results in <tt>*&#47;*</tt>.
+     * @param accept The header, may be <code>null</code>
+     * @return The immutable list of media ranges
+     */
+    static List<String> parse(String accept) {
+        if (accept == null || accept.trim().isEmpty()) {
+            return Collections.singletonList("*/*");
+        }
+        return parse(accept, false);
+    }
+
+    /**
+     * Parses the media ranges explicitly refused by an <tt>Accept</tt> header, i.e. the ranges with <tt>q=0</tt>. <br>
+     * The ranges are returned in lower case without parameters in the order of the header.
+     * @param accept The header, may be <code>null</code>
+     * @return The immutable list of refused media ranges
+     */
+    static List<String> refused(String accept) {
+        if (accept == null || accept.indexOf(';') < 0) {
+            return Collections.emptyList();
+        }
+        return parse(accept, true);
+    }
+
+    /**
+     * Checks if a media type is acceptable given both the accepted and the refused ranges. <br>
+     * The most specific range matching the media type decides, e.g. <tt>application/json;q=0</tt> refuses json
+     * even if <tt>*&#47;*</tt> is accepted. A refused range wins over an accepted range of the same specificity.
+     * @param mediaType The media type
+     * @param accepted The accepted ranges, see {@link #parse(String)}
+     * @param refused The refused ranges, see {@link #refused(String)}
+     * @return <code>true</code> if acceptable
+     */
+    static boolean isAcceptable(String mediaType, List<String> accepted, List<String> refused) {
+        int specificity = specificity(mediaType, accepted);
+        return specificity > 0 && specificity > specificity(mediaType, refused);
+    }
+
+    private static List<String> parse(String accept, boolean refused) {
+        List<String> ranges = new ArrayList<>();
+        List<Double> qualities = new ArrayList<>();
+        for (String element : accept.split(",")) {
+            int paramStart = element.indexOf(';');
+            String range = (paramStart < 0 ? element : element.substring(0, paramStart)).trim().toLowerCase();
+            double quality = paramStart < 0 ? 1.0 : quality(element.substring(paramStart + 1));
+            if (range.isEmpty() || (quality <= 0) != refused) {
+                continue;
+            }
+            //insertion sort keeping the header order for equal qualities, the number of ranges is always small
+            int pos = qualities.size();
+            while (pos > 0 && qualities.get(pos - 1) < quality) {
+                pos--;
+            }
+            ranges.add(pos, range);
+            qualities.add(pos, quality);
+        }
+        return Collections.unmodifiableList(ranges);
+    }
+
+    /**
+     * Checks if a media type is matched by a media range.
+     * @param range The media range, e.g. <tt>application/*</tt>, in lower case
+     * @param mediaType The media type, e.g. <tt>application/json</tt>, parameters are ignored
+     * @return <code>true</code> if matched
+     */
+    static boolean matches(String range, String mediaType) {
+        if (range.equals("*/*") || range.equals("*")) {
+            return true;
+        }
+        int paramStart = mediaType.indexOf(';');
+        String type = (paramStart < 0 ? mediaType : mediaType.substring(0, paramStart)).trim();
+        if (range.endsWith("/*")) {
+            return type.length() > range.length() - 1 && type.regionMatches(true, 0, range, 0, range.length() - 1);
+        }
+        return type.equalsIgnoreCase(range);
+    }
+
+    /**
+     * Get the specificity of the most specific range matching the media type.
+     * @return <tt>3</tt> for an exact match, <tt>2</tt> for <tt>type/*</tt>, <tt>1</tt> for <tt>*&#47;*</tt> and <tt>0</tt> if not matched
+     */
+    private static int specificity(String mediaType, List<String> ranges) {
+        int specificity = 0;
+        for (String range : ranges) {
+            if (matches(range, mediaType)) {
+                specificity = Math.max(specificity, range.equals("*/*") || range.equals("*") ? 1 : range.endsWith("/*") ? 2 : 3);
+            }
+        }
+        return specificity;
+    }
+
+    private static double quality(String params) {
+        for (String param : params.split(";")) {
+            String p = param.trim();
+            if (p.startsWith("q=") || p.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(p.substring(2).trim());
+                } catch (NumberFormatException ex) {
+                    return 1.0;
+                }
+            }
+        }
+        return 1.0;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Exposes the metrics of all {@link JSONServlet} instances having {@link JSONServlet#PARAM_METRICS} enabled. <br>
+ * The metrics are rendered as histograms in the Prometheus text format, e.g. mount the servlet on <tt>/metrics</tt>.
+ * <ul>
+ *     <li><tt>json_servlet_request_duration_seconds</tt> - the total time per servlet, method and status class</li>
+ *     <li><tt>json_servlet_phase_duration_seconds</tt> - the time per servlet, method and phase (<tt>parse</tt>, <tt>handler</tt>, <tt>write</tt>)</li>
+ * </ul>
+ * Series without any recorded requests are left out.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+public class MetricsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=UTF-8";
+    private static final String REQUEST_DURATION = "json_servlet_request_duration_seconds";
+    private static final String PHASE_DURATION = "json_servlet_phase_duration_seconds";
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType(CONTENT_TYPE);
+        resp.getWriter().write(render());
+    }
+
+    /**
+     * Renders all registered metrics in the Prometheus text format.
+     * @return The metrics
+     */
+    static String render() {
+        StringWriter out = new StringWriter(8192);
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("# HELP " + REQUEST_DURATION + " Total time spent processing requests.");
+        writer.println("# TYPE " + REQUEST_DURATION + " histogram");
+        for (ServletMetrics metrics : ServletMetrics.registered()) {
+            for (HttpMethod method : HttpMethod.values()) {
+                for (int statusClass = 0; statusClass < ServletMetrics.STATUS_CLASSES; statusClass++) {
+                    String labels = "servlet=\"" + escape(metrics.servletName) + "\",method=\"" + method.name() + "\",status=\"" + STATUS_CLASSES[statusClass] + "\"";
+                    writeHistogram(writer, REQUEST_DURATION, labels, metrics.total(method, statusClass));
+                }
+            }
+        }
+        writer.println("# HELP " + PHASE_DURATION + " Time spent per phase of processing requests.");
+        writer.println("# TYPE " + PHASE_DURATION + " histogram");
+        for (ServletMetrics metrics : ServletMetrics.registered()) {
+            for (HttpMethod method : HttpMethod.values()) {
+                String labels = "servlet=\"" + escape(metrics.servletName) + "\",method=\"" + method.name() + "\",phase=";
+                writeHistogram(writer, PHASE_DURATION, labels + "\"parse\"", metrics.parse(method));
+                writeHistogram(writer, PHASE_DURATION, labels + "\"handler\"", metrics.handler(method));
+                writeHistogram(writer, PHASE_DURATION, labels + "\"write\"", metrics.write(method));
+            }
+        }
+        writer.flush();
+        return out.toString();
+    }
+
+    private static void writeHistogram(PrintWriter writer, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        if (snapshot.count == 0) {
+            return;
+        }
+        long cumulative = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            cumulative += snapshot.count(bucket);
+            writer.println(name + "_bucket{" + labels + ",le=\"" + seconds(LatencyHistogram.upperBoundNanos(bucket)) + "\"} " + cumulative);
+        }
+        writer.println(name + "_bucket{" + labels + ",le=\"+Inf\"} " + snapshot.count);
+        writer.println(name + "_sum{" + labels + "} " + seconds(snapshot.sumNanos));
+        writer.println(name + "_count{" + labels + "} " + snapshot.count);
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -19,7 +19,19 @@ import com.google.gson.Gson;
 import javascalautils.*;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Utility class for parsing JSON stuff.
@@ -27,7 +39,7 @@ import java.io.InputStreamReader;
  * @since 1.0
  */
 interface ParserUtils {
-    Gson gson = new Gson();
+    Gson gson = GsonProvider.gson;
 
     /**
      * Get the path info as specified in the URI.
@@ -47,7 +59,7 @@ interface ParserUtils {
      * @since 1.3
      */
     static Try<String> getPathInfoAsTry(HttpServletRequest req) {
-        return getPathInfo(req).map(path -> Try.apply(path)).getOrElse(() -> new Failure<>(JSONServletException.MissingPathException()));
+        return getPathInfo(req).map(path -> Try.apply(path)).getOrElse(JSONServletException::MissingPathFailure);
     }
 
     /**
@@ -70,6 +82,226 @@ interface ParserUtils {
      * @return The parsed object
      */
     static <T> Try<T> fromJson(HttpServletRequest req, String charsetName, Class<T> type) {
-        return TryCompanion.Try(() -> gson.fromJson(new InputStreamReader(req.getInputStream(), charsetName), type));
+        return fromJson(req, charsetName, type, Long.MAX_VALUE, JsonCodecs.defaultCodec());
+    }
+
+    /**
+     * Parses an object from the json stream in the HTTP request. <br>
+     * Bodies larger than the provided max size are rejected with a failure containing a
+     * {@link JSONServletException#PayloadTooLargeException()}. <br>
+     * The <tt>Content-Length</tt> is checked before reading anything, the number of bytes actually read is also
+     * verified during the parsing.
+     * @param req The HTTP request
+     * @param charsetName The charset to expect
+     * @param type The type to parse
+     * @param maxBodySize The max allowed size of the body in bytes, {@link Long#MAX_VALUE} for no limit
+     * @param codec The codec to parse with
+     * @param <T> The return type
+     * @return The parsed object
+     * @since 1.7
+     */
+    static <T> Try<T> fromJson(HttpServletRequest req, String charsetName, Class<T> type, long maxBodySize, JsonCodec codec) {
+        if (maxBodySize == Long.MAX_VALUE) {
+            return TryCompanion.Try(() -> codec.fromJson(new InputStreamReader(req.getInputStream(), charsetName), type));
+        }
+        if (req.getContentLengthLong() > maxBodySize) {
+            return JSONServletException.PayloadTooLargeFailure();
+        }
+        return TryCompanion.Try(() -> new BoundedInputStream(req.getInputStream(), maxBodySize)).flatMap(in ->
+                TryCompanion.Try(() -> codec.fromJson(new InputStreamReader(in, charsetName), type))
+                        .recoverWith(ex -> in.isExceeded() ? JSONServletException.PayloadTooLargeFailure() : new Failure<>(ex)));
+    }
+
+    /**
+     * Parses an object from the body of the HTTP request using a non json format. <br>
+     * The body size is limited the same way as for {@link #fromJson(HttpServletRequest, String, Class, long, JsonCodec)}.
+     * @param req The HTTP request
+     * @param type The type to parse
+     * @param maxBodySize The max allowed size of the body in bytes, {@link Long#MAX_VALUE} for no limit
+     * @param codec The codec to parse with
+     * @param <T> The return type
+     * @return The parsed object
+     * @since 1.7
+     */
+    static <T> Try<T> decode(HttpServletRequest req, Class<T> type, long maxBodySize, FormatCodec codec) {
+        if (maxBodySize == Long.MAX_VALUE) {
+            return TryCompanion.Try(() -> codec.decode(req.getInputStream(), type));
+        }
+        if (req.getContentLengthLong() > maxBodySize) {
+            return JSONServletException.PayloadTooLargeFailure();
+        }
+        return TryCompanion.Try(() -> new BoundedInputStream(req.getInputStream(), maxBodySize)).flatMap(in ->
+                TryCompanion.Try(() -> codec.decode(in, type))
+                        .recoverWith(ex -> in.isExceeded() ? JSONServletException.PayloadTooLargeFailure() : new Failure<>(ex)));
+    }
+
+    /**
+     * Reads the body of the HTTP request as text. <br>
+     * The body size is limited the same way as for {@link #fromJson(HttpServletRequest, String, Class, long, JsonCodec)}.
+     * @param req The HTTP request
+     * @param charsetName The charset to expect
+     * @param maxBodySize The max allowed size of the body in bytes, {@link Long#MAX_VALUE} for no limit
+     * @return The body
+     * @since 1.7
+     */
+    static Try<String> readBody(HttpServletRequest req, String charsetName, long maxBodySize) {
+        if (maxBodySize == Long.MAX_VALUE) {
+            return TryCompanion.Try(() -> readFully(new InputStreamReader(req.getInputStream(), charsetName)));
+        }
+        if (req.getContentLengthLong() > maxBodySize) {
+            return JSONServletException.PayloadTooLargeFailure();
+        }
+        return TryCompanion.Try(() -> new BoundedInputStream(req.getInputStream(), maxBodySize)).flatMap(in ->
+                TryCompanion.Try(() -> readFully(new InputStreamReader(in, charsetName)))
+                        .recoverWith(ex -> in.isExceeded() ? JSONServletException.PayloadTooLargeFailure() : new Failure<>(ex)));
+    }
+
+    /**
+     * Reads all data from the reader.
+     * @param reader The reader
+     * @return The data
+     * @throws IOException Any exception during reading
+     * @since 1.7
+     */
+    static String readFully(Reader reader) throws IOException {
+        StringBuilder data = new StringBuilder();
+        char[] buffer = new char[4096];
+        for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+            data.append(buffer, 0, read);
+        }
+        return data.toString();
+    }
+
+    /**
+     * Lazily parses the elements of a json array from the json stream in the HTTP request. <br>
+     * The elements are parsed one at a time as the stream is consumed.
+     * A body exceeding the max size fails the stream with the {@link JSONServletException#PayloadTooLargeException()} when the limit is reached,
+     * even though it is checked the exception is thrown from the stream operations.
+     * @param req The HTTP request
+     * @param charsetName The charset to expect
+     * @param type The type of the elements
+     * @param maxBodySize The max allowed size of the body in bytes, {@link Long#MAX_VALUE} for no limit
+     * @param codec The codec to parse with
+     * @param <T> The element type
+     * @return The stream of elements, failure if the request doesn't start with a json array
+     * @since 1.7
+     */
+    static <T> Try<Stream<T>> streamJsonArray(HttpServletRequest req, String charsetName, Class<T> type, long maxBodySize, JsonCodec codec) {
+        if (req.getContentLengthLong() > maxBodySize) {
+            return JSONServletException.PayloadTooLargeFailure();
+        }
+        return TryCompanion.Try(() -> maxBodySize == Long.MAX_VALUE ? req.getInputStream() : new BoundedInputStream(req.getInputStream(), maxBodySize)).flatMap(in ->
+                TryCompanion.Try(() -> {
+                    Reader reader = new InputStreamReader(in, charsetName);
+                    Spliterator<T> elements = codec.arrayElements(reader, type, 0);
+                    if (in instanceof BoundedInputStream) {
+                        elements = new BoundedSpliterator<>(elements, (BoundedInputStream) in);
+                    }
+                    return StreamSupport.stream(elements, false).onClose(() -> {
+                        try {
+                            reader.close();
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+                }).recoverWith(ex -> isExceeded(in) ? JSONServletException.PayloadTooLargeFailure() : new Failure<>(ex)));
+    }
+
+    /**
+     * Parses the elements of a json array from the json stream in the HTTP request handing them to the executor in chunks. <br>
+     * The chunks are parsed on the calling thread, a new chunk is only parsed when less than <tt>maxPendingChunks</tt> chunks
+     * are waiting for or being processed by the executor. <br>
+     * Returns once all submitted chunks are processed, no more chunks are submitted after the first failure.
+     * @param req The HTTP request
+     * @param charsetName The charset to expect
+     * @param type The type of the elements
+     * @param chunkSize The number of elements per chunk
+     * @param maxPendingChunks The max number of chunks submitted to the executor but not yet processed
+     * @param executor The executor processing the chunks
+     * @param action The action to apply to each element
+     * @param maxBodySize The max allowed size of the body in bytes, {@link Long#MAX_VALUE} for no limit
+     * @param codec The codec to parse with
+     * @param <T> The element type
+     * @return The number of processed elements
+     * @since 1.7
+     */
+    static <T> Try<Long> forEachJsonArrayElement(HttpServletRequest req, String charsetName, Class<T> type, int chunkSize, int maxPendingChunks,
+                                                 Executor executor, Consumer<? super T> action, long maxBodySize, JsonCodec codec) {
+        if (chunkSize < 1 || maxPendingChunks < 1) {
+            return new Failure<>(new IllegalArgumentException("The chunk size and max pending chunks must be at least 1"));
+        }
+        if (req.getContentLengthLong() > maxBodySize) {
+            return JSONServletException.PayloadTooLargeFailure();
+        }
+        return TryCompanion.Try(() -> maxBodySize == Long.MAX_VALUE ? req.getInputStream() : new BoundedInputStream(req.getInputStream(), maxBodySize)).flatMap(in ->
+                TryCompanion.Try(() -> {
+                    try (Reader reader = new InputStreamReader(in, charsetName)) {
+                        return forEachChunk(codec.arrayElements(reader, type, chunkSize), maxPendingChunks, executor, action);
+                    }
+                }).recoverWith(ex -> isExceeded(in) ? JSONServletException.PayloadTooLargeFailure() : new Failure<>(ex)));
+    }
+
+    /**
+     * Splits chunks off the elements handing them to the executor, never having more than <tt>maxPendingChunks</tt> chunks outstanding.
+     * @param elements The elements, splitting off one chunk at a time
+     * @param maxPendingChunks The max number of chunks submitted to the executor but not yet processed
+     * @param executor The executor processing the chunks
+     * @param action The action to apply to each element
+     * @param <T> The element type
+     * @return The number of processed elements
+     * @throws Throwable The first failure of parsing or processing
+     * @since 1.7
+     */
+    static <T> long forEachChunk(Spliterator<T> elements, int maxPendingChunks, Executor executor, Consumer<? super T> action) throws Throwable {
+        Semaphore pending = new Semaphore(maxPendingChunks);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        LongAdder count = new LongAdder();
+        try {
+            boolean more = true;
+            while (more && failure.get() == null) {
+                pending.acquire();
+                boolean submitted = false;
+                try {
+                    Spliterator<T> chunk = elements.trySplit();
+                    more = chunk != null;
+                    if (more) {
+                        executor.execute(() -> {
+                            try {
+                                chunk.forEachRemaining(element -> {
+                                    action.accept(element);
+                                    count.increment();
+                                });
+                            } catch (Throwable throwable) {
+                                failure.compareAndSet(null, throwable);
+                            } finally {
+                                pending.release();
+                            }
+                        });
+                        submitted = true;
+                    }
+                } finally {
+                    if (!submitted) {
+                        pending.release();
+                    }
+                }
+            }
+        } finally {
+            //wait for all submitted chunks to be processed
+            pending.acquireUninterruptibly(maxPendingChunks);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return count.sum();
+    }
+
+    /**
+     * If the stream is bounded and more bytes than allowed were found in it.
+     * @param in The stream
+     * @return <code>true</code> if exceeded
+     * @since 1.7
+     */
+    static boolean isExceeded(InputStream in) {
+        return in instanceof BoundedInputStream && ((BoundedInputStream) in).isExceeded();
     }
 }
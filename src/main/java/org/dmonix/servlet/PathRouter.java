@@ -0,0 +1,255 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Some;
+
+/**
+ * Radix trie routing paths to values registered for path templates such as <tt>/users/{id}/orders/{oid}</tt>. <br>
+ * The static parts of the templates are stored as compressed edges, i.e. shared prefixes are only compared once.
+ * A parameter (<tt>{name}</tt>) matches a full non-empty path segment. <br>
+ * Matching walks the path once comparing characters in place, static edges take precedence over parameters
+ * with backtracking only in case a static edge leads to a dead end. <br>
+ * No strings are created while matching, the parameters are recorded as offsets into the path and only extracted
+ * when asked for. <br>
+ * Templates are to be added before the router is used for matching, the router is then safe for concurrent matching.
+ * @param <T> The type of the routed values
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class PathRouter<T> {
+
+    private final Node<T> root = new Node<>("");
+
+    /** The max number of parameters in any template.*/
+    private int maxParams;
+
+    /**
+     * Gets the value for a template, adding it if the template is not yet present.
+     * @param template The template, must start with a <tt>/</tt>
+     * @param value Supplies the value in case the template is not present
+     * @return The value for the template
+     * @throws IllegalArgumentException If the template is malformed or conflicts with an existing template
+     */
+    T computeIfAbsent(String template, Supplier<T> value) {
+        if (!template.startsWith("/")) {
+            throw new IllegalArgumentException("Templates must start with a '/' [" + template + "]");
+        }
+        List<String> names = new ArrayList<>();
+        Node<T> node = root;
+        int pos = 0;
+        while (pos < template.length()) {
+            int open = template.indexOf('{', pos);
+            if (open < 0) {
+                node = insertStatic(node, template.substring(pos));
+                break;
+            }
+            int close = template.indexOf('}', open);
+            if (open == 0 || template.charAt(open - 1) != '/' || close < 0 || close == open + 1
+                    || (close + 1 < template.length() && template.charAt(close + 1) != '/')) {
+                throw new IllegalArgumentException("Parameters must span a full path segment in [" + template + "]");
+            }
+            node = insertStatic(node, template.substring(pos, open));
+            if (node.param == null) {
+                node.param = new Node<>(null);
+            }
+            node = node.param;
+            names.add(template.substring(open + 1, close));
+            pos = close + 1;
+        }
+        String[] paramNames = names.toArray(new String[names.size()]);
+        if (node.value != null) {
+            if (!Arrays.equals(node.paramNames, paramNames)) {
+                throw new IllegalArgumentException("The template [" + template + "] conflicts with a template with other parameter names " + Arrays.toString(node.paramNames));
+            }
+            return node.value;
+        }
+        node.value = value.get();
+        node.paramNames = paramNames;
+        maxParams = Math.max(maxParams, paramNames.length);
+        return node.value;
+    }
+
+    /**
+     * Matches a path.
+     * @param path The path
+     * @return The match, None if no template matches the path
+     */
+    Option<Match<T>> match(String path) {
+        if (path == null) {
+            return None();
+        }
+        int[] offsets = new int[maxParams * 2];
+        Node<T> node = match(root, path, 0, offsets, 0);
+        return node != null ? Some(new Match<>(node.value, node.paramNames, path, offsets)) : None();
+    }
+
+    private static <T> Node<T> match(Node<T> node, String path, int pos, int[] offsets, int param) {
+        if (pos == path.length()) {
+            return node.value != null ? node : null;
+        }
+        Node<T> child = node.child(path.charAt(pos));
+        if (child != null && path.startsWith(child.label, pos)) {
+            Node<T> matched = match(child, path, pos + child.label.length(), offsets, param);
+            if (matched != null) {
+                return matched;
+            }
+        }
+        if (node.param != null) {
+            int end = path.indexOf('/', pos);
+            end = end < 0 ? path.length() : end;
+            if (end > pos) {
+                offsets[param * 2] = pos;
+                offsets[param * 2 + 1] = end;
+                return match(node.param, path, end, offsets, param + 1);
+            }
+        }
+        return null;
+    }
+
+    private static <T> Node<T> insertStatic(Node<T> node, String label) {
+        Node<T> current = node;
+        String remaining = label;
+        while (!remaining.isEmpty()) {
+            Node<T> child = current.child(remaining.charAt(0));
+            if (child == null) {
+                child = new Node<>(remaining);
+                current.addChild(child);
+                return child;
+            }
+            int common = commonPrefix(child.label, remaining);
+            if (common < child.label.length()) {
+                child = current.split(child, common);
+            }
+            current = child;
+            remaining = remaining.substring(common);
+        }
+        return current;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * A node in the trie, either a static edge or a parameter.
+     */
+    private static final class Node<T> {
+        /** The static label of the edge leading to this node, <code>null</code> for parameter nodes.*/
+        private String label;
+
+        /** The first character of the label of each static child, in the same order as the children.*/
+        private char[] firsts = new char[0];
+
+        private Node<T>[] children = newArray(0);
+
+        private Node<T> param;
+
+        private T value;
+
+        private String[] paramNames;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private Node<T> child(char first) {
+            for (int i = 0; i < firsts.length; i++) {
+                if (firsts[i] == first) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private void addChild(Node<T> child) {
+            firsts = Arrays.copyOf(firsts, firsts.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            firsts[firsts.length - 1] = child.label.charAt(0);
+            children[children.length - 1] = child;
+        }
+
+        /**
+         * Splits the edge to a child into a shared prefix and the remainder.
+         * @param child The child
+         * @param at The length of the prefix
+         * @return The new node for the prefix, holding the child
+         */
+        private Node<T> split(Node<T> child, int at) {
+            Node<T> prefix = new Node<>(child.label.substring(0, at));
+            child.label = child.label.substring(at);
+            prefix.addChild(child);
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == child) {
+                    children[i] = prefix;
+                }
+            }
+            return prefix;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newArray(int size) {
+            return (Node<T>[]) new Node[size];
+        }
+    }
+
+    /**
+     * The result of a successful match, holding the routed value and the parameters of the path.
+     * @param <T> The type of the routed value
+     */
+    static final class Match<T> {
+        /** The routed value.*/
+        final T value;
+
+        private final String[] names;
+        private final String path;
+        private final int[] offsets;
+
+        private Match(T value, String[] names, String path, int[] offsets) {
+            this.value = value;
+            this.names = names;
+            this.path = path;
+            this.offsets = offsets;
+        }
+
+        /**
+         * Get a parameter from the path.
+         * @param name The name of the parameter as given in the template
+         * @return The value of the parameter, None if there is no such parameter in the template
+         */
+        Option<String> param(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return Some(path.substring(offsets[i * 2], offsets[i * 2 + 1]));
+                }
+            }
+            return None();
+        }
+    }
+}
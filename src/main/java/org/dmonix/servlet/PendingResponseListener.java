@@ -0,0 +1,57 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Listener answering an asynchronous request the handler hasn't yet responded to in case the container times out or fails it. <br>
+ * The pending response is completed with a <tt>503 - Service unavailable</tt> on timeout and with the error otherwise,
+ * the handler completing the response later on is ignored.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class PendingResponseListener implements AsyncListener {
+    private final CompletableFuture<Response> response;
+
+    /**
+     * Creates an instance
+     * @param response The pending response
+     */
+    PendingResponseListener(CompletableFuture<Response> response) {
+        this.response = response;
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        response.complete(ResponseTemplate.SERVICE_UNAVAILABLE);
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        response.completeExceptionally(event.getThrowable());
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+}
@@ -22,20 +22,67 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import static javascalautils.OptionCompanion.None;
 import static javascalautils.OptionCompanion.Option;
+import static javascalautils.OptionCompanion.Some;
 
 /**
- * Wrapper for the {@link HttpServletRequest} class.
+ * Wrapper for the {@link HttpServletRequest} class. <br>
+ * Values derived from the request (cookies, path info, parsed headers) are computed on first access and then cached
+ * for the rest of the request, i.e. repeated access doesn't allocate. <br>
+ * Instances are not thread safe, they are meant to be used by the one thread handling the request at a time.
  * @author Peter Nerg
  * @since 1.0
  */
 public final class Request {
     private final HttpServletRequest request;
+    private final long maxBodySize;
+    private final JsonCodec codec;
+    private final RequestTimer timer;
+    private PathRouter.Match<?> route;
+    private List<Cookie> cookies;
+    private Map<String, Option<Cookie>> cookiesByName;
+    private Option<String> pathInfo;
+    private Try<String> pathInfoAsTry;
+    private List<String> accept;
+    private List<String> refused;
+    private Option<FormatCodec> responseFormat;
 
     public Request(HttpServletRequest request) {
+        this(request, Long.MAX_VALUE, JsonCodecs.defaultCodec());
+    }
+
+    /**
+     * Creates an instance
+     * @param request The HTTP request
+     * @param maxBodySize The max allowed size of the request body in bytes, {@link Long#MAX_VALUE} for no limit
+     * @param codec The codec used for parsing json
+     * @since 1.7
+     */
+    Request(HttpServletRequest request, long maxBodySize, JsonCodec codec) {
+        this(request, maxBodySize, codec, RequestTimer.NONE);
+    }
+
+    /**
+     * Creates an instance
+     * @param request The HTTP request
+     * @param maxBodySize The max allowed size of the request body in bytes, {@link Long#MAX_VALUE} for no limit
+     * @param codec The codec used for parsing json
+     * @param timer The timer keeping track of the time spent parsing
+     * @since 1.7
+     */
+    Request(HttpServletRequest request, long maxBodySize, JsonCodec codec, RequestTimer timer) {
         this.request = request;
+        this.maxBodySize = maxBodySize;
+        this.codec = codec;
+        this.timer = timer;
     }
 
     /**
@@ -53,9 +100,31 @@ public final class Request {
      * @since 1.6
      */
     public List<Cookie> cookies() {
-        return Option(request().getCookies()). //wrap stupid null return in Option
-                map(cookies -> Arrays.asList(cookies)). //map the array to a list
-                getOrElse(() -> Collections.EMPTY_LIST); //in case the array was null, return empty list
+        if (cookies == null) {
+            cookies = Option(request().getCookies()). //wrap stupid null return in Option
+                    map(cookies -> Arrays.asList(cookies)). //map the array to a list
+                    getOrElse(() -> Collections.EMPTY_LIST); //in case the array was null, return empty list
+        }
+        return cookies;
+    }
+
+    /**
+     * Get a cookie by its name. <br>
+     * Should the request contain several cookies with the same name the first one is returned.
+     * @param name The name of the cookie
+     * @return The cookie, None if there is no such cookie
+     * @since 1.7
+     */
+    public Option<Cookie> cookie(String name) {
+        if (cookiesByName == null) {
+            Map<String, Option<Cookie>> byName = new HashMap<>();
+            for (Cookie cookie : cookies()) {
+                byName.putIfAbsent(cookie.getName(), Some(cookie));
+            }
+            cookiesByName = byName;
+        }
+        Option<Cookie> cookie = cookiesByName.get(name);
+        return cookie != null ? cookie : None();
     }
 
     /**
@@ -64,7 +133,10 @@ public final class Request {
      * @return The path info, i.e. the last part of the URI
      */
     public Option<String> getPathInfo() {
-        return ParserUtils.getPathInfo(request);
+        if (pathInfo == null) {
+            pathInfo = ParserUtils.getPathInfo(request);
+        }
+        return pathInfo;
     }
 
     /**
@@ -74,7 +146,68 @@ public final class Request {
      * @since 1.3
      */
     public Try<String> getPathInfoAsTry() {
-        return ParserUtils.getPathInfoAsTry(request);
+        if (pathInfoAsTry == null) {
+            pathInfoAsTry = getPathInfo().map(path -> Try.apply(path)).getOrElse(JSONServletException::MissingPathFailure);
+        }
+        return pathInfoAsTry;
+    }
+
+    /**
+     * Get the media ranges accepted by the client as declared by the <tt>Accept</tt> header. <br>
+     * The ranges are in lower case without parameters, ordered with the most preferred first. Ranges with <tt>q=0</tt> are left out.
+     * A request without the header accepts anything, i.e. <tt>*&#47;*</tt>.
+     * @return The immutable list of media ranges
+     * @since 1.7
+     */
+    public List<String> accept() {
+        if (accept == null) {
+            accept = MediaRanges.parse(request.getHeader("Accept"));
+        }
+        return accept;
+    }
+
+    /**
+     * Checks if the client accepts a media type as declared by the <tt>Accept</tt> header. <br>
+     * The most specific range matching the media type decides, i.e. a type refused with <tt>q=0</tt> isn't accepted
+     * even if matched by a wildcard range.
+     * @param mediaType The media type, e.g. <tt>application/json</tt>
+     * @return <code>true</code> if accepted
+     * @since 1.7
+     */
+    public boolean accepts(String mediaType) {
+        return MediaRanges.isAcceptable(mediaType, accept(), refused());
+    }
+
+    /**
+     * Get the media ranges refused with <tt>q=0</tt> in the <tt>Accept</tt> header.
+     * @return The immutable list of media ranges
+     */
+    private List<String> refused() {
+        if (refused == null) {
+            refused = MediaRanges.refused(request.getHeader("Accept"));
+        }
+        return refused;
+    }
+
+    /**
+     * Get a parameter from the path as declared by the template of the route matching the request,
+     * e.g. <tt>id</tt> for the template <tt>/users/{id}</tt>. <br>
+     * Only requests routed by a {@link RoutingServlet} have path parameters.
+     * @param name The name of the parameter
+     * @return The value of the parameter, None if there is no such parameter
+     * @since 1.7
+     */
+    public Option<String> pathParam(String name) {
+        return route != null ? route.param(name) : None();
+    }
+
+    /**
+     * Sets the route matching the request.
+     * @param route The route
+     * @since 1.7
+     */
+    void route(PathRouter.Match<?> route) {
+        this.route = route;
     }
 
     /**
@@ -88,13 +221,98 @@ public final class Request {
     }
 
     /**
-     * Parses an object from the json stream in the HTTP request
+     * Parses an object from the json stream in the HTTP request. <br>
+     * In case the servlet has a limit for the body size a body exceeding it results in a failure with a
+     * {@link JSONServletException#PayloadTooLargeException()}.
      * @param charsetName The charset to expect
      * @param type The type to parse
      * @param <T> The return type
      * @return The parsed object
      */
     public <T> Try<T> fromJson(String charsetName, Class<T> type) {
-        return ParserUtils.fromJson(request, charsetName, type);
+        long parseStart = timer.now();
+        Try<T> result = ParserUtils.fromJson(request, charsetName, type, maxBodySize, codec);
+        timer.parsed(parseStart);
+        return result;
+    }
+
+    /**
+     * Reads the body of the HTTP request as text. <br>
+     * The body size is limited the same way as for {@link #fromJson(String, Class)}.
+     * @param charsetName The charset to expect
+     * @return The body
+     * @since 1.7
+     */
+    Try<String> readBody(String charsetName) {
+        long parseStart = timer.now();
+        Try<String> result = ParserUtils.readBody(request, charsetName, maxBodySize);
+        timer.parsed(parseStart);
+        return result;
+    }
+
+    /**
+     * Parses an object from the body of the HTTP request in the format declared by the <tt>Content-Type</tt>. <br>
+     * Bodies of a type matching a registered {@link FormatCodec} are parsed with that codec, all other bodies as <tt>UTF-8</tt> json. <br>
+     * The body size is limited the same way as for {@link #fromJson(String, Class)}.
+     * @param type The type to parse
+     * @param <T> The return type
+     * @return The parsed object
+     * @since 1.7
+     */
+    public <T> Try<T> fromBody(Class<T> type) {
+        Option<FormatCodec> format = FormatCodecs.registered().forContentType(request.getContentType());
+        if (format.isEmpty()) {
+            return fromJson(type);
+        }
+        long parseStart = timer.now();
+        Try<T> result = ParserUtils.decode(request, type, maxBodySize, format.orNull());
+        timer.parsed(parseStart);
+        return result;
+    }
+
+    /**
+     * Get the format to use for the response as negotiated with the <tt>Accept</tt> header.
+     * @return The codec, None for json
+     * @since 1.7
+     */
+    Option<FormatCodec> responseFormat() {
+        if (responseFormat == null) {
+            responseFormat = FormatCodecs.registered().forAccept(accept(), refused());
+        }
+        return responseFormat;
+    }
+
+    /**
+     * Lazily parses the elements of a json array from the json stream in the HTTP request. <br>
+     * The elements are parsed one at a time as the stream is consumed, i.e. the full array is never held in memory. <br>
+     * The stream is sequential, use {@link #forEachJsonArrayElement(Class, int, int, Executor, Consumer)} for parallel processing.
+     * @param type The type of the elements
+     * @param <T> The element type
+     * @return The stream of elements, failure if the request doesn't start with a json array
+     * @since 1.7
+     */
+    public <T> Try<Stream<T>> streamJsonArray(Class<T> type) {
+        return ParserUtils.streamJsonArray(request, "UTF-8", type, maxBodySize, codec);
+    }
+
+    /**
+     * Parses the elements of a json array from the json stream in the HTTP request handing them to the executor in chunks for parallel processing. <br>
+     * The elements are parsed on the calling thread into chunks of <tt>chunkSize</tt> elements.
+     * Parsing is paused while <tt>maxPendingChunks</tt> chunks are waiting for or being processed by the executor,
+     * i.e. at most <tt>chunkSize &times; maxPendingChunks</tt> parsed elements are held in memory regardless of the size of the array. <br>
+     * The action is invoked concurrently and must hence be thread safe.
+     * The method returns once all elements are processed, after the first failure no more chunks are submitted. <br>
+     * The body size is limited the same way as for {@link #fromJson(String, Class)}.
+     * @param type The type of the elements
+     * @param chunkSize The number of elements per chunk
+     * @param maxPendingChunks The max number of chunks submitted to the executor but not yet processed
+     * @param executor The executor processing the chunks, e.g. a {@link java.util.concurrent.ForkJoinPool}
+     * @param action The action to apply to each element
+     * @param <T> The element type
+     * @return The number of processed elements, failure if parsing or the action failed
+     * @since 1.7
+     */
+    public <T> Try<Long> forEachJsonArrayElement(Class<T> type, int chunkSize, int maxPendingChunks, Executor executor, Consumer<? super T> action) {
+        return ParserUtils.forEachJsonArrayElement(request, "UTF-8", type, chunkSize, maxPendingChunks, executor, action, maxBodySize, codec);
     }
 }
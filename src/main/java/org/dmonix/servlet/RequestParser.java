@@ -19,6 +19,7 @@ import javascalautils.Option;
 import javascalautils.Try;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.stream.Stream;
 
 /**
  * Utilities for parsing HTTP requests
@@ -70,4 +71,17 @@ public interface RequestParser {
     default <T> Try<T> fromJson(HttpServletRequest req, String charsetName, Class<T> type) {
         return ParserUtils.fromJson(req, charsetName, type);
     }
+
+    /**
+     * Lazily parses the elements of a json array from the json stream in the HTTP request. <br>
+     * The elements are parsed one at a time as the stream is consumed.
+     * @param req The HTTP request
+     * @param type The type of the elements
+     * @param <T> The element type
+     * @return The stream of elements, failure if the request doesn't start with a json array
+     * @since 1.7
+     */
+    default <T> Try<Stream<T>> streamJsonArray(HttpServletRequest req, Class<T> type) {
+        return ParserUtils.streamJsonArray(req, "UTF-8", type, Long.MAX_VALUE, JsonCodecs.defaultCodec());
+    }
 }
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+/**
+ * Keeps track of the timings of a single request. <br>
+ * The {@link #NONE} timer is used when metrics are disabled, it never reads the clock.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class RequestTimer {
+    static final RequestTimer NONE = new RequestTimer(null, null);
+
+    private final ServletMetrics metrics;
+    private final HttpMethod method;
+    private final long start;
+    private long parseNanos;
+    private long handled;
+
+    RequestTimer(ServletMetrics metrics, HttpMethod method) {
+        this.metrics = metrics;
+        this.method = method;
+        this.start = now();
+    }
+
+    /**
+     * Get the current time.
+     * @return The time in nanoseconds, always <tt>0</tt> if not timing
+     */
+    long now() {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Adds to the time spent parsing the request body.
+     * @param parseStart The time the parsing started as returned by {@link #now()}
+     */
+    void parsed(long parseStart) {
+        if (metrics != null) {
+            parseNanos += System.nanoTime() - parseStart;
+        }
+    }
+
+    /**
+     * Marks the handler as done.
+     */
+    void handled() {
+        handled = now();
+    }
+
+    /**
+     * Marks the response as written and records the timings.
+     * @param status The status code of the response
+     */
+    void completed(int status) {
+        if (metrics == null) {
+            return;
+        }
+        long end = System.nanoTime();
+        //requests rejected without invoking the handler
+        long handlerEnd = handled == 0 ? start : handled;
+        metrics.record(method, status, end - start, parseNanos, handlerEnd - start - parseNanos, end - handlerEnd);
+    }
+}
@@ -18,9 +18,19 @@ package org.dmonix.servlet;
 import javascalautils.Option;
 
 import javax.servlet.http.Cookie;
-import java.util.*;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Option;
 import static javascalautils.OptionCompanion.Some;
 
 /**
@@ -42,11 +52,27 @@ public class Response {
     /** The optional character encoding for the response.*/
     public final Option<String> charEncoding;
 
-    /** The headers for the response.*/
-    private final Map<String, String> headers = new HashMap<>();
+    private static final String[] NO_HEADERS = new String[0];
 
-    /** The cookies for the response.*/
-    private final Set<Cookie> cookies = new HashSet<>();
+    private static final Cookie[] NO_COOKIES = new Cookie[0];
+
+    /** The headers for the response stored as name/value pairs, allocated on first use.*/
+    private String[] headers = NO_HEADERS;
+
+    /** The number of headers.*/
+    private int headerCount;
+
+    /** The cookies for the response, allocated on first use.*/
+    private Cookie[] cookies = NO_COOKIES;
+
+    /** The number of cookies.*/
+    private int cookieCount;
+
+    /** Read-only view of the headers, created on first use.*/
+    private Map<String, String> headersView;
+
+    /** Read-only view of the cookies, created on first use.*/
+    private Set<Cookie> cookiesView;
 
     /**
      * Creates an instance
@@ -80,20 +106,35 @@ public class Response {
     }
 
     /**
-     * Add a header to put into the HTTP response.
+     * Creates a builder for an immutable response. <br>
+     * The built response is a {@link ResponseTemplate}, it can be shared between threads and cached.
+     * @return The builder
+     * @since 1.7
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Add a header to put into the HTTP response. <br>
+     * Adding a header with the same name as an already added header replaces the value.
      * @param name The name of the header
      * @param value The value of the header
      */
     public void addHeader(String name, String value) {
-        headers.put(name, value);
+        putHeader(name, value);
     }
 
     /**
-     * Get all the headers to use for the HTTP response.
+     * Get all the headers to use for the HTTP response. <br>
+     * The returned map is a read-only view, i.e. headers added later are reflected in it.
      * @return The headers
      */
     public Map<String, String> headers() {
-        return Collections.unmodifiableMap(headers);
+        if (headersView == null) {
+            headersView = new HeadersView();
+        }
+        return headersView;
     }
 
     /**
@@ -102,15 +143,370 @@ public class Response {
      * @since 1.6
      */
     public void addCookie(Cookie cookie) {
-        cookies.add(cookie);
+        putCookie(cookie);
     }
 
     /**
-     * Get all the cookies for the HTTP response
-     * @return
+     * Get all the cookies for the HTTP response. <br>
+     * The returned set is a read-only view, i.e. cookies added later are reflected in it.
+     * @return The cookies
      * @since 1.6
      */
     public Set<Cookie> cookies() {
-        return Collections.unmodifiableSet(cookies);
+        if (cookiesView == null) {
+            cookiesView = new CookiesView();
+        }
+        return cookiesView;
+    }
+
+    /**
+     * Get the value of a header. <br>
+     * The name is matched ignoring case as for HTTP header names.
+     * @param name The name of the header
+     * @return The value, <code>null</code> if there is no such header
+     * @since 1.7
+     */
+    String header(String name) {
+        for (int i = 0; i < headerCount * 2; i += 2) {
+            if (headers[i].equalsIgnoreCase(name)) {
+                return headers[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds/replaces a header, unlike {@link #addHeader(String, String)} this can't be overridden.
+     * @param name The name of the header
+     * @param value The value of the header
+     * @since 1.7
+     */
+    final void putHeader(String name, String value) {
+        for (int i = 0; i < headerCount * 2; i += 2) {
+            if (headers[i].equals(name)) {
+                headers[i + 1] = value;
+                return;
+            }
+        }
+        if (headerCount * 2 == headers.length) {
+            headers = Arrays.copyOf(headers, Math.max(4, headers.length * 2));
+        }
+        headers[headerCount * 2] = name;
+        headers[headerCount * 2 + 1] = value;
+        headerCount++;
+    }
+
+    /**
+     * Adds a cookie unless already added, unlike {@link #addCookie(Cookie)} this can't be overridden.
+     * @param cookie The cookie
+     * @since 1.7
+     */
+    final void putCookie(Cookie cookie) {
+        for (int i = 0; i < cookieCount; i++) {
+            if (cookies[i] == cookie) {
+                return;
+            }
+        }
+        if (cookieCount == cookies.length) {
+            cookies = Arrays.copyOf(cookies, Math.max(2, cookies.length * 2));
+        }
+        cookies[cookieCount++] = cookie;
+    }
+
+    /**
+     * Copies the headers and cookies of another response into this response. <br>
+     * The cookies are cloned as they are mutable.
+     * @param source The response to copy from
+     * @since 1.7
+     */
+    final void copyHeadersAndCookies(Response source) {
+        for (int i = 0; i < source.headerCount * 2; i += 2) {
+            putHeader(source.headers[i], source.headers[i + 1]);
+        }
+        for (int i = 0; i < source.cookieCount; i++) {
+            putCookie((Cookie) source.cookies[i].clone());
+        }
+    }
+
+    /**
+     * Sets the headers and adds the cookies of this response to the HTTP response.
+     * @param resp The HTTP servlet response object
+     * @since 1.7
+     */
+    void writeHeadersAndCookies(HttpServletResponse resp) {
+        for (int i = 0; i < headerCount * 2; i += 2) {
+            //Vary is a list that the servlet may already have started, e.g. for compression
+            if (headers[i].equalsIgnoreCase("Vary") && resp.containsHeader(headers[i])) {
+                resp.addHeader(headers[i], headers[i + 1]);
+            } else {
+                resp.setHeader(headers[i], headers[i + 1]);
+            }
+        }
+        for (int i = 0; i < cookieCount; i++) {
+            resp.addCookie(cookies[i]);
+        }
+    }
+
+    /**
+     * If the body of this response is fully available in {@link #message}. <br>
+     * Responses that render the body first when written return <code>false</code>.
+     * @return <code>true</code> if the body is buffered
+     * @since 1.7
+     */
+    boolean isBuffered() {
+        return true;
+    }
+
+    /**
+     * If this response keeps the connection open after being written, e.g. an event stream. <br>
+     * Such responses take over the (asynchronous) request and are responsible for completing it.
+     * @return <code>true</code> if the connection is kept open
+     * @since 1.7
+     */
+    boolean isOpenEnded() {
+        return false;
+    }
+
+    /**
+     * Get the length in bytes of the encoded body of this response. <br>
+     * Used for answering <tt>HEAD</tt>, the body is measured without being written.
+     * @return The length, <tt>-1</tt> if it can't be known without writing the body
+     * @throws IOException Any exception while measuring the body
+     * @since 1.7
+     */
+    long contentLength() throws IOException {
+        if (!isBuffered() || charEncoding.isEmpty()) {
+            return -1;
+        }
+        String encoding = charEncoding.orNull();
+        if (encoding.equalsIgnoreCase("UTF-8")) {
+            return utf8Length(message);
+        }
+        return message.getBytes(Charset.forName(encoding)).length;
+    }
+
+    /**
+     * Computes the length of the <tt>UTF-8</tt> encoding of the string without encoding it. <br>
+     * Unpaired surrogates count as one byte as they are encoded as <tt>?</tt>.
+     * @param string The string
+     * @return The length in bytes
+     * @since 1.7
+     */
+    static long utf8Length(String string) {
+        int chars = string.length();
+        long length = chars;
+        for (int i = 0; i < chars; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                length += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(string.charAt(i + 1))) {
+                //the pair is encoded as four bytes
+                length += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes the body of this response to the HTTP response.
+     * @param resp The HTTP servlet response object
+     * @throws IOException Any exception during processing
+     * @since 1.7
+     */
+    void writeBody(HttpServletResponse resp) throws IOException {
+        resp.getWriter().write(message);
+    }
+
+    /**
+     * Releases any resources held for the body when the body is not going to be written, e.g. for <tt>HEAD</tt> or a <tt>304</tt>.
+     * @throws IOException Any exception while releasing the resources
+     * @since 1.7
+     */
+    void discard() throws IOException {
+    }
+
+    /**
+     * Read-only view of the headers backed by the name/value array, i.e. nothing is copied.
+     */
+    private final class HeadersView extends AbstractMap<String, String> {
+        private final Set<Entry<String, String>> entries = new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < headerCount;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int index = next++ * 2;
+                        return new SimpleImmutableEntry<>(headers[index], headers[index + 1]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return headerCount;
+            }
+        };
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return entries;
+        }
+
+        @Override
+        public int size() {
+            return headerCount;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public String get(Object key) {
+            int index = indexOf(key);
+            return index >= 0 ? headers[index + 1] : null;
+        }
+
+        private int indexOf(Object name) {
+            for (int i = 0; i < headerCount * 2; i += 2) {
+                if (headers[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Read-only view of the cookies backed by the cookie array, i.e. nothing is copied.
+     */
+    private final class CookiesView extends AbstractSet<Cookie> {
+        @Override
+        public Iterator<Cookie> iterator() {
+            return new Iterator<Cookie>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < cookieCount;
+                }
+
+                @Override
+                public Cookie next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return cookies[next++];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return cookieCount;
+        }
+    }
+
+    /**
+     * Builder for immutable responses. <br>
+     * Unless set the response code is <tt>200</tt>, the message is empty and the character encoding is <tt>UTF-8</tt>.
+     * @since 1.7
+     */
+    public static final class Builder {
+        private int responseCode = HttpServletResponse.SC_OK;
+        private String message = "";
+        private Option<String> mediaType = None();
+        private Option<String> charEncoding = Some("UTF-8");
+        private final Response headersAndCookies = new Response(0, "");
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the HTTP response code.
+         * @param responseCode The response code
+         * @return The builder
+         */
+        public Builder responseCode(int responseCode) {
+            this.responseCode = responseCode;
+            return this;
+        }
+
+        /**
+         * Sets the body of the response.
+         * @param message The body
+         * @return The builder
+         */
+        public Builder message(String message) {
+            this.message = message;
+            return this;
+        }
+
+        /**
+         * Sets the media type of the response.
+         * @param mediaType The media type, e.g. <tt>application/json</tt>
+         * @return The builder
+         */
+        public Builder mediaType(String mediaType) {
+            this.mediaType = Option(mediaType);
+            return this;
+        }
+
+        /**
+         * Sets the character encoding of the response.
+         * @param charEncoding The character encoding
+         * @return The builder
+         */
+        public Builder charEncoding(String charEncoding) {
+            this.charEncoding = Option(charEncoding);
+            return this;
+        }
+
+        /**
+         * Adds a header to the response, replacing any header with the same name.
+         * @param name The name of the header
+         * @param value The value of the header
+         * @return The builder
+         */
+        public Builder header(String name, String value) {
+            headersAndCookies.putHeader(name, value);
+            return this;
+        }
+
+        /**
+         * Adds a cookie to the response. <br>
+         * The response gets a copy of the cookie, i.e. changing the cookie after building doesn't affect the response.
+         * @param cookie The cookie
+         * @return The builder
+         */
+        public Builder cookie(Cookie cookie) {
+            headersAndCookies.putCookie(cookie);
+            return this;
+        }
+
+        /**
+         * Builds the immutable response.
+         * @return The response
+         */
+        public ResponseTemplate build() {
+            return ResponseTemplate.of(responseCode, message, mediaType, charEncoding, headersAndCookies);
+        }
     }
 }
@@ -16,10 +16,16 @@
 package org.dmonix.servlet;
 
 import com.google.gson.Gson;
+import javascalautils.Option;
 import javascalautils.Try;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 import static javascalautils.OptionCompanion.Some;
 import static javax.servlet.http.HttpServletResponse.*;
@@ -31,7 +37,17 @@ import static javax.servlet.http.HttpServletResponse.*;
  * @since 1.0
  */
 public interface ResponseBuilder {
-    Gson gson = new Gson();
+    Gson gson = GsonProvider.gson;
+
+    /**
+     * Get the codec used for serializing objects to json. <br>
+     * Defaults to the first {@link JsonCodec} registered as a service, else {@link GsonCodec}.
+     * @return The codec
+     * @since 1.7
+     */
+    default JsonCodec jsonCodec() {
+        return JsonCodecs.defaultCodec();
+    }
 
     /**
      * Creates an empty response with only a response code
@@ -92,7 +108,140 @@ public interface ResponseBuilder {
      * @return The response object
      */
     default Response ObjectResponse(Object object, String charEncoding) {
-        return new Response(SC_OK, gson.toJson(object), Some("application/json;charset="+charEncoding), Some(charEncoding));
+        return new Response(SC_OK, jsonCodec().toJson(object), Some("application/json;charset="+charEncoding), Some(charEncoding));
+    }
+
+    /**
+     * Creates a response where the provided object is encoded in the format preferred by the client. <br>
+     * The format is chosen on the <tt>Accept</tt> header of the request among json and the formats registered as
+     * a {@link FormatCodec}, json is used unless the client prefers another registered format. <br>
+     * Json is rendered as by {@link #ObjectResponse(Object)}, other formats are encoded to a pre-encoded body
+     * (see {@link #BytesResponse(byte[], String)}) leaving the message of the response empty. <br>
+     * If any format is registered the response has a <tt>Vary: Accept</tt> header.
+     * @param request The request to negotiate the format with
+     * @param object The response object/message
+     * @return The response object
+     * @throws UncheckedIOException If the codec fails to encode the object
+     * @since 1.7
+     */
+    default Response NegotiatedResponse(Request request, Object object) {
+        if (FormatCodecs.registered().isEmpty()) {
+            return ObjectResponse(object);
+        }
+        Option<FormatCodec> format = request.responseFormat();
+        Response response;
+        if (format.isEmpty()) {
+            response = ObjectResponse(object);
+        } else {
+            FormatCodec codec = format.orNull();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try {
+                codec.encode(object, body);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            response = BytesResponse(body.toByteArray(), codec.mediaType());
+        }
+        response.addHeader("Vary", "Accept");
+        return response;
+    }
+
+    /**
+     * Creates a response where the provided object will be streamed as json directly to the client. <br>
+     * In contrast to {@link #ObjectResponse(Object)} the json is not rendered to a string, instead it's written to the
+     * output stream once the response is written. <br>
+     * This keeps the memory footprint low for large objects/lists, the message of the response is however empty. <br>
+     * Will by default use the charset <tt>UTF-8</tt>
+     * @param object
+     *            The response object/message
+     * @return The response object
+     * @since 1.7
+     */
+    default Response StreamedObjectResponse(Object object) {
+        return StreamedObjectResponse(object, "UTF-8");
+    }
+
+    /**
+     * Creates a response where the provided object will be streamed as json directly to the client.
+     *
+     * @param object
+     *            The response object/message
+     * @param charEncoding The character encoding to use
+     * @return The response object
+     * @since 1.7
+     * @see #StreamedObjectResponse(Object)
+     */
+    default Response StreamedObjectResponse(Object object, String charEncoding) {
+        return new StreamedObjectResponse(object, charEncoding, jsonCodec());
+    }
+
+    /**
+     * Creates a response with a pre-encoded body. <br>
+     * The body is written to the output stream with a single write together with the <tt>Content-Length</tt>,
+     * thus avoiding chunked transfer encoding as well as the character encoding of the writer. <br>
+     * The array is not copied and must not be changed after creating the response.
+     * @param body The body
+     * @param mediaType The media type of the body including any charset, e.g. <tt>application/json;charset=UTF-8</tt>
+     * @return The response object
+     * @since 1.7
+     */
+    default Response BytesResponse(byte[] body, String mediaType) {
+        return BytesResponse(ByteBuffer.wrap(body), mediaType);
+    }
+
+    /**
+     * Creates a response with a pre-encoded body. <br>
+     * The remaining bytes of the buffer are written to the output stream with a single write together with the <tt>Content-Length</tt>. <br>
+     * The position of the buffer is not changed, the contents of the buffer must not be changed after creating the response.
+     * @param body The body
+     * @param mediaType The media type of the body including any charset, e.g. <tt>application/json;charset=UTF-8</tt>
+     * @return The response object
+     * @since 1.7
+     * @see #BytesResponse(byte[], String)
+     */
+    default Response BytesResponse(ByteBuffer body, String mediaType) {
+        return new BytesResponse(SC_OK, body, mediaType);
+    }
+
+    /**
+     * Creates a response streaming the elements as newline delimited json (<tt>application/x-ndjson</tt>). <br>
+     * Each element is written as a json document on a line of its own as it's pulled from the stream,
+     * thus the elements are never held in memory all at once. <br>
+     * The first element is flushed immediately, the following periodically. <br>
+     * The stream is closed once written.
+     * @param elements The elements to write
+     * @param <T> The type of the elements
+     * @return The response object
+     * @since 1.7
+     */
+    default <T> Response StreamingResponse(Stream<T> elements) {
+        return new StreamingResponse(elements.iterator(), elements, jsonCodec());
+    }
+
+    /**
+     * Creates a response streaming the elements as newline delimited json (<tt>application/x-ndjson</tt>).
+     * @param elements The elements to write
+     * @param <T> The type of the elements
+     * @return The response object
+     * @since 1.7
+     * @see #StreamingResponse(Stream)
+     */
+    default <T> Response StreamingResponse(Iterator<T> elements) {
+        return new StreamingResponse(elements, () -> {}, jsonCodec());
+    }
+
+    /**
+     * Creates a response subscribing the client on the events of the publisher using Server-Sent Events (<tt>text/event-stream</tt>). <br>
+     * The connection is kept open and each event published is pushed to the client,
+     * clients reconnecting with a <tt>Last-Event-ID</tt> header first get the events they've missed. <br>
+     * Requires the servlet to support asynchronous processing, else the client gets the missed events and is told to reconnect.
+     * @param request The request to subscribe
+     * @param publisher The publisher of the events
+     * @return The response object
+     * @since 1.7
+     */
+    default Response EventStreamResponse(Request request, EventPublisher publisher) {
+        return new EventStreamResponse(request, publisher);
     }
 
     /**
@@ -175,8 +324,14 @@ public interface ResponseBuilder {
      * @throws IOException Any exception during processing
      */
     default void writeResponse(HttpServletResponse resp, Try<Response> response) throws IOException {
-        //orNull will never happen as we've set a recover function
-        writeResponse(resp, response.recover(this::ErrorResponse).orNull());
+        Response rsp;
+        try {
+            //get on a Failure throws the exception as is, thus avoiding the allocations of recover
+            rsp = response.get();
+        } catch (Throwable throwable) {
+            rsp = ErrorResponse(throwable);
+        }
+        writeResponse(resp, rsp);
     }
 
     /**
@@ -190,20 +345,21 @@ public interface ResponseBuilder {
         //set the response code, e.g. 200
         resp.setStatus(response.responseCode);
 
-        //set all headers
-        response.headers().forEach(resp::setHeader);
+        //set all headers and add any optional cookies
+        response.writeHeadersAndCookies(resp);
 
         //set the optional content-type
-        response.mediaType.forEach(resp::setContentType);
+        if (response.mediaType.isDefined()) {
+            resp.setContentType(response.mediaType.orNull());
+        }
 
         //set the optional char-encoding
-        response.charEncoding.forEach(resp::setCharacterEncoding);
-
-        //add any optional cookies
-        response.cookies().forEach(resp::addCookie);
+        if (response.charEncoding.isDefined()) {
+            resp.setCharacterEncoding(response.charEncoding.orNull());
+        }
 
         //write any body data
-        resp.getWriter().write(response.message);
+        response.writeBody(resp);
     }
 
 }
@@ -0,0 +1,151 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Option;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Some;
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_METHOD_NOT_ALLOWED;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE;
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+
+/**
+ * Immutable response that can be shared between any number of requests. <br>
+ * The body is encoded once (<tt>UTF-8</tt> unless copied from a response with another encoding) when the template is created and then written with a single write
+ * to the output stream together with the <tt>Content-Length</tt>. <br>
+ * Intended for static responses such as common error responses. <br>
+ * Any attempt to add headers/cookies will fail with an {@link UnsupportedOperationException}, instead use
+ * {@link #withHeader(String, String)} to create a new template.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+public final class ResponseTemplate extends Response {
+
+    /** Template for <tt>405</tt> method not allowed.*/
+    static final ResponseTemplate METHOD_NOT_ALLOWED = of(SC_METHOD_NOT_ALLOWED, "Method not allowed");
+
+    /** Template for <tt>404</tt> no route for the path.*/
+    static final ResponseTemplate NOT_FOUND = of(SC_NOT_FOUND, "Not found");
+
+    /** Template for <tt>400</tt> missing path.*/
+    static final ResponseTemplate MISSING_PATH = of(SC_BAD_REQUEST, "Missing path");
+
+    /** Template for <tt>413</tt> payload too large, the connection is closed as the rest of the body is not read.*/
+    static final ResponseTemplate PAYLOAD_TOO_LARGE = of(SC_REQUEST_ENTITY_TOO_LARGE, "Payload too large").withHeader("Connection", "close");
+
+    /** Template for <tt>503</tt> service unavailable for requests shed due to overload.*/
+    static final ResponseTemplate SERVICE_UNAVAILABLE = of(SC_SERVICE_UNAVAILABLE, "Service unavailable").withHeader("Retry-After", "1");
+
+    /** The pre-encoded body.*/
+    private final byte[] body;
+
+    private ResponseTemplate(int responseCode, String message, Option<String> mediaType, Option<String> charEncoding) {
+        super(responseCode, message, mediaType, charEncoding);
+        this.body = message.getBytes(Charset.forName(charEncoding.getOrElse(() -> "UTF-8")));
+    }
+
+    /**
+     * Creates a template.
+     * @param responseCode The HTTP response code
+     * @param message The body of the response
+     * @return The template
+     */
+    public static ResponseTemplate of(int responseCode, String message) {
+        return of(responseCode, message, None(), Some("UTF-8"), null);
+    }
+
+    /**
+     * Creates a template.
+     * @param responseCode The HTTP response code
+     * @param message The body of the response
+     * @param mediaType An optional media type of the response data
+     * @param charEncoding An optional character encoding of the response data
+     * @param headersAndCookies Response to copy headers and cookies from, may be <code>null</code>
+     * @return The template
+     */
+    static ResponseTemplate of(int responseCode, String message, Option<String> mediaType, Option<String> charEncoding, Response headersAndCookies) {
+        ResponseTemplate template = new ResponseTemplate(responseCode, message, mediaType, charEncoding);
+        if (headersAndCookies != null) {
+            template.copyHeadersAndCookies(headersAndCookies);
+        }
+        return template;
+    }
+
+    /**
+     * Creates an immutable copy of a response. <br>
+     * The copy is detached from the original, i.e. it can be shared between requests even if the original is later modified.
+     * @param response The response to copy, must be buffered
+     * @return The template
+     */
+    static ResponseTemplate copyOf(Response response) {
+        if (response instanceof ResponseTemplate) {
+            return (ResponseTemplate) response;
+        }
+        return of(response.responseCode, response.message, response.mediaType, response.charEncoding, response);
+    }
+
+    /**
+     * Creates a new template with the same data as this template and the additional header.
+     * @param name The name of the header
+     * @param value The value of the header
+     * @return The new template
+     */
+    public ResponseTemplate withHeader(String name, String value) {
+        ResponseTemplate template = of(responseCode, message, mediaType, charEncoding, this);
+        template.putHeader(name, value);
+        return template;
+    }
+
+    /**
+     * Unsupported operation as the template is immutable.
+     * @param name The name of the header
+     * @param value The value of the header
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public void addHeader(String name, String value) {
+        throw new UnsupportedOperationException("Response templates are immutable, use withHeader");
+    }
+
+    /**
+     * Unsupported operation as the template is immutable.
+     * @param cookie The cookie to add
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public void addCookie(Cookie cookie) {
+        throw new UnsupportedOperationException("Response templates are immutable");
+    }
+
+    @Override
+    long contentLength() {
+        return body.length;
+    }
+
+    @Override
+    void writeBody(HttpServletResponse resp) throws IOException {
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Try;
+
+/**
+ * Handler for a route registered on a {@link RoutingServlet}.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+@FunctionalInterface
+public interface RouteHandler {
+
+    /**
+     * Handles the request. <br>
+     * Parameters declared by the template of the route are found with {@link Request#pathParam(String)}.
+     * @param request The request data
+     * @return The response data in case of Success, else a Failure
+     */
+    Try<Response> handle(Request request);
+}
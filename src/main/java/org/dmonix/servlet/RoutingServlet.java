@@ -0,0 +1,163 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Option;
+import javascalautils.Try;
+
+import javax.servlet.http.HttpServletRequest;
+
+import static javascalautils.TryCompanion.Failure;
+import static javascalautils.TryCompanion.Success;
+
+/**
+ * Front controller servlet dispatching requests to handlers registered for path templates. <br>
+ * Templates such as <tt>/users/{id}/orders/{oid}</tt> are compiled into a radix trie, requests are routed in a single
+ * pass over the path and the parameters are available through {@link Request#pathParam(String)}. <br>
+ * Routes are to be registered when the servlet is created, e.g.
+ * <pre>
+ * public class UserServlet extends RoutingServlet {
+ *     public UserServlet() {
+ *         onGet("/users/{id}", request -&gt; ...);
+ *         onPut("/users/{id}", request -&gt; ...);
+ *         onGet("/users/{id}/orders/{oid}", request -&gt; ...);
+ *     }
+ * }
+ * </pre>
+ * The routed path is the path info of the request, or the servlet path for servlets mapped on an exact path or as default servlet. <br>
+ * Paths not matching any template are answered with a <tt>404</tt>,
+ * paths matching a template without a handler for the method with a <tt>405</tt>.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+public abstract class RoutingServlet extends JSONServlet {
+
+    private final PathRouter<Route> router = new PathRouter<>();
+
+    /**
+     * Registers a handler for <tt>GET</tt> requests.
+     * @param template The path template
+     * @param handler The handler
+     * @throws IllegalArgumentException If the template is malformed or already has a <tt>GET</tt> handler
+     */
+    protected final void onGet(String template, RouteHandler handler) {
+        route(HttpMethod.GET, template, handler);
+    }
+
+    /**
+     * Registers a handler for <tt>POST</tt> requests.
+     * @param template The path template
+     * @param handler The handler
+     * @throws IllegalArgumentException If the template is malformed or already has a <tt>POST</tt> handler
+     */
+    protected final void onPost(String template, RouteHandler handler) {
+        route(HttpMethod.POST, template, handler);
+    }
+
+    /**
+     * Registers a handler for <tt>PUT</tt> requests.
+     * @param template The path template
+     * @param handler The handler
+     * @throws IllegalArgumentException If the template is malformed or already has a <tt>PUT</tt> handler
+     */
+    protected final void onPut(String template, RouteHandler handler) {
+        route(HttpMethod.PUT, template, handler);
+    }
+
+    /**
+     * Registers a handler for <tt>DELETE</tt> requests.
+     * @param template The path template
+     * @param handler The handler
+     * @throws IllegalArgumentException If the template is malformed or already has a <tt>DELETE</tt> handler
+     */
+    protected final void onDelete(String template, RouteHandler handler) {
+        route(HttpMethod.DELETE, template, handler);
+    }
+
+    @Override
+    protected final Try<Response> getWithTry(Request request) {
+        return dispatch(HttpMethod.GET, request);
+    }
+
+    @Override
+    protected final Try<Response> postWithTry(Request request) {
+        return dispatch(HttpMethod.POST, request);
+    }
+
+    @Override
+    protected final Try<Response> putWithTry(Request request) {
+        return dispatch(HttpMethod.PUT, request);
+    }
+
+    @Override
+    protected final Try<Response> deleteWithTry(Request request) {
+        return dispatch(HttpMethod.DELETE, request);
+    }
+
+    private void route(HttpMethod method, String template, RouteHandler handler) {
+        router.computeIfAbsent(template, Route::new).add(method, template, handler);
+    }
+
+    private Try<Response> dispatch(HttpMethod method, Request request) {
+        HttpServletRequest req = request.request();
+        String path = req.getPathInfo() != null ? req.getPathInfo() : req.getServletPath();
+        Option<PathRouter.Match<Route>> match = router.match(path);
+        if (match.isEmpty()) {
+            return Success(ResponseTemplate.NOT_FOUND);
+        }
+        Route route = match.orNull().value;
+        RouteHandler handler = route.handlers[method.ordinal()];
+        if (handler == null) {
+            return Success(route.methodNotAllowed);
+        }
+        request.route(match.orNull());
+        try {
+            return handler.handle(request);
+        } catch (RuntimeException ex) {
+            return Failure(ex);
+        }
+    }
+
+    /**
+     * The handlers registered for a template.
+     */
+    private static final class Route {
+        private final RouteHandler[] handlers = new RouteHandler[HttpMethod.values().length];
+
+        private ResponseTemplate methodNotAllowed = ResponseTemplate.METHOD_NOT_ALLOWED;
+
+        private void add(HttpMethod method, String template, RouteHandler handler) {
+            if (handlers[method.ordinal()] != null) {
+                throw new IllegalArgumentException("Duplicate " + method + " route for [" + template + "]");
+            }
+            handlers[method.ordinal()] = handler;
+            methodNotAllowed = ResponseTemplate.METHOD_NOT_ALLOWED.withHeader("Allow", allow());
+        }
+
+        private String allow() {
+            StringBuilder allow = new StringBuilder("OPTIONS, TRACE");
+            if (handlers[HttpMethod.GET.ordinal()] != null) {
+                allow.append(", GET, HEAD");
+            }
+            for (HttpMethod method : new HttpMethod[]{HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE}) {
+                if (handlers[method.ordinal()] != null) {
+                    allow.append(", ").append(method.name());
+                }
+            }
+            return allow.toString();
+        }
+    }
+}
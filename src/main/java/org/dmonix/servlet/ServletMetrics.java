@@ -0,0 +1,133 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The latency histograms of a single servlet. <br>
+ * The total time is kept per HTTP method and status class (<tt>1xx - 5xx</tt>), the time spent parsing the request body,
+ * in the handler and writing the response per HTTP method. <br>
+ * All instances are kept in a global registry keyed on the servlet name, from which they're rendered by the {@link MetricsServlet}.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class ServletMetrics {
+    private static final ConcurrentMap<String, ServletMetrics> REGISTRY = new ConcurrentHashMap<>();
+
+    /** The number of status classes, 1xx to 5xx.*/
+    static final int STATUS_CLASSES = 5;
+
+    final String servletName;
+
+    /** Total time indexed on [method ordinal][status class].*/
+    private final LatencyHistogram[][] total;
+    private final LatencyHistogram[] parse;
+    private final LatencyHistogram[] handler;
+    private final LatencyHistogram[] write;
+
+    private ServletMetrics(String servletName) {
+        this.servletName = servletName;
+        int methods = HttpMethod.values().length;
+        total = new LatencyHistogram[methods][STATUS_CLASSES];
+        parse = newHistograms(methods);
+        handler = newHistograms(methods);
+        write = newHistograms(methods);
+        for (int i = 0; i < methods; i++) {
+            total[i] = newHistograms(STATUS_CLASSES);
+        }
+    }
+
+    /**
+     * Get the metrics for a servlet, created if not already registered. <br>
+     * A re-initialized servlet continues on the same metrics.
+     * @param servletName The name of the servlet
+     * @return The metrics
+     */
+    static ServletMetrics register(String servletName) {
+        return REGISTRY.computeIfAbsent(servletName, ServletMetrics::new);
+    }
+
+    /**
+     * Get all registered metrics.
+     * @return The metrics
+     */
+    static Collection<ServletMetrics> registered() {
+        return Collections.unmodifiableCollection(REGISTRY.values());
+    }
+
+    /**
+     * Starts timing a request.
+     * @param method The HTTP method
+     * @return The timer
+     */
+    RequestTimer start(HttpMethod method) {
+        return new RequestTimer(this, method);
+    }
+
+    /**
+     * Records a completed request.
+     * @param method The HTTP method
+     * @param status The HTTP status code
+     * @param totalNanos The total processing time
+     * @param parseNanos The time spent parsing the request body
+     * @param handlerNanos The time spent in the handler, not counting the parsing
+     * @param writeNanos The time spent writing the response
+     */
+    void record(HttpMethod method, int status, long totalNanos, long parseNanos, long handlerNanos, long writeNanos) {
+        int m = method.ordinal();
+        total[m][statusClass(status)].record(totalNanos);
+        parse[m].record(parseNanos);
+        handler[m].record(handlerNanos);
+        write[m].record(writeNanos);
+    }
+
+    LatencyHistogram.Snapshot total(HttpMethod method, int statusClass) {
+        return total[method.ordinal()][statusClass].snapshot();
+    }
+
+    LatencyHistogram.Snapshot parse(HttpMethod method) {
+        return parse[method.ordinal()].snapshot();
+    }
+
+    LatencyHistogram.Snapshot handler(HttpMethod method) {
+        return handler[method.ordinal()].snapshot();
+    }
+
+    LatencyHistogram.Snapshot write(HttpMethod method) {
+        return write[method.ordinal()].snapshot();
+    }
+
+    /**
+     * Get the status class index of a status code, <tt>0</tt> for <tt>1xx</tt> up to <tt>4</tt> for <tt>5xx</tt>.
+     * @param status The status code
+     * @return The index
+     */
+    static int statusClass(int status) {
+        return Math.min(Math.max(status / 100, 1), STATUS_CLASSES) - 1;
+    }
+
+    private static LatencyHistogram[] newHistograms(int size) {
+        LatencyHistogram[] histograms = new LatencyHistogram[size];
+        for (int i = 0; i < size; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Option;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Some;
+
+/**
+ * Coalesces concurrent identical requests into a single invocation of the handler. <br>
+ * The first request for a key (the leader) invokes the handler, any request for the same key arriving while the
+ * leader is in flight (a follower) waits for the leader and shares its response instead of invoking the handler again. <br>
+ * Only buffered responses can be shared, they are handed to the followers as an immutable {@link ResponseTemplate}.
+ * Should the leader produce a response rendered first when written (e.g. a streamed response) the followers fall back
+ * to invoking the handler themselves, each on the provided executor as they would otherwise run one after another on the
+ * thread completing the leader. <br>
+ * A failed leader fails all its followers with the same exception. <br>
+ * Nothing is cached, the key is released as soon as the leader completes.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class SingleFlight {
+
+    /** The in-flight calls, completing with the shareable response if any.*/
+    private final ConcurrentMap<String, CompletableFuture<Option<Response>>> calls = new ConcurrentHashMap<>();
+
+    /** Runs the handler for followers that can't share the response of the leader.*/
+    private final Executor executor;
+
+    /**
+     * Creates an instance
+     * @param executor Runs the handler for followers that can't share the response of the leader
+     */
+    SingleFlight(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Invokes the handler unless there already is a call in flight for the key.
+     * @param key The key identifying identical requests
+     * @param handler The handler
+     * @return The stage completing with the response data
+     */
+    CompletionStage<Response> execute(String key, Supplier<CompletionStage<Response>> handler) {
+        CompletableFuture<Option<Response>> call = new CompletableFuture<>();
+        CompletableFuture<Option<Response>> inFlight = calls.putIfAbsent(key, call);
+        if (inFlight != null) {
+            return inFlight.thenCompose(shared -> shared.isDefined() ? CompletableFuture.completedFuture(shared.orNull()) : CompletableFuture.supplyAsync(handler, executor).thenCompose(Function.identity()));
+        }
+
+        CompletionStage<Response> response;
+        try {
+            response = handler.get();
+        } catch (RuntimeException ex) {
+            calls.remove(key, call);
+            call.completeExceptionally(ex);
+            throw ex;
+        }
+        response.whenComplete((rsp, throwable) -> {
+            //release the key before completing so requests arriving from now on start a new call
+            calls.remove(key, call);
+            if (throwable != null) {
+                call.completeExceptionally(throwable);
+            } else {
+                call.complete(share(rsp));
+            }
+        });
+        return response;
+    }
+
+    /**
+     * The number of calls currently in flight.
+     * @return The number of calls
+     */
+    int inFlight() {
+        return calls.size();
+    }
+
+    private static Option<Response> share(Response response) {
+        return response != null && response.isBuffered() && !response.isOpenEnded() ? Some(ResponseTemplate.copyOf(response)) : None();
+    }
+}
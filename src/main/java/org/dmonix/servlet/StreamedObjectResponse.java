@@ -0,0 +1,87 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import static javascalautils.OptionCompanion.Some;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+/**
+ * Response where the object is serialized to json first when the response is written. <br>
+ * The json is streamed straight onto the output stream of the HTTP response, hence the body is never materialized
+ * as a string and the {@link #message} of this response is always empty.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class StreamedObjectResponse extends Response {
+
+    private final Object object;
+    private final JsonCodec codec;
+
+    /**
+     * Creates an instance
+     * @param object The object to serialize
+     * @param charEncoding The character encoding to use
+     * @param codec The codec to serialize with
+     */
+    StreamedObjectResponse(Object object, String charEncoding, JsonCodec codec) {
+        super(SC_OK, "", Some("application/json;charset=" + charEncoding), Some(charEncoding));
+        this.object = object;
+        this.codec = codec;
+    }
+
+    @Override
+    boolean isBuffered() {
+        return false;
+    }
+
+    @Override
+    void writeBody(HttpServletResponse resp) throws IOException {
+        //deliberately not closing the writer, the stream is owned by the container
+        codec.toJson(object, new OutputStreamWriter(resp.getOutputStream(), charEncoding.getOrElse(() -> "UTF-8")));
+    }
+
+    /**
+     * Serializes the object onto a stream that only counts the bytes, i.e. the json is encoded but never stored.
+     */
+    @Override
+    long contentLength() throws IOException {
+        ByteCounter counter = new ByteCounter();
+        codec.toJson(object, new OutputStreamWriter(counter, charEncoding.getOrElse(() -> "UTF-8")));
+        return counter.count;
+    }
+
+    /**
+     * Stream discarding all data counting the number of bytes written to it.
+     */
+    private static final class ByteCounter extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
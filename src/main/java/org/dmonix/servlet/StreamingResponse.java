@@ -0,0 +1,146 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import static javascalautils.OptionCompanion.Some;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+/**
+ * Response writing the elements of an iterator as newline delimited json (<tt>application/x-ndjson</tt>). <br>
+ * The elements are serialized one at a time as they're pulled from the iterator, the memory used is thus independent of the number of elements. <br>
+ * The body is flushed after the first element and then at most every {@value #FLUSH_INTERVAL_MILLIS} ms,
+ * as the length is unknown the container sends the body using chunked transfer encoding. <br>
+ * The source is closed once the body is written, or when the response is discarded without a body, e.g. for <tt>HEAD</tt>.
+ * @author Peter Nerg
+ * @since 1.7
+ */
+final class StreamingResponse extends Response {
+    static final String MEDIA_TYPE = "application/x-ndjson";
+    static final long FLUSH_INTERVAL_MILLIS = 100;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS);
+
+    private final Iterator<?> elements;
+    private final AutoCloseable onComplete;
+    private final JsonCodec codec;
+    private boolean closed = false;
+
+    /**
+     * Creates an instance
+     * @param elements The elements to write
+     * @param onComplete Invoked once all elements are written or writing failed, e.g. closing the source stream
+     * @param codec The codec to serialize with
+     */
+    StreamingResponse(Iterator<?> elements, AutoCloseable onComplete, JsonCodec codec) {
+        super(SC_OK, "", Some(MEDIA_TYPE), Some("UTF-8"));
+        this.elements = elements;
+        this.onComplete = onComplete;
+        this.codec = codec;
+    }
+
+    @Override
+    boolean isBuffered() {
+        return false;
+    }
+
+    @Override
+    void writeBody(HttpServletResponse resp) throws IOException {
+        //deliberately not closing the writer, the stream is owned by the container
+        OutputStreamWriter out = new OutputStreamWriter(resp.getOutputStream(), StandardCharsets.UTF_8);
+        //the codec flushes after each document, which would otherwise send one chunk per element
+        Writer writer = new NonFlushingWriter(out);
+        try {
+            long lastFlush = 0;
+            boolean first = true;
+            while (elements.hasNext()) {
+                codec.toJson(elements.next(), writer);
+                writer.write('\n');
+                long now = System.nanoTime();
+                if (first || now - lastFlush >= FLUSH_INTERVAL_NANOS) {
+                    out.flush();
+                    lastFlush = now;
+                    first = false;
+                }
+            }
+            out.flush();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Closes the source as no elements are going to be written.
+     */
+    @Override
+    void discard() throws IOException {
+        close();
+    }
+
+    private void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            onComplete.close();
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Writer delegating all but flushes.
+     */
+    private static final class NonFlushingWriter extends Writer {
+        private final Writer writer;
+
+        private NonFlushingWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            writer.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            writer.write(c);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            writer.write(str, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
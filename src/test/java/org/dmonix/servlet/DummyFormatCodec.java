@@ -0,0 +1,55 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Format encoding {@link DummyData} as <tt>name;id</tt>, registered as a service to test the negotiation of formats.
+ * @author Peter Nerg
+ */
+public final class DummyFormatCodec implements FormatCodec {
+
+    static final String MEDIA_TYPE = "application/x-dummy";
+
+    @Override
+    public String mediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public <T> T decode(InputStream in, Class<T> type) throws IOException {
+        if (type != DummyData.class) {
+            throw new IOException("Unsupported type " + type);
+        }
+        String[] fields = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).readLine().split(";");
+        return type.cast(new DummyData(fields[0], Integer.parseInt(fields[1])));
+    }
+
+    @Override
+    public void encode(Object object, OutputStream out) throws IOException {
+        if (!(object instanceof DummyData)) {
+            throw new IOException("Unsupported type " + object);
+        }
+        DummyData data = (DummyData) object;
+        out.write((data.name + ";" + data.id).getBytes(StandardCharsets.UTF_8));
+    }
+}
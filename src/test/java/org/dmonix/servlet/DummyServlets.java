@@ -20,6 +20,11 @@ import javascalautils.Try;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.IntStream;
 
 import static javascalautils.TryCompanion.Success;
 
@@ -49,6 +54,18 @@ public abstract class DummyServlets {
 
     }
 
+    /**
+     * Servlet with a dedicated head handler.
+     * @author Peter Nerg
+     */
+    @WebServlet(name = "HeadServlet", urlPatterns = {"/*"})
+    public static class HeadServlet extends GetOnlyServlet {
+        @Override
+        protected Response head(Request request) {
+            return Response.builder().mediaType("application/json").header("X-Head", "true").message("{}").build();
+        }
+    }
+
     /**
      * Simple servlet built with {@link JSONServlet} for testing purposes.
      * @author Peter Nerg
@@ -102,4 +119,77 @@ public abstract class DummyServlets {
             return Success(AcceptedResponse());
         }
     }
+
+    /**
+     * Simple servlet built with {@link JSONServlet} for testing purposes.
+     * @author Peter Nerg
+     */
+    @WebServlet(name = "AsyncServlet", urlPatterns = {"/*"}, asyncSupported = true)
+    public static class AsyncServlet extends JSONServlet {
+        @Override
+        protected CompletionStage<Response> getAsync(Request request) {
+            return CompletableFuture.supplyAsync(() -> ObjectResponse(new DummyData("peter", 69)));
+        }
+
+        @Override
+        protected CompletionStage<Response> postAsync(Request request) {
+            return CompletableFuture.supplyAsync(() -> {
+                throw new IllegalStateException("Async failure");
+            });
+        }
+    }
+
+    /**
+     * Simple servlet built with {@link JSONServlet} for testing purposes.
+     * @author Peter Nerg
+     */
+    @WebServlet(name = "ParsingServlet", urlPatterns = {"/*"})
+    public static class ParsingServlet extends JSONServlet {
+        @Override
+        protected Try<Response> postWithTry(Request request) {
+            return request.fromJson(DummyData.class).map(this::ObjectResponse);
+        }
+    }
+
+    /**
+     * Servlet producing a large json list, used for testing compression.
+     * @author Peter Nerg
+     */
+    @WebServlet(name = "ListServlet", urlPatterns = {"/*"})
+    public static class ListServlet extends JSONServlet {
+        @Override
+        protected Response get(Request request) {
+            List<DummyData> list = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                list.add(new DummyData("peter-" + i, i));
+            }
+            return StreamedObjectResponse(list);
+        }
+    }
+
+    /**
+     * Servlet streaming a json list as ndjson.
+     * @author Peter Nerg
+     */
+    @WebServlet(name = "StreamingServlet", urlPatterns = {"/*"})
+    public static class StreamingServlet extends JSONServlet {
+        @Override
+        protected Response get(Request request) {
+            return StreamingResponse(IntStream.range(0, 1000).mapToObj(i -> new DummyData("peter-" + i, i)));
+        }
+    }
+
+    /**
+     * Servlet subscribing clients on events.
+     * @author Peter Nerg
+     */
+    @WebServlet(name = "EventServlet", urlPatterns = {"/*"}, asyncSupported = true)
+    public static class EventServlet extends JSONServlet {
+        public static final EventPublisher publisher = new EventPublisher();
+
+        @Override
+        protected Response get(Request request) {
+            return EventStreamResponse(request, publisher);
+        }
+    }
 }
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Mock implementation of a {@link javax.servlet.ServletOutputStream} used to capture response data
+ * @author Peter Nerg
+ */
+public final class MockServletOutputStream extends ServletOutputStream {
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+    private volatile boolean ready = true;
+    private WriteListener writeListener;
+
+    /**
+     * Ready unless set otherwise using {@link #setReady(boolean)}.
+     * @return
+     */
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Sets the readiness, making the stream ready notifies any registered write listener.
+     * @param ready If ready for writing
+     * @throws IOException Any exception from the listener
+     */
+    public void setReady(boolean ready) throws IOException {
+        this.ready = ready;
+        if (ready && writeListener != null) {
+            writeListener.onWritePossible();
+        }
+    }
+
+    /**
+     * Registers the listener and notifies it directly in case the stream is ready, as done by containers.
+     * @param writeListener The listener
+     */
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+        this.writeListener = writeListener;
+        if (ready) {
+            try {
+                writeListener.onWritePossible();
+            } catch (IOException ex) {
+                writeListener.onError(ex);
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        written.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        written.write(b, off, len);
+    }
+
+    /**
+     * Get the written data.
+     * @return The bytes written to the stream
+     */
+    public byte[] bytes() {
+        return written.toByteArray();
+    }
+
+    /**
+     * Get the written data as a UTF-8 string.
+     * @return The data written to the stream
+     */
+    public String asString() {
+        return new String(bytes(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Test the class {@link BatchParser}
+ * @author Peter Nerg
+ */
+public class TestBatchParser extends BaseAssert {
+
+    @Test
+    public void parse() throws IOException {
+        List<BatchServlet.SubRequest> subRequests = BatchParser.parse("[{\"method\":\"GET\", \"path\":\"/users/42?q=x\", \"headers\":{\"X-Trace\":\"abc\", \"X-Id\":5}}, null]");
+        assertEquals(2, subRequests.size());
+        assertEquals("GET", subRequests.get(0).method);
+        assertEquals("/users/42?q=x", subRequests.get(0).path);
+        assertEquals("abc", subRequests.get(0).headers.get("X-Trace"));
+        assertEquals("5", subRequests.get(0).headers.get("X-Id"));
+        assertNull(subRequests.get(0).body);
+        assertNull(subRequests.get(1));
+    }
+
+    @Test
+    public void parse_bodyKeptVerbatim() throws IOException {
+        String body = "{\"id\": 12345678901234567890, \"price\":1.10, \"tags\":[\"a\\\"]}\", {}], \"n\":null}";
+        List<BatchServlet.SubRequest> subRequests = BatchParser.parse("[{\"body\": " + body + " , \"method\":\"PUT\", \"path\":\"/users\"}]");
+        assertEquals(body, subRequests.get(0).body);
+        assertEquals("PUT", subRequests.get(0).method);
+    }
+
+    @Test
+    public void parse_scalarBody() throws IOException {
+        assertEquals("42", BatchParser.parse("[{\"body\":42}]").get(0).body);
+        assertEquals("\"text\"", BatchParser.parse("[{\"body\":\"text\"}]").get(0).body);
+        assertNull(BatchParser.parse("[{\"body\":null}]").get(0).body);
+    }
+
+    @Test
+    public void parse_escapes() throws IOException {
+        assertEquals("/a\"b\\c\u00E5\n", BatchParser.parse("[{\"path\":\"/a\\\"b\\\\c\\u00E5\\n\"}]").get(0).path);
+    }
+
+    @Test
+    public void parse_unknownFieldsIgnored() throws IOException {
+        BatchServlet.SubRequest subRequest = BatchParser.parse("[{\"id\":[1, {\"x\":[]}], \"method\":\"GET\"}]").get(0);
+        assertEquals("GET", subRequest.method);
+    }
+
+    @Test
+    public void parse_empty() throws IOException {
+        assertTrue(BatchParser.parse("").isEmpty());
+        assertTrue(BatchParser.parse(" null ").isEmpty());
+        assertTrue(BatchParser.parse("[ ]").isEmpty());
+    }
+
+    @Test
+    public void parse_deeplyNestedBody() throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            body.append('[');
+        }
+        for (int i = 0; i < 100_000; i++) {
+            body.append(']');
+        }
+        assertEquals(body.toString(), BatchParser.parse("[{\"body\":" + body + "}]").get(0).body);
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_notAnArray() throws IOException {
+        BatchParser.parse("{\"method\":\"GET\"}");
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_unterminated() throws IOException {
+        BatchParser.parse("[{\"method\":\"GET\"");
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_trailingData() throws IOException {
+        BatchParser.parse("[] []");
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_unbalancedBody() throws IOException {
+        BatchParser.parse("[{\"body\":]}]");
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import javascalautils.Try;
+import org.dmonix.servlet.DummyServlets.ServletWithAllOps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the classes {@link BatchServlet}, {@link BatchSubResponse} and {@link BatchResponse}
+ * @author Peter Nerg
+ */
+public class TestBatchServlet extends BaseAssert {
+
+    /**
+     * Echoes the sub-request.
+     */
+    public static final class EchoServlet extends JSONServlet {
+        @Override
+        protected Response get(Request request) {
+            Response response = ObjectResponse(new DummyData(request.getPathInfo().getOrElse(() -> "") + "?" + request.request().getParameter("q"), 1));
+            response.addHeader("X-Auth", request.request().getHeader("Authorization"));
+            return response;
+        }
+
+        @Override
+        protected Try<Response> postWithTry(Request request) {
+            return request.fromJson(DummyData.class).map(data -> ObjectResponse(new DummyData(data.name.toUpperCase(), data.id)));
+        }
+
+        @Override
+        protected Response put(Request request) {
+            throw new IllegalStateException("Failed to store data");
+        }
+    }
+
+    /**
+     * Fails with the provided throwable regardless of the request.
+     */
+    private static final class FailingServlet extends JSONServlet {
+        private final RuntimeException exception;
+        private final Error error;
+
+        private FailingServlet(RuntimeException exception, Error error) {
+            this.exception = exception;
+            this.error = error;
+        }
+
+        @Override
+        public void service(ServletRequest req, ServletResponse res) {
+            if (error != null) {
+                throw error;
+            }
+            throw exception;
+        }
+    }
+
+    private final BatchServlet servlet = new BatchServlet();
+    private final HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+    private final HttpServletResponse resp = Mockito.mock(HttpServletResponse.class);
+    private final MockServletOutputStream out = new MockServletOutputStream();
+
+    @Before
+    public void before() throws ServletException, IOException {
+        ServletConfig config = Mockito.mock(ServletConfig.class);
+        when(config.getInitParameter(BatchServlet.PARAM_MAX_BATCH_SIZE)).thenReturn("3");
+        servlet.init(config);
+        servlet.targets().add("/echo/*", new EchoServlet());
+        servlet.targets().add("/allops", new ServletWithAllOps());
+        servlet.targets().add("/fail", new FailingServlet(new RuntimeException(), null));
+        servlet.targets().add("/error", new FailingServlet(null, new AssertionError()));
+        servlet.targets().add("/batch", servlet);
+        when(req.getMethod()).thenReturn("POST");
+        when(req.getHeader("Authorization")).thenReturn("Bearer token");
+        when(resp.getOutputStream()).thenReturn(out);
+        when(resp.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+    }
+
+    @After
+    public void after() {
+        servlet.destroy();
+    }
+
+    @Test
+    public void batch() throws Exception {
+        JsonArray results = post("[{\"method\":\"GET\", \"path\":\"/echo/42?q=x\"}," +
+                "{\"method\":\"post\", \"path\":\"/echo\", \"body\":{\"name\":\"peter\", \"id\":69}}," +
+                "{\"method\":\"DELETE\", \"path\":\"/allops\"}]");
+
+        Mockito.verify(resp).setStatus(200);
+        assertEquals(3, results.size());
+
+        JsonObject get = results.get(0).getAsJsonObject();
+        assertEquals(200, get.get("status").getAsInt());
+        assertEquals("42?x", get.getAsJsonObject("body").get("name").getAsString());
+        assertEquals("Bearer token", get.getAsJsonObject("headers").get("X-Auth").getAsString());
+        assertEquals("application/json;charset=UTF-8", get.getAsJsonObject("headers").get("Content-Type").getAsString());
+
+        JsonObject post = results.get(1).getAsJsonObject();
+        assertEquals(200, post.get("status").getAsInt());
+        assertEquals("PETER", post.getAsJsonObject("body").get("name").getAsString());
+
+        JsonObject delete = results.get(2).getAsJsonObject();
+        assertEquals(202, delete.get("status").getAsInt());
+        assertTrue(delete.get("body").isJsonNull());
+    }
+
+    @Test
+    public void batch_failures() throws Exception {
+        JsonArray results = post("[{\"method\":\"PUT\", \"path\":\"/echo\"}," +
+                "{\"method\":\"GET\", \"path\":\"/missing\"}," +
+                "{\"method\":\"GET\"}]");
+
+        assertEquals(500, results.get(0).getAsJsonObject().get("status").getAsInt());
+        assertEquals("Failed to store data", results.get(0).getAsJsonObject().get("body").getAsString());
+        assertEquals(404, results.get(1).getAsJsonObject().get("status").getAsInt());
+        assertEquals(400, results.get(2).getAsJsonObject().get("status").getAsInt());
+    }
+
+    @Test(timeout = 5000)
+    public void batch_failureWithoutMessage() throws Exception {
+        JsonArray results = post("[{\"method\":\"GET\", \"path\":\"/fail\"}, {\"method\":\"GET\", \"path\":\"/error\"}]");
+
+        assertEquals(500, results.get(0).getAsJsonObject().get("status").getAsInt());
+        assertEquals(RuntimeException.class.getName(), results.get(0).getAsJsonObject().get("body").getAsString());
+        assertEquals(500, results.get(1).getAsJsonObject().get("status").getAsInt());
+        assertEquals(AssertionError.class.getName(), results.get(1).getAsJsonObject().get("body").getAsString());
+    }
+
+    @Test
+    public void batch_methodNotAllowed() throws Exception {
+        JsonArray results = post("[{\"method\":\"DELETE\", \"path\":\"/echo\"}]");
+        assertEquals(405, results.get(0).getAsJsonObject().get("status").getAsInt());
+    }
+
+    @Test
+    public void batch_nested() throws Exception {
+        JsonArray results = post("[{\"method\":\"POST\", \"path\":\"/batch\", \"body\":[]}]");
+        assertEquals(400, results.get(0).getAsJsonObject().get("status").getAsInt());
+    }
+
+    @Test
+    public void batch_empty() throws Exception {
+        assertEquals(0, post("[]").size());
+    }
+
+    @Test
+    public void batch_tooLarge() throws Exception {
+        when(req.getInputStream()).thenReturn(new MockServletInputStream("[{},{},{},{}]"));
+        servlet.service(req, resp);
+        Mockito.verify(resp).setStatus(413);
+    }
+
+    @Test
+    public void batch_bodyTooLarge() throws Exception {
+        BatchServlet limited = new BatchServlet();
+        ServletConfig config = Mockito.mock(ServletConfig.class);
+        when(config.getInitParameter(JSONServlet.PARAM_MAX_BODY_SIZE)).thenReturn("16");
+        limited.init(config);
+        try {
+            when(req.getContentLengthLong()).thenReturn(-1L);
+            when(req.getInputStream()).thenReturn(new MockServletInputStream("[{\"method\":\"GET\", \"path\":\"/echo/42\"}]"));
+            limited.service(req, resp);
+            Mockito.verify(resp).setStatus(413);
+        } finally {
+            limited.destroy();
+        }
+    }
+
+    @Test
+    public void batch_invalid() throws Exception {
+        when(req.getInputStream()).thenReturn(new MockServletInputStream("{\"method\":\"GET\"}"));
+        servlet.service(req, resp);
+        Mockito.verify(resp).setStatus(400);
+    }
+
+    @Test
+    public void isJson() {
+        assertTrue(BatchResponse.isJson("application/json"));
+        assertTrue(BatchResponse.isJson("application/json;charset=UTF-8"));
+        assertTrue(BatchResponse.isJson("application/problem+json"));
+        assertFalse(BatchResponse.isJson("application/x-ndjson"));
+        assertFalse(BatchResponse.isJson("text/plain"));
+        assertFalse(BatchResponse.isJson(null));
+    }
+
+    @Test
+    public void subResponse_headers() {
+        BatchSubResponse response = new BatchSubResponse();
+        response.addHeader("X-Tag", "a");
+        response.addHeader("X-Tag", "b");
+        response.setContentType("text/plain;charset=UTF-16");
+
+        assertEquals("a, b", response.getHeader("x-tag"));
+        assertEquals("UTF-16", response.getCharacterEncoding());
+        assertTrue(response.containsHeader("Content-Type"));
+    }
+
+    private JsonArray post(String batch) throws Exception {
+        when(req.getInputStream()).thenReturn(new MockServletInputStream(batch));
+        servlet.service(req, resp);
+        return new JsonParser().parse(out.asString()).getAsJsonArray();
+    }
+}
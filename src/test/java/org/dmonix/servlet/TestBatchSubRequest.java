@@ -0,0 +1,128 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.dmonix.servlet.DummyServlets.GetOnlyServlet;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link BatchSubRequest}
+ * @author Peter Nerg
+ */
+public class TestBatchSubRequest extends BaseAssert {
+
+    private final HttpServletRequest batch = Mockito.mock(HttpServletRequest.class);
+    private final BatchTargets.Target target = new BatchTargets.Target(new GetOnlyServlet(), "/users", "/42");
+
+    @Before
+    public void before() {
+        when(batch.getHeader("Authorization")).thenReturn("Bearer token");
+        when(batch.getHeader("Accept-Encoding")).thenReturn("gzip");
+        when(batch.getHeader("Content-Length")).thenReturn("1234");
+        when(batch.getContextPath()).thenReturn("/app");
+        when(batch.getAttribute("shared")).thenReturn("batch");
+        when(batch.getHeaderNames()).thenReturn(Collections.enumeration(Arrays.asList("Authorization", "Accept-Encoding")));
+    }
+
+    @Test
+    public void paths() {
+        BatchSubRequest request = new BatchSubRequest(batch, "GET", target, "a=1", Collections.emptyMap(), new byte[0]);
+        assertEquals("GET", request.getMethod());
+        assertEquals("/users", request.getServletPath());
+        assertEquals("/42", request.getPathInfo());
+        assertEquals("/app/users/42", request.getRequestURI());
+        assertEquals("a=1", request.getQueryString());
+    }
+
+    @Test
+    public void headers() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-Trace", "abc");
+        BatchSubRequest request = new BatchSubRequest(batch, "GET", target, null, headers, new byte[0]);
+
+        assertEquals("abc", request.getHeader("x-trace"));
+        assertEquals("Bearer token", request.getHeader("Authorization"));
+        assertNull(request.getHeader("Accept-Encoding"));
+        assertNull(request.getHeader("Content-Length"));
+        assertEquals(-1, request.getIntHeader("Content-Length"));
+        assertEquals(new HashSet<>(Arrays.asList("X-Trace", "Authorization")), new HashSet<>(Collections.list(request.getHeaderNames())));
+    }
+
+    @Test
+    public void body() throws IOException {
+        byte[] body = "{\"name\":\"peter\",\"id\":69}".getBytes(StandardCharsets.UTF_8);
+        BatchSubRequest request = new BatchSubRequest(batch, "POST", target, null, Collections.emptyMap(), body);
+
+        assertEquals(body.length, request.getContentLengthLong());
+        assertEquals("application/json;charset=UTF-8", request.getContentType());
+        assertSuccess(new Request(request).fromJson(DummyData.class));
+        //the body can be read again
+        assertEquals('{', request.getInputStream().read());
+    }
+
+    @Test
+    public void noBody() throws IOException {
+        BatchSubRequest request = new BatchSubRequest(batch, "GET", target, null, Collections.emptyMap(), new byte[0]);
+        assertEquals(0, request.getContentLength());
+        assertNull(request.getContentType());
+        assertEquals(-1, request.getInputStream().read());
+    }
+
+    @Test
+    public void parameters() {
+        BatchSubRequest request = new BatchSubRequest(batch, "GET", target, "name=peter%20nerg&tag=a&tag=b&flag", Collections.emptyMap(), new byte[0]);
+        assertEquals("peter nerg", request.getParameter("name"));
+        assertArrayEquals(new String[]{"a", "b"}, request.getParameterValues("tag"));
+        assertEquals("", request.getParameter("flag"));
+        assertNull(request.getParameter("missing"));
+        assertEquals(3, request.getParameterMap().size());
+    }
+
+    @Test
+    public void attributes() {
+        BatchSubRequest request = new BatchSubRequest(batch, "GET", target, null, Collections.emptyMap(), new byte[0]);
+        request.setAttribute("own", "sub");
+
+        assertEquals("sub", request.getAttribute("own"));
+        assertEquals("batch", request.getAttribute("shared"));
+        Mockito.verify(batch, Mockito.never()).setAttribute(Mockito.anyString(), Mockito.any());
+    }
+
+    @Test
+    public void async() {
+        BatchSubRequest request = new BatchSubRequest(batch, "GET", target, null, Collections.emptyMap(), new byte[0]);
+        assertFalse(request.isAsyncSupported());
+        assertFalse(request.isAsyncStarted());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void startAsync() {
+        new BatchSubRequest(batch, "GET", target, null, Collections.emptyMap(), new byte[0]).startAsync();
+    }
+}
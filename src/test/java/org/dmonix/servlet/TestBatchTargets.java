@@ -0,0 +1,196 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.dmonix.servlet.DummyServlets.GetOnlyServlet;
+import org.dmonix.servlet.DummyServlets.ServletWithAllOps;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.FilterRegistration;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRegistration;
+import javax.servlet.annotation.HttpConstraint;
+import javax.servlet.annotation.ServletSecurity;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link BatchTargets}
+ * @author Peter Nerg
+ */
+public class TestBatchTargets extends BaseAssert {
+
+    private final BatchTargets targets = new BatchTargets();
+    private final JSONServlet exact = new GetOnlyServlet();
+    private final JSONServlet prefix = new ServletWithAllOps();
+    private final JSONServlet defaultServlet = new GetOnlyServlet();
+
+    @Test
+    public void resolve_none() {
+        assertNone(targets.resolve("/users"));
+    }
+
+    @Test
+    public void resolve_exact() {
+        targets.add("/users", exact);
+        targets.add("/users/*", prefix);
+
+        BatchTargets.Target target = targets.resolve("/users").orNull();
+        assertSame(exact, target.servlet);
+        assertEquals("/users", target.servletPath);
+        assertNull(target.pathInfo);
+    }
+
+    @Test
+    public void resolve_prefix() {
+        targets.add("/users/*", prefix);
+        targets.add("/users/admin/*", exact);
+
+        BatchTargets.Target target = targets.resolve("/users/42/settings").orNull();
+        assertSame(prefix, target.servlet);
+        assertEquals("/users", target.servletPath);
+        assertEquals("/42/settings", target.pathInfo);
+
+        assertSame(exact, targets.resolve("/users/admin/1").orNull().servlet);
+        assertNull(targets.resolve("/users").orNull().pathInfo);
+    }
+
+    @Test
+    public void resolve_rootPrefix() {
+        targets.add("/*", prefix);
+
+        BatchTargets.Target target = targets.resolve("/users/42").orNull();
+        assertSame(prefix, target.servlet);
+        assertEquals("", target.servletPath);
+        assertEquals("/users/42", target.pathInfo);
+    }
+
+    @Test
+    public void resolve_default() {
+        targets.add("/", defaultServlet);
+        targets.add("/users/*", prefix);
+
+        BatchTargets.Target target = targets.resolve("/orders/1").orNull();
+        assertSame(defaultServlet, target.servlet);
+        assertEquals("/orders/1", target.servletPath);
+        assertNull(target.pathInfo);
+    }
+
+    @Test
+    public void remove() {
+        targets.add("/", defaultServlet);
+        targets.add("/users/*", prefix);
+        targets.remove(prefix);
+        targets.remove(defaultServlet);
+
+        assertNone(targets.resolve("/users/42"));
+    }
+
+    @Test
+    public void register() {
+        ServletContext context = Mockito.mock(ServletContext.class);
+        ServletRegistration registration = Mockito.mock(ServletRegistration.class);
+        when(context.getServletRegistration("users")).thenReturn(registration);
+        when(registration.getMappings()).thenReturn(Arrays.asList("/users/*", "/people"));
+        BatchTargets registered = new BatchTargets();
+        when(context.getAttribute(BatchTargets.class.getName())).thenReturn(registered);
+
+        BatchTargets.register(context, "users", prefix);
+        assertSame(prefix, registered.resolve("/users/1").orNull().servlet);
+        assertSame(prefix, registered.resolve("/people").orNull().servlet);
+
+        BatchTargets.unregister(context, prefix);
+        assertNone(registered.resolve("/people"));
+    }
+
+    @Test
+    public void register_noContext() {
+        BatchTargets.register(null, "users", prefix);
+        BatchTargets.unregister(null, prefix);
+    }
+
+    @Test
+    public void register_unsupported() {
+        ServletContext context = Mockito.mock(ServletContext.class);
+        when(context.getServletRegistration("users")).thenThrow(new UnsupportedOperationException());
+        BatchTargets.register(context, "users", prefix);
+        Mockito.verify(context, Mockito.never()).setAttribute(Mockito.anyString(), Mockito.any());
+    }
+
+    @Test
+    public void matches() {
+        assertTrue(BatchTargets.matches("/*", "/users/1"));
+        assertTrue(BatchTargets.matches("/", "/users/1"));
+        assertTrue(BatchTargets.matches("/users/*", "/users"));
+        assertTrue(BatchTargets.matches("/users/*", "/users/1"));
+        assertFalse(BatchTargets.matches("/users/*", "/usersx"));
+        assertTrue(BatchTargets.matches("*.json", "/users/1.json"));
+        assertTrue(BatchTargets.matches("/users", "/users"));
+        assertFalse(BatchTargets.matches("/users", "/users/1"));
+    }
+
+    @Test
+    public void isGuarded_noContext() {
+        assertFalse(BatchTargets.isGuarded(null, Collections.emptySet(), new BatchTargets.Target(exact, "/users", null), "/users"));
+    }
+
+    @Test
+    public void isGuarded_annotated() {
+        assertTrue(BatchTargets.isGuarded(null, Collections.emptySet(), new BatchTargets.Target(new SecuredServlet(), "/users", null), "/users"));
+    }
+
+    @Test
+    public void isGuarded_filter() {
+        FilterRegistration filter = Mockito.mock(FilterRegistration.class);
+        when(filter.getUrlPatternMappings()).thenReturn(Collections.singletonList("/admin/*"));
+        when(filter.getServletNameMappings()).thenReturn(Collections.emptyList());
+        ServletContext context = Mockito.mock(ServletContext.class);
+        Mockito.doReturn(Collections.singletonMap("auth", filter)).when(context).getFilterRegistrations();
+
+        assertTrue(BatchTargets.isGuarded(context, Collections.emptySet(), new BatchTargets.Target(exact, "/admin", "/1"), "/admin/1"));
+        assertFalse(BatchTargets.isGuarded(context, Collections.emptySet(), new BatchTargets.Target(exact, "/users", null), "/users"));
+    }
+
+    @Test
+    public void isGuarded_allowedFilter() {
+        FilterRegistration filter = Mockito.mock(FilterRegistration.class);
+        when(filter.getUrlPatternMappings()).thenReturn(Collections.singletonList("/*"));
+        when(filter.getServletNameMappings()).thenReturn(Collections.singletonList("*"));
+        ServletContext context = Mockito.mock(ServletContext.class);
+        Mockito.doReturn(Collections.singletonMap("cors", filter)).when(context).getFilterRegistrations();
+        BatchTargets.Target target = new BatchTargets.Target(exact, "/users", null);
+
+        assertTrue(BatchTargets.isGuarded(context, Collections.emptySet(), target, "/users"));
+        assertFalse(BatchTargets.isGuarded(context, Collections.singleton("cors"), target, "/users"));
+    }
+
+    @Test
+    public void isGuarded_filtersNotAvailable() {
+        ServletContext context = Mockito.mock(ServletContext.class);
+        when(context.getFilterRegistrations()).thenThrow(new UnsupportedOperationException());
+        assertTrue(BatchTargets.isGuarded(context, Collections.emptySet(), new BatchTargets.Target(exact, "/users", null), "/users"));
+    }
+
+    /**
+     * Servlet with annotated security constraints.
+     */
+    @ServletSecurity(@HttpConstraint(rolesAllowed = "admin"))
+    private static final class SecuredServlet extends GetOnlyServlet {
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link BytesResponse}
+ * @author Peter Nerg
+ */
+public class TestBytesResponse extends BaseAssert {
+
+    private static final byte[] BODY = "{\"name\":\"peter\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+    private final MockServletOutputStream outputStream = new MockServletOutputStream();
+
+    @Test
+    public void contentLength() {
+        assertEquals(BODY.length, new BytesResponse(200, ByteBuffer.wrap(BODY), "application/json").contentLength());
+        assertFalse(new BytesResponse(200, ByteBuffer.wrap(BODY), "application/json").isBuffered());
+    }
+
+    @Test
+    public void writeBody_heapBuffer() throws IOException {
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+        //only the remaining part of a slice of a larger array is written
+        byte[] padded = new byte[BODY.length + 4];
+        System.arraycopy(BODY, 0, padded, 2, BODY.length);
+        ByteBuffer buffer = ByteBuffer.wrap(padded, 2, BODY.length).slice();
+
+        new BytesResponse(200, buffer, null).writeBody(servletResponse);
+
+        verify(servletResponse).setContentLength(BODY.length);
+        assertEquals("{\"name\":\"peter\"}", outputStream.asString());
+        assertEquals(BODY.length, buffer.remaining());
+    }
+
+    @Test
+    public void writeBody_directBuffer() throws IOException {
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BODY.length);
+        buffer.put(BODY).flip();
+        BytesResponse response = new BytesResponse(200, buffer, null);
+
+        //can be written several times as the buffer is not consumed
+        response.writeBody(servletResponse);
+        response.writeBody(servletResponse);
+
+        assertEquals("{\"name\":\"peter\"}{\"name\":\"peter\"}", outputStream.asString());
+    }
+}
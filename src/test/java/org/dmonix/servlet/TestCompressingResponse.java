@@ -0,0 +1,181 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link CompressingResponse}
+ * @author Peter Nerg
+ */
+public class TestCompressingResponse extends BaseAssert {
+
+    private static final int GZIP_HEADER_SIZE = 10;
+
+    private final HttpServletResponse resp = Mockito.mock(HttpServletResponse.class);
+    private final MockServletOutputStream out = new MockServletOutputStream();
+    private final DeflaterPool gzipPool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, true, 4);
+    private final DeflaterPool deflatePool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, false, 4);
+
+    @Before
+    public void before() throws IOException {
+        when(resp.getOutputStream()).thenReturn(out);
+        when(resp.getCharacterEncoding()).thenReturn("UTF-8");
+    }
+
+    @Test
+    public void belowThreshold() throws IOException {
+        CompressingResponse compressing = new CompressingResponse(resp, Compression.Encoding.GZIP, gzipPool, 64);
+        compressing.setContentLength(5);
+        compressing.getOutputStream().write("small".getBytes(StandardCharsets.UTF_8));
+        compressing.getOutputStream().flush();
+        compressing.finish();
+
+        assertFalse(compressing.isCompressing());
+        assertEquals("small", out.asString());
+        verify(resp).setContentLength(5);
+        verify(resp, never()).setHeader(Mockito.eq("Content-Encoding"), Mockito.anyString());
+    }
+
+    @Test
+    public void emptyBody() throws IOException {
+        CompressingResponse compressing = new CompressingResponse(resp, Compression.Encoding.GZIP, gzipPool, 64);
+        compressing.finish();
+
+        assertEquals(0, out.bytes().length);
+        verify(resp, never()).setContentLength(Mockito.anyInt());
+    }
+
+    @Test
+    public void gzip() throws IOException {
+        String body = body(2000);
+        CompressingResponse compressing = new CompressingResponse(resp, Compression.Encoding.GZIP, gzipPool, 64);
+        compressing.getWriter().write(body);
+        compressing.finish();
+
+        assertTrue(compressing.isCompressing());
+        verify(resp).setHeader("Content-Encoding", "gzip");
+        verify(resp, never()).setContentLength(Mockito.anyInt());
+        assertTrue(out.bytes().length < body.length());
+        assertEquals(body, inflate(new GZIPInputStream(new ByteArrayInputStream(out.bytes()))));
+        assertEquals(1, gzipPool.idle());
+    }
+
+    @Test
+    public void deflate() throws IOException {
+        String body = body(2000);
+        CompressingResponse compressing = new CompressingResponse(resp, Compression.Encoding.DEFLATE, deflatePool, 64);
+        compressing.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+        compressing.finish();
+
+        verify(resp).setHeader("Content-Encoding", "deflate");
+        assertEquals(body, inflate(new InflaterInputStream(new ByteArrayInputStream(out.bytes()))));
+        assertEquals(1, deflatePool.idle());
+    }
+
+    @Test
+    public void byteByByte() throws IOException {
+        String body = body(100);
+        CompressingResponse compressing = new CompressingResponse(resp, Compression.Encoding.GZIP, gzipPool, 16);
+        for (byte b : body.getBytes(StandardCharsets.UTF_8)) {
+            compressing.getOutputStream().write(b);
+        }
+        compressing.finish();
+
+        assertEquals(body, inflate(new GZIPInputStream(new ByteArrayInputStream(out.bytes()))));
+    }
+
+    @Test
+    public void flush_whileCompressing() throws IOException {
+        CompressingResponse compressing = new CompressingResponse(resp, Compression.Encoding.GZIP, gzipPool, 16);
+        compressing.getOutputStream().write(body(10).getBytes(StandardCharsets.UTF_8));
+        int beforeFlush = out.bytes().length;
+        compressing.flushBuffer();
+
+        //sync flush pushes all pending data
+        assertTrue(out.bytes().length > beforeFlush);
+        compressing.finish();
+    }
+
+    @Test
+    public void flush_noThreshold() throws IOException {
+        CompressingResponse compressing = new CompressingResponse(resp, Compression.Encoding.GZIP, gzipPool, 0);
+        compressing.getOutputStream().write("first".getBytes(StandardCharsets.UTF_8));
+        compressing.flushBuffer();
+
+        //the first element reaches the client before the body is finished
+        assertTrue(compressing.isCompressing());
+        verify(resp).setHeader("Content-Encoding", "gzip");
+        assertTrue(out.bytes().length > GZIP_HEADER_SIZE);
+
+        compressing.getOutputStream().write("second".getBytes(StandardCharsets.UTF_8));
+        compressing.finish();
+        assertEquals("firstsecond", inflate(new GZIPInputStream(new ByteArrayInputStream(out.bytes()))));
+    }
+
+    @Test
+    public void weakensETag() throws IOException {
+        when(resp.getHeader("ETag")).thenReturn("\"abc\"");
+        CompressingResponse compressing = new CompressingResponse(resp, Compression.Encoding.GZIP, gzipPool, 16);
+        compressing.getOutputStream().write(body(10).getBytes(StandardCharsets.UTF_8));
+        compressing.finish();
+
+        verify(resp).setHeader("ETag", "W/\"abc\"");
+    }
+
+    @Test
+    public void release_withoutFinish() throws IOException {
+        CompressingResponse compressing = new CompressingResponse(resp, Compression.Encoding.GZIP, gzipPool, 16);
+        compressing.getOutputStream().write(body(10).getBytes(StandardCharsets.UTF_8));
+        compressing.release();
+        compressing.release();
+
+        assertEquals(1, gzipPool.idle());
+    }
+
+    private static String body(int elements) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < elements; i++) {
+            sb.append(i > 0 ? "," : "").append("{\"name\":\"peter-").append(i).append("\",\"id\":").append(i).append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String inflate(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+            bytes.write(buffer, 0, read);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
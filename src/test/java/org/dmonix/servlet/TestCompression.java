@@ -0,0 +1,93 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link Compression}
+ * @author Peter Nerg
+ */
+public class TestCompression extends BaseAssert {
+
+    @Test
+    public void negotiate_noHeader() {
+        assertNone(Compression.negotiate(null));
+        assertNone(Compression.negotiate(""));
+    }
+
+    @Test
+    public void negotiate_gzip() {
+        assertSome(Compression.Encoding.GZIP, Compression.negotiate("gzip"));
+        assertSome(Compression.Encoding.GZIP, Compression.negotiate("gzip, deflate, br"));
+        assertSome(Compression.Encoding.GZIP, Compression.negotiate("deflate;q=0.5, GZIP;q=0.8"));
+    }
+
+    @Test
+    public void negotiate_deflate() {
+        assertSome(Compression.Encoding.DEFLATE, Compression.negotiate("deflate"));
+        assertSome(Compression.Encoding.DEFLATE, Compression.negotiate("gzip;q=0, deflate"));
+    }
+
+    @Test
+    public void negotiate_wildcard() {
+        assertSome(Compression.Encoding.GZIP, Compression.negotiate("*"));
+        assertNone(Compression.negotiate("*;q=0"));
+        assertNone(Compression.negotiate("gzip;q=0, *"));
+    }
+
+    @Test
+    public void negotiate_notSupported() {
+        assertNone(Compression.negotiate("br"));
+        assertNone(Compression.negotiate("identity"));
+        assertNone(Compression.negotiate("gzip;q=0.0"));
+    }
+
+    @Test
+    public void wrap() {
+        Compression compression = new Compression(6, 1024);
+        HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+        HttpServletResponse resp = Mockito.mock(HttpServletResponse.class);
+
+        when(req.getHeader("Accept-Encoding")).thenReturn("gzip");
+        assertTrue(compression.wrap(req, resp, true).isDefined());
+
+        when(req.getHeader("Accept-Encoding")).thenReturn(null);
+        assertTrue(compression.wrap(req, resp, true).isEmpty());
+    }
+
+    @Test
+    public void wrap_unbuffered() throws IOException {
+        Compression compression = new Compression(6, 1024);
+        HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+        HttpServletResponse resp = Mockito.mock(HttpServletResponse.class);
+        when(req.getHeader("Accept-Encoding")).thenReturn("gzip");
+        when(resp.getOutputStream()).thenReturn(new MockServletOutputStream());
+
+        //streamed bodies are not held back by the threshold
+        CompressingResponse compressing = compression.wrap(req, resp, false).orNull();
+        compressing.getOutputStream().write('x');
+        assertTrue(compressing.isCompressing());
+        compressing.release();
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link ConcurrencyLimiter}
+ * @author Peter Nerg
+ */
+public class TestConcurrencyLimiter extends BaseAssert implements ResponseBuilder {
+
+    private static final long MILLIS = 1_000_000;
+
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 100);
+
+    private final CompletableFuture<Response> pending = new CompletableFuture<>();
+
+    /**
+     * Servlet with a <tt>GET</tt> handler completing once the test says so.
+     */
+    private final class PendingServlet extends JSONServlet {
+        @Override
+        protected CompletionStage<Response> getAsync(Request request) {
+            return pending;
+        }
+    }
+
+    @Test
+    public void tryAcquire() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(10, limiter.inFlight());
+
+        limiter.release(MILLIS);
+        assertEquals(9, limiter.inFlight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void initialLimit_clamped() {
+        assertEquals(2, new ConcurrencyLimiter(0, 2, 100).limit());
+        assertEquals(100, new ConcurrencyLimiter(1000, 2, 100).limit());
+    }
+
+    @Test
+    public void stableLatency_growsLimit() {
+        for (int i = 0; i < 100; i++) {
+            saturate();
+            limiter.release(MILLIS);
+        }
+        assertTrue(limiter.limit() > 10);
+    }
+
+    @Test
+    public void stableLatency_growsToMax() {
+        for (int i = 0; i < 1000; i++) {
+            saturate();
+            limiter.release(MILLIS);
+        }
+        assertEquals(100, limiter.limit());
+    }
+
+    @Test
+    public void increasedLatency_shrinksLimit() {
+        for (int i = 0; i < 100; i++) {
+            saturate();
+            limiter.release(MILLIS);
+        }
+        int grown = limiter.limit();
+        for (int i = 0; i < 100; i++) {
+            saturate();
+            limiter.release(10 * MILLIS);
+        }
+        assertTrue(limiter.limit() < grown);
+    }
+
+    @Test
+    public void increasedLatency_shrinksToMin() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 8, 100);
+        limiter.tryAcquire();
+        limiter.release(MILLIS);
+        for (int i = 0; i < 200; i++) {
+            while (limiter.tryAcquire()) {
+            }
+            limiter.release(100 * MILLIS);
+        }
+        assertEquals(8, limiter.limit());
+    }
+
+    @Test
+    public void noLoad_keepsLimit() {
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.release(MILLIS);
+        }
+        assertEquals(10, limiter.limit());
+    }
+
+    @Test
+    public void servlet_shedsLoad() throws Exception {
+        ServletConfig config = Mockito.mock(ServletConfig.class);
+        when(config.getInitParameter(JSONServlet.PARAM_CONCURRENCY_LIMIT)).thenReturn("true");
+        when(config.getInitParameter(JSONServlet.PARAM_CONCURRENCY_LIMIT_INITIAL)).thenReturn("1");
+        JSONServlet servlet = new PendingServlet();
+        servlet.init(config);
+
+        AsyncContext admitted = Mockito.mock(AsyncContext.class);
+        servlet.service(request(admitted), Mockito.mock(HttpServletResponse.class));
+
+        HttpServletRequest rejectedReq = request(Mockito.mock(AsyncContext.class));
+        HttpServletResponse rejected = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream out = new MockServletOutputStream();
+        when(rejected.getOutputStream()).thenReturn(out);
+        servlet.service(rejectedReq, rejected);
+        verify(rejectedReq, never()).startAsync();
+        verify(rejected).setStatus(503);
+        verify(rejected).setHeader("Retry-After", "1");
+        assertEquals("Service unavailable", out.asString());
+
+        HttpServletResponse admittedResp = Mockito.mock(HttpServletResponse.class);
+        when(admittedResp.getWriter()).thenReturn(new PrintWriter(new NullWriter()));
+        when(admitted.getResponse()).thenReturn(admittedResp);
+        pending.complete(EmptyResponse(200));
+        verify(admitted).complete();
+
+        //admitted again, the handler is already completed so the response is written directly
+        HttpServletResponse resp = Mockito.mock(HttpServletResponse.class);
+        when(resp.getWriter()).thenReturn(new PrintWriter(new NullWriter()));
+        servlet.service(request(Mockito.mock(AsyncContext.class)), resp);
+        verify(resp).setStatus(200);
+    }
+
+    @Test
+    public void servlet_timeoutReleasesAdmission() throws Exception {
+        ServletConfig config = Mockito.mock(ServletConfig.class);
+        when(config.getInitParameter(JSONServlet.PARAM_CONCURRENCY_LIMIT)).thenReturn("true");
+        when(config.getInitParameter(JSONServlet.PARAM_CONCURRENCY_LIMIT_INITIAL)).thenReturn("1");
+        when(config.getInitParameter(JSONServlet.PARAM_ASYNC_TIMEOUT)).thenReturn("500");
+        JSONServlet servlet = new PendingServlet();
+        servlet.init(config);
+
+        AsyncContext timedOut = Mockito.mock(AsyncContext.class);
+        HttpServletResponse timedOutResp = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream out = new MockServletOutputStream();
+        when(timedOutResp.getOutputStream()).thenReturn(out);
+        when(timedOut.getResponse()).thenReturn(timedOutResp);
+        servlet.service(request(timedOut), Mockito.mock(HttpServletResponse.class));
+        verify(timedOut).setTimeout(500);
+
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(timedOut).addListener(listener.capture());
+        listener.getValue().onTimeout(Mockito.mock(AsyncEvent.class));
+        verify(timedOutResp).setStatus(503);
+        verify(timedOut).complete();
+
+        //the admission is released even though the handler never responded
+        HttpServletRequest next = request(Mockito.mock(AsyncContext.class));
+        servlet.service(next, Mockito.mock(HttpServletResponse.class));
+        verify(next).startAsync();
+
+        //the handler responding late is ignored
+        pending.complete(EmptyResponse(200));
+        verify(timedOutResp, never()).setStatus(200);
+        verify(timedOut).complete();
+    }
+
+    @Test
+    public void servlet_asyncError() throws Exception {
+        JSONServlet servlet = new PendingServlet();
+        servlet.init(Mockito.mock(ServletConfig.class));
+
+        AsyncContext failed = Mockito.mock(AsyncContext.class);
+        HttpServletResponse failedResp = Mockito.mock(HttpServletResponse.class);
+        when(failedResp.getWriter()).thenReturn(new PrintWriter(new NullWriter()));
+        when(failed.getResponse()).thenReturn(failedResp);
+        servlet.service(request(failed), Mockito.mock(HttpServletResponse.class));
+
+        AsyncEvent event = Mockito.mock(AsyncEvent.class);
+        when(event.getThrowable()).thenReturn(new IllegalStateException("Oops"));
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(failed).addListener(listener.capture());
+        listener.getValue().onError(event);
+        verify(failedResp).setStatus(500);
+        verify(failed).complete();
+    }
+
+    /**
+     * Admits requests until the limit is reached.
+     */
+    private void saturate() {
+        while (limiter.tryAcquire()) {
+        }
+    }
+
+    private static HttpServletRequest request(AsyncContext asyncContext) {
+        HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn("GET");
+        when(req.getContentLengthLong()).thenReturn(-1L);
+        when(req.isAsyncSupported()).thenReturn(true);
+        when(req.startAsync()).thenReturn(asyncContext);
+        when(asyncContext.getRequest()).thenReturn(req);
+        return req;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+
+import java.util.zip.Deflater;
+
+/**
+ * Test the class {@link DeflaterPool}
+ * @author Peter Nerg
+ */
+public class TestDeflaterPool extends BaseAssert {
+
+    private final DeflaterPool pool = new DeflaterPool(Deflater.BEST_SPEED, true, 1);
+
+    @Test
+    public void acquire_empty() {
+        assertNotNull(pool.acquire());
+        assertEquals(0, pool.idle());
+    }
+
+    @Test
+    public void release_reused() {
+        Deflater deflater = pool.acquire();
+        pool.release(deflater);
+        assertEquals(1, pool.idle());
+        assertSame(deflater, pool.acquire());
+    }
+
+    @Test
+    public void release_full() {
+        Deflater first = pool.acquire();
+        Deflater second = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.idle());
+    }
+
+    @Test
+    public void release_isReset() {
+        Deflater deflater = pool.acquire();
+        deflater.setInput(new byte[]{1, 2, 3});
+        deflater.finish();
+        deflater.deflate(new byte[64]);
+        pool.release(deflater);
+        assertEquals(0, pool.acquire().getBytesRead());
+    }
+
+    @Test
+    public void close() {
+        pool.release(pool.acquire());
+        pool.close();
+        assertEquals(0, pool.idle());
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.dmonix.servlet.DummyServlets.*;
+import org.junit.Test;
+
+/**
+ * Test the class {@link DispatchTable}
+ * @author Peter Nerg
+ */
+public class TestDispatchTable extends BaseAssert {
+
+    @Test
+    public void noOperations() {
+        DispatchTable table = DispatchTable.of(NoOperationsServlet.class);
+        for (HttpMethod method : HttpMethod.values()) {
+            assertFalse(table.isSupported(method));
+        }
+        assertEquals("OPTIONS, TRACE", table.allow);
+    }
+
+    @Test
+    public void allOps() {
+        DispatchTable table = DispatchTable.of(ServletWithAllOps.class);
+        for (HttpMethod method : HttpMethod.values()) {
+            assertTrue(table.isSupported(method));
+            assertFalse(table.isAsync(method));
+        }
+        assertEquals("OPTIONS, TRACE, GET, HEAD, POST, PUT, DELETE", table.allow);
+    }
+
+    @Test
+    public void allTryOps() {
+        assertEquals("OPTIONS, TRACE, GET, HEAD, POST, PUT, DELETE", DispatchTable.of(ServletWithAllTryOps.class).allow);
+    }
+
+    @Test
+    public void asyncOps() {
+        DispatchTable table = DispatchTable.of(AsyncServlet.class);
+        assertTrue(table.isAsync(HttpMethod.GET));
+        assertTrue(table.isAsync(HttpMethod.POST));
+        assertFalse(table.isSupported(HttpMethod.PUT));
+        assertEquals("OPTIONS, TRACE, GET, HEAD, POST", table.allow);
+    }
+
+    @Test
+    public void inheritedOps() {
+        DispatchTable table = DispatchTable.of(InheritingServlet.class);
+        assertTrue(table.isSupported(HttpMethod.GET));
+        assertTrue(table.isSupported(HttpMethod.DELETE));
+        assertFalse(table.isSupported(HttpMethod.POST));
+    }
+
+    @Test
+    public void head_handledByGet() {
+        DispatchTable table = DispatchTable.of(GetOnlyServlet.class);
+        assertTrue(table.isSupported(HttpMethod.HEAD));
+        assertEquals(HttpMethod.GET, table.handlerFor(HttpMethod.HEAD));
+        assertEquals(HttpMethod.GET, table.handlerFor(HttpMethod.GET));
+    }
+
+    @Test
+    public void head_dedicatedHandler() {
+        DispatchTable table = DispatchTable.of(HeadServlet.class);
+        assertEquals(HttpMethod.HEAD, table.handlerFor(HttpMethod.HEAD));
+        assertEquals("OPTIONS, TRACE, GET, HEAD", table.allow);
+    }
+
+    @Test
+    public void head_notSupported() {
+        assertFalse(DispatchTable.of(NoOperationsServlet.class).isSupported(HttpMethod.HEAD));
+    }
+
+    @Test
+    public void methodNotAllowed() {
+        Response response = DispatchTable.of(GetOnlyServlet.class).methodNotAllowed;
+        assertEquals(405, response.responseCode);
+        assertEquals("OPTIONS, TRACE, GET, HEAD", response.headers().get("Allow"));
+    }
+
+    @Test
+    public void cached() {
+        assertSame(DispatchTable.of(GetOnlyServlet.class), DispatchTable.of(GetOnlyServlet.class));
+    }
+
+    /**
+     * Servlet inheriting the GET handler from its super class.
+     */
+    public static class InheritingServlet extends GetOnlyServlet {
+        @Override
+        protected Response delete(Request request) {
+            return AcceptedResponse();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link ETags}
+ * @author Peter Nerg
+ */
+public class TestETags extends BaseAssert implements ResponseBuilder {
+    private final HttpServletRequest servletRequest = Mockito.mock(HttpServletRequest.class);
+    private final HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+
+    @Test
+    public void of_generated() {
+        Response response = ObjectResponse(new DummyData("peter", 69));
+        assertSome(ETags.hash(response.message), ETags.of(response));
+        assertEquals(ETags.of(response), ETags.of(ObjectResponse(new DummyData("peter", 69))));
+        assertNotEquals(ETags.of(response), ETags.of(ObjectResponse(new DummyData("peter", 70))));
+    }
+
+    @Test
+    public void of_provided() {
+        Response response = ObjectResponse(new DummyData("peter", 69));
+        response.addHeader("ETag", "\"v42\"");
+        assertSome("\"v42\"", ETags.of(response));
+    }
+
+    @Test
+    public void of_notOK() {
+        assertNone(ETags.of(ErrorResponseNotFound("No such data")));
+    }
+
+    @Test
+    public void of_streamed() {
+        assertNone(ETags.of(StreamedObjectResponse(new DummyData("peter", 69))));
+    }
+
+    @Test
+    public void matches() {
+        assertFalse(ETags.matches(null, "\"abc\""));
+        assertTrue(ETags.matches("\"abc\"", "\"abc\""));
+        assertTrue(ETags.matches("W/\"abc\"", "\"abc\""));
+        assertTrue(ETags.matches("\"xyz\", \"abc\"", "\"abc\""));
+        assertTrue(ETags.matches("*", "\"abc\""));
+        assertFalse(ETags.matches("\"xyz\"", "\"abc\""));
+    }
+
+    @Test
+    public void notModified() {
+        Response response = ObjectResponse(new DummyData("peter", 69));
+        String etag = ETags.hash(response.message);
+        when(servletRequest.getHeader("If-None-Match")).thenReturn(etag);
+
+        assertTrue(ETags.notModified(servletRequest, servletResponse, response));
+        verify(servletResponse).setHeader("ETag", etag);
+        verify(servletResponse).setStatus(304);
+    }
+
+    @Test
+    public void notModified_keepsHeaders() {
+        Response response = ObjectResponse(new DummyData("peter", 69));
+        response.addHeader("Cache-Control", "max-age=60");
+        String etag = ETags.hash(response.message);
+        when(servletRequest.getHeader("If-None-Match")).thenReturn(etag);
+
+        assertTrue(ETags.notModified(servletRequest, servletResponse, response));
+        verify(servletResponse).setHeader("Cache-Control", "max-age=60");
+        verify(servletResponse).setStatus(304);
+    }
+
+    @Test
+    public void notModified_changed() {
+        Response response = ObjectResponse(new DummyData("peter", 69));
+        when(servletRequest.getHeader("If-None-Match")).thenReturn("\"outdated\"");
+
+        assertFalse(ETags.notModified(servletRequest, servletResponse, response));
+        verify(servletResponse).setHeader("ETag", ETags.hash(response.message));
+        verify(servletResponse, never()).setStatus(304);
+    }
+}
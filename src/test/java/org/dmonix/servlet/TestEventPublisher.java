@@ -0,0 +1,199 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import com.google.gson.GsonBuilder;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test the classes {@link EventPublisher} and {@link EventSubscriber}
+ * @author Peter Nerg
+ */
+public class TestEventPublisher extends BaseAssert {
+
+    private final EventPublisher publisher = new EventPublisher(4, 0, TimeUnit.SECONDS);
+    private final AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+    private final MockServletOutputStream out = new MockServletOutputStream();
+
+    @After
+    public void after() {
+        publisher.close();
+    }
+
+    @Test
+    public void subscribe() throws IOException {
+        publisher.subscribe(asyncContext, out, -1);
+
+        assertEquals(1, publisher.subscribers());
+        verify(asyncContext).setTimeout(0);
+        verify(asyncContext).addListener(Mockito.any(AsyncListener.class));
+        assertEquals("", out.asString());
+    }
+
+    @Test
+    public void subscribe_completedWhileSubscribing() throws IOException {
+        //the container completes the request as soon as the listener is registered, i.e. before the subscriber is added
+        Mockito.doAnswer(invocation -> {
+            ((AsyncListener) invocation.getArguments()[0]).onComplete(null);
+            return null;
+        }).when(asyncContext).addListener(Mockito.any(AsyncListener.class));
+        publisher.subscribe(asyncContext, out, -1);
+
+        assertEquals(0, publisher.subscribers());
+    }
+
+    @Test
+    public void publish() throws IOException {
+        publisher.subscribe(asyncContext, out, -1);
+        assertEquals(1, publisher.publish(new DummyData("peter", 69)));
+        assertEquals(2, publisher.publish("update", "hello"));
+
+        assertEquals("id: 1\ndata: {\"name\":\"peter\",\"id\":69}\n\nid: 2\nevent: update\ndata: \"hello\"\n\n", out.asString());
+    }
+
+    @Test
+    public void publish_multiLineData() throws IOException {
+        EventPublisher prettyPublisher = new EventPublisher(4, 0, TimeUnit.SECONDS, new GsonCodec(new GsonBuilder().setPrettyPrinting().create()));
+        prettyPublisher.subscribe(asyncContext, out, -1);
+        prettyPublisher.publish(new DummyData("peter", 69));
+        prettyPublisher.close();
+
+        assertEquals("id: 1\ndata: {\ndata:   \"name\": \"peter\",\ndata:   \"id\": 69\ndata: }\n\n", out.asString());
+    }
+
+    @Test
+    public void publish_noSubscribers() {
+        assertEquals(1, publisher.publish("hello"));
+        assertEquals(0, publisher.subscribers());
+    }
+
+    @Test
+    public void publish_notReady() throws IOException {
+        publisher.subscribe(asyncContext, out, -1);
+        out.setReady(false);
+        publisher.publish("hello");
+        assertEquals("", out.asString());
+
+        out.setReady(true);
+        assertEquals("id: 1\ndata: \"hello\"\n\n", out.asString());
+    }
+
+    @Test
+    public void publish_slowSubscriberDisconnected() throws IOException {
+        publisher.subscribe(asyncContext, out, -1);
+        out.setReady(false);
+        for (int i = 0; i < 1025; i++) {
+            publisher.publish(i);
+        }
+        verify(asyncContext).complete();
+        assertEquals(0, publisher.subscribers());
+    }
+
+    @Test
+    public void subscribe_resume() throws IOException {
+        publisher.publish("first");
+        publisher.publish("second");
+        publisher.publish("third");
+        publisher.subscribe(asyncContext, out, 1);
+
+        assertEquals("id: 2\ndata: \"second\"\n\nid: 3\ndata: \"third\"\n\n", out.asString());
+    }
+
+    @Test
+    public void subscribe_resumeBeyondHistory() throws IOException {
+        for (int i = 1; i <= 10; i++) {
+            publisher.publish(i);
+        }
+        publisher.subscribe(asyncContext, out, 2);
+
+        //only the last 4 are kept
+        assertEquals("id: 7\ndata: 7\n\nid: 8\ndata: 8\n\nid: 9\ndata: 9\n\nid: 10\ndata: 10\n\n", out.asString());
+    }
+
+    @Test
+    public void subscribe_resumeUpToDate() throws IOException {
+        publisher.publish("first");
+        publisher.subscribe(asyncContext, out, 1);
+        assertEquals("", out.asString());
+    }
+
+    @Test
+    public void writeEventsSince() throws IOException {
+        publisher.publish("first");
+        publisher.publish("second");
+        publisher.writeEventsSince(out, 1);
+        assertEquals("id: 2\ndata: \"second\"\n\n", out.asString());
+    }
+
+    @Test
+    public void close() throws IOException {
+        publisher.subscribe(asyncContext, out, -1);
+        publisher.close();
+
+        verify(asyncContext).complete();
+        assertEquals(0, publisher.subscribers());
+    }
+
+    @Test
+    public void subscribe_afterClose() throws IOException {
+        publisher.close();
+        publisher.subscribe(asyncContext, out, -1);
+
+        verify(asyncContext).complete();
+        assertEquals(0, publisher.subscribers());
+    }
+
+    @Test
+    public void subscriber_completedByContainer() throws IOException {
+        EventSubscriber subscriber = new EventSubscriber(publisher, asyncContext, out, 8);
+        subscriber.onComplete(null);
+        subscriber.close();
+
+        assertTrue(subscriber.isClosed());
+        verify(asyncContext, never()).complete();
+    }
+
+    @Test
+    public void subscriber_writeError() throws IOException {
+        EventSubscriber subscriber = new EventSubscriber(publisher, asyncContext, out, 8);
+        subscriber.onError(new IOException("Connection reset"));
+        subscriber.onError(new IOException("Connection reset"));
+
+        assertTrue(subscriber.isClosed());
+        verify(asyncContext, times(1)).complete();
+    }
+
+    @Test(timeout = 5000)
+    public void heartbeat() throws Exception {
+        EventPublisher heartbeatPublisher = new EventPublisher(4, 10, TimeUnit.MILLISECONDS);
+        heartbeatPublisher.subscribe(asyncContext, out, -1);
+        while (!out.asString().startsWith(":\n\n")) {
+            Thread.sleep(5);
+        }
+        heartbeatPublisher.close();
+    }
+}
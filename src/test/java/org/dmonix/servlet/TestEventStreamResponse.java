@@ -0,0 +1,106 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link EventStreamResponse}
+ * @author Peter Nerg
+ */
+public class TestEventStreamResponse extends BaseAssert implements ResponseBuilder {
+
+    private final EventPublisher publisher = new EventPublisher(4, 0, TimeUnit.SECONDS);
+    private final HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+    private final HttpServletResponse resp = Mockito.mock(HttpServletResponse.class);
+    private final AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+    private final MockServletOutputStream out = new MockServletOutputStream();
+
+    @Before
+    public void before() throws IOException {
+        when(resp.getOutputStream()).thenReturn(out);
+        when(req.startAsync()).thenReturn(asyncContext);
+        when(req.getAsyncContext()).thenReturn(asyncContext);
+    }
+
+    @After
+    public void after() {
+        publisher.close();
+    }
+
+    @Test
+    public void eventStreamResponse() {
+        Response response = EventStreamResponse(new Request(req), publisher);
+        assertEquals(200, response.responseCode);
+        assertSome("text/event-stream", response.mediaType);
+        assertEquals("no-cache", response.headers().get("Cache-Control"));
+        assertTrue(response.isOpenEnded());
+        assertFalse(response.isBuffered());
+    }
+
+    @Test
+    public void writeResponse_async() throws IOException {
+        when(req.isAsyncSupported()).thenReturn(true);
+        writeResponse(resp, EventStreamResponse(new Request(req), publisher));
+
+        verify(resp).setContentType("text/event-stream");
+        verify(req).startAsync();
+        assertEquals(1, publisher.subscribers());
+        publisher.publish("hello");
+        assertEquals("id: 1\ndata: \"hello\"\n\n", out.asString());
+    }
+
+    @Test
+    public void writeResponse_asyncAlreadyStarted() throws IOException {
+        when(req.isAsyncSupported()).thenReturn(true);
+        when(req.isAsyncStarted()).thenReturn(true);
+        writeResponse(resp, EventStreamResponse(new Request(req), publisher));
+
+        verify(req, never()).startAsync();
+        assertEquals(1, publisher.subscribers());
+    }
+
+    @Test
+    public void writeResponse_notAsync() throws IOException {
+        when(req.getHeader("Last-Event-ID")).thenReturn("1");
+        publisher.publish("first");
+        publisher.publish("second");
+        writeResponse(resp, EventStreamResponse(new Request(req), publisher));
+
+        assertEquals(0, publisher.subscribers());
+        assertEquals("id: 2\ndata: \"second\"\n\nretry: 3000\n\n", out.asString());
+    }
+
+    @Test
+    public void lastEventId() {
+        assertEquals(-1, EventStreamResponse.lastEventId(null));
+        assertEquals(-1, EventStreamResponse.lastEventId("not-a-number"));
+        assertEquals(42, EventStreamResponse.lastEventId(" 42 "));
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link ExceptionMappings}
+ * @author Peter Nerg
+ */
+public class TestExceptionMappings extends BaseAssert implements ResponseBuilder {
+
+    private static final ResponseTemplate NOT_FOUND = ResponseTemplate.of(404, "No such item");
+
+    private static final Function<Throwable, Response> NOT_FOUND_MAPPER = ex -> NOT_FOUND;
+
+    private final ExceptionMappings mappings = new ExceptionMappings(throwable -> ErrorResponse(500, "fallback"));
+
+    /**
+     * Servlet failing with exceptions mapped to responses.
+     */
+    private static final class FailingServlet extends JSONServlet {
+        private FailingServlet() {
+            mapException(NoSuchElementException.class, NOT_FOUND);
+            mapException(IllegalArgumentException.class, ex -> ErrorResponse(400, ex.getMessage()));
+        }
+
+        @Override
+        protected Response get(Request request) {
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        protected Response post(Request request) {
+            throw new NumberFormatException("Not a number");
+        }
+
+        @Override
+        protected Response put(Request request) {
+            throw new IllegalStateException("Failed");
+        }
+    }
+
+    @Test
+    public void responseFor_fallback() {
+        assertEquals("fallback", mappings.responseFor(new IllegalStateException()).message);
+    }
+
+    @Test
+    public void responseFor_exactType() {
+        mappings.register(IllegalStateException.class, NOT_FOUND_MAPPER);
+        assertSame(NOT_FOUND, mappings.responseFor(new IllegalStateException()));
+    }
+
+    @Test
+    public void responseFor_closestSuperType() {
+        mappings.register(RuntimeException.class, ex -> ErrorResponse(500, "runtime"));
+        mappings.register(IllegalArgumentException.class, ex -> ErrorResponse(400, ex.getMessage()));
+
+        assertEquals(400, mappings.responseFor(new NumberFormatException("Not a number")).responseCode);
+        assertEquals("runtime", mappings.responseFor(new UncheckedIOException(new IOException())).message);
+        assertEquals("fallback", mappings.responseFor(new IOException()).message);
+    }
+
+    @Test
+    public void register_afterLookup() {
+        assertEquals("fallback", mappings.responseFor(new IllegalStateException()).message);
+        mappings.register(IllegalStateException.class, NOT_FOUND_MAPPER);
+        assertSame(NOT_FOUND, mappings.responseFor(new IllegalStateException()));
+    }
+
+    @Test
+    public void servlet_mappedException() throws Exception {
+        FailingServlet servlet = new FailingServlet();
+        assertSame(NOT_FOUND, servlet.ErrorResponse(new NoSuchElementException()));
+        assertEquals(400, servlet.ErrorResponse(new NumberFormatException("Not a number")).responseCode);
+        assertEquals(500, servlet.ErrorResponse(new IllegalStateException("Failed")).responseCode);
+        assertSame(ResponseTemplate.MISSING_PATH, servlet.ErrorResponse(JSONServletException.MissingPathFailure().failed().orNull()));
+    }
+
+    @Test
+    public void servlet_service() throws Exception {
+        HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+        HttpServletResponse resp = Mockito.mock(HttpServletResponse.class);
+        when(req.getMethod()).thenReturn("GET");
+        when(resp.getOutputStream()).thenReturn(new MockServletOutputStream());
+        new FailingServlet().service(req, resp);
+        verify(resp).setStatus(404);
+    }
+}
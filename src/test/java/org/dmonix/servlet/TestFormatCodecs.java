@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import javascalautils.Option;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * Test the class {@link FormatCodecs}
+ * @author Peter Nerg
+ */
+public class TestFormatCodecs extends BaseAssert {
+
+    private final DummyFormatCodec dummy = new DummyFormatCodec();
+    private final FormatCodecs codecs = new FormatCodecs(Collections.singletonList(dummy));
+
+    @Test
+    public void registered() {
+        assertFalse(FormatCodecs.registered().isEmpty());
+        assertSome(DummyFormatCodec.MEDIA_TYPE, FormatCodecs.registered().forContentType(DummyFormatCodec.MEDIA_TYPE).map(FormatCodec::mediaType));
+    }
+
+    @Test
+    public void forAccept_anything() {
+        assertNone(forAccept(codecs, null));
+        assertNone(forAccept(codecs, "application/*"));
+    }
+
+    @Test
+    public void forAccept_preferred() {
+        assertSome(dummy, forAccept(codecs, "application/x-dummy, application/json;q=0.5"));
+        assertNone(forAccept(codecs, "application/x-dummy;q=0.5, application/json"));
+    }
+
+    @Test
+    public void forAccept_notAcceptable() {
+        assertNone(forAccept(codecs, "text/html"));
+    }
+
+    @Test
+    public void forAccept_refused() {
+        assertSome(dummy, forAccept(codecs, "*/*, application/json;q=0"));
+        assertSome(dummy, forAccept(codecs, "application/*, application/json;q=0"));
+        assertNone(forAccept(codecs, "application/x-dummy;q=0, */*"));
+        assertNone(forAccept(codecs, "application/json, */*;q=0"));
+    }
+
+    @Test
+    public void forAccept_noCodecs() {
+        assertNone(forAccept(new FormatCodecs(Collections.emptyList()), "application/x-dummy"));
+    }
+
+    @Test
+    public void forContentType() {
+        assertNone(codecs.forContentType(null));
+        assertNone(codecs.forContentType("application/json;charset=UTF-8"));
+        assertSome(dummy, codecs.forContentType("Application/X-Dummy; charset=UTF-8"));
+    }
+
+    private static Option<FormatCodec> forAccept(FormatCodecs codecs, String accept) {
+        return codecs.forAccept(MediaRanges.parse(accept), MediaRanges.refused(accept));
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import com.google.gson.GsonBuilder;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Spliterator;
+import java.util.stream.StreamSupport;
+
+/**
+ * Test the class {@link GsonCodec}
+ * @author Peter Nerg
+ */
+public class TestGsonCodec extends BaseAssert {
+    private final JsonCodec codec = new GsonCodec();
+
+    @Test
+    public void fromJson() throws IOException {
+        DummyData data = codec.fromJson(new StringReader("{\"name\":\"Peter\", \"id\":666}"), DummyData.class);
+        assertEquals("Peter", data.name);
+        assertEquals(666, data.id);
+    }
+
+    @Test
+    public void toJson() {
+        assertEquals("{\"name\":\"peter\",\"id\":69}", codec.toJson(new DummyData("peter", 69)));
+    }
+
+    @Test
+    public void toJson_writer() throws IOException {
+        StringWriter writer = new StringWriter();
+        codec.toJson(new DummyData("peter", 69), writer);
+        assertEquals("{\"name\":\"peter\",\"id\":69}", writer.toString());
+    }
+
+    @Test
+    public void toJson_writerNull() throws IOException {
+        StringWriter writer = new StringWriter();
+        codec.toJson(null, writer);
+        assertEquals("null", writer.toString());
+    }
+
+    @Test
+    public void toJson_customGson() {
+        JsonCodec pretty = new GsonCodec(new GsonBuilder().serializeNulls().create());
+        assertEquals("{\"name\":null,\"id\":1}", pretty.toJson(new PlainData()));
+    }
+
+    @Test
+    public void arrayElements() throws IOException {
+        Spliterator<DummyData> elements = codec.arrayElements(new StringReader("[{\"name\":\"a\",\"id\":1},{\"name\":\"b\",\"id\":2}]"), DummyData.class, 0);
+        assertEquals(3, StreamSupport.stream(elements, false).mapToInt(d -> d.id).sum());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void arrayElements_notArray() throws IOException {
+        codec.arrayElements(new StringReader("{\"name\":\"a\",\"id\":1}"), DummyData.class, 0);
+    }
+
+    /**
+     * Data type without a registered adapter.
+     */
+    private static final class PlainData {
+        private final String name = null;
+        private final int id = 1;
+    }
+}
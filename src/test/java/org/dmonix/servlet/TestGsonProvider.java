@@ -0,0 +1,72 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import com.google.gson.TypeAdapterFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Test the class {@link GsonProvider}
+ * @author Peter Nerg
+ */
+public class TestGsonProvider extends BaseAssert {
+
+    @Test
+    public void sharedInstance() {
+        assertSame(ParserUtils.gson, ResponseBuilder.gson);
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void serviceAdaptersRegistered() throws IOException {
+        //the factory is only registered as a service for this test, not for the whole test class path
+        File services = new File(folder.newFolder("META-INF", "services"), TypeAdapterFactory.class.getName());
+        Files.write(services.toPath(), DummyDataTypeAdapterFactory.class.getName().getBytes(StandardCharsets.UTF_8));
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{folder.getRoot().toURI().toURL()}, original)) {
+            thread.setContextClassLoader(loader);
+            assertTrue(GsonProvider.create().getAdapter(DummyData.class) instanceof DummyDataTypeAdapterFactory.DummyDataTypeAdapter);
+        } finally {
+            thread.setContextClassLoader(original);
+        }
+    }
+
+    @Test
+    public void reflectiveWithoutServices() {
+        assertFalse(GsonProvider.create().getAdapter(DummyData.class) instanceof DummyDataTypeAdapterFactory.DummyDataTypeAdapter);
+    }
+
+    @Test
+    public void roundTrip() {
+        String json = GsonProvider.gson.toJson(new DummyData("peter", 69));
+        assertEquals("{\"name\":\"peter\",\"id\":69}", json);
+        DummyData data = GsonProvider.gson.fromJson(json, DummyData.class);
+        assertEquals("peter", data.name);
+        assertEquals(69, data.id);
+    }
+}
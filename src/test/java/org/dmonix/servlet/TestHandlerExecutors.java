@@ -0,0 +1,77 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test the class {@link HandlerExecutors}
+ * @author Peter Nerg
+ */
+public class TestHandlerExecutors extends BaseAssert {
+
+    @Test
+    public void newHandlerExecutor() throws Exception {
+        assertExecutes(HandlerExecutors.newHandlerExecutor(2, 10));
+    }
+
+    @Test
+    public void newPlatformThreadExecutor() throws Exception {
+        ExecutorService executor = HandlerExecutors.newPlatformThreadExecutor(2, 10);
+        Future<Boolean> isDaemon = executor.submit(() -> Thread.currentThread().isDaemon());
+        assertTrue(isDaemon.get(5, TimeUnit.SECONDS));
+        assertExecutes(executor);
+    }
+
+    @Test
+    public void newPlatformThreadExecutor_boundedQueue() throws Exception {
+        ExecutorService executor = HandlerExecutors.newPlatformThreadExecutor(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> awaitQuietly(release));
+            executor.execute(() -> awaitQuietly(release));
+            executor.execute(() -> fail("Should have been rejected"));
+            fail("Expected RejectedExecutionException");
+        } catch (RejectedExecutionException ex) {
+            //expected, one running and one queued
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void assertExecutes(ExecutorService executor) throws Exception {
+        try {
+            assertEquals("done", executor.submit(() -> "done").get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -16,19 +16,32 @@
 package org.dmonix.servlet;
 
 import javascalautils.Try;
+import org.dmonix.servlet.DummyServlets.GetOnlyServlet;
+import org.dmonix.servlet.DummyServlets.HeadServlet;
 import org.dmonix.servlet.DummyServlets.ServletWithAllOps;
 import org.dmonix.servlet.DummyServlets.ServletWithAllTryOps;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import javax.servlet.ServletConfig;
+import javax.servlet.ReadListener;
 import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -48,6 +61,7 @@ public class TestJSONServlet extends BaseAssert {
     @Before
     public void before() throws Exception {
         when(servletResponse.getWriter()).thenReturn(new PrintWriter(new NullWriter()));
+        when(servletResponse.getOutputStream()).thenReturn(new MockServletOutputStream());
     }
 
     @Test
@@ -66,6 +80,79 @@ public class TestJSONServlet extends BaseAssert {
         assertNotSupported(testServlet.getWithTry(request));
     }
 
+    @Test
+    public void getAsync() {
+        assertNotSupported(testServlet.getAsync(request));
+    }
+
+    @Test
+    public void doHead() throws ServletException, IOException {
+        testServlet.doHead(servletRequest, servletResponse);
+        verify(servletResponse).setStatus(405);
+    }
+
+    @Test
+    public void doHead_handledByGet() throws ServletException, IOException {
+        GetOnlyServlet servlet = new GetOnlyServlet();
+        servlet.doHead(servletRequest, servletResponse);
+        verify(servletResponse).setStatus(200);
+        verify(servletResponse).setContentLengthLong(servlet.get(request).message.getBytes(StandardCharsets.UTF_8).length);
+        verify(servletResponse, never()).getWriter();
+        verify(servletResponse, never()).getOutputStream();
+    }
+
+    @Test
+    public void doHead_streamingResponseClosed() throws ServletException, IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        streamingServlet(closed).doHead(servletRequest, servletResponse);
+        verify(servletResponse).setStatus(200);
+        verify(servletResponse, never()).getOutputStream();
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void doGet_notModifiedStreamingResponseClosed() throws ServletException, IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        JSONServlet servlet = streamingServlet(closed);
+        ServletConfig config = Mockito.mock(ServletConfig.class);
+        when(config.getInitParameter(JSONServlet.PARAM_ETAG)).thenReturn("true");
+        servlet.init(config);
+        when(servletRequest.getHeader("If-None-Match")).thenReturn("\"v1\"");
+        servlet.doGet(servletRequest, servletResponse);
+        verify(servletResponse).setStatus(304);
+        verify(servletResponse, never()).getOutputStream();
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void doGet_rejectedExecution() throws ServletException, IOException {
+        JSONServlet servlet = new JSONServlet() {
+            @Override
+            protected CompletionStage<Response> getAsync(Request request) {
+                CompletableFuture<Response> future = new CompletableFuture<>();
+                future.completeExceptionally(new RejectedExecutionException("Queue full"));
+                return future;
+            }
+        };
+        servlet.doGet(servletRequest, servletResponse);
+        verify(servletResponse).setStatus(503);
+        verify(servletResponse).setHeader("Retry-After", "1");
+    }
+
+    @Test
+    public void doHead_dedicatedHandler() throws ServletException, IOException {
+        new HeadServlet().doHead(servletRequest, servletResponse);
+        verify(servletResponse).setStatus(200);
+        verify(servletResponse).setHeader("X-Head", "true");
+        verify(servletResponse).setContentLengthLong(2);
+        verify(servletResponse, never()).getOutputStream();
+    }
+
+    @Test
+    public void head() throws ServletException, IOException {
+        assertNotSupported(testServlet.head(request));
+    }
+
     @Test
     public void doDelete() throws ServletException, IOException {
         testServlet.doDelete(servletRequest, servletResponse);
@@ -82,6 +169,11 @@ public class TestJSONServlet extends BaseAssert {
         assertNotSupported(testServlet.deleteWithTry(request));
     }
 
+    @Test
+    public void deleteAsync() {
+        assertNotSupported(testServlet.deleteAsync(request));
+    }
+
     @Test
     public void doPut() throws ServletException, IOException {
         testServlet.doPut(servletRequest, servletResponse);
@@ -98,6 +190,11 @@ public class TestJSONServlet extends BaseAssert {
         assertNotSupported(testServlet.putWithTry(request));
     }
 
+    @Test
+    public void putAsync() {
+        assertNotSupported(testServlet.putAsync(request));
+    }
+
     @Test
     public void doPost() throws ServletException, IOException {
         testServlet.doPost(servletRequest, servletResponse);
@@ -114,6 +211,11 @@ public class TestJSONServlet extends BaseAssert {
         assertNotSupported(testServlet.postWithTry(request));
     }
 
+    @Test
+    public void postAsync() {
+        assertNotSupported(testServlet.postAsync(request));
+    }
+
     @Test
     public void doOptions() throws ServletException, IOException {
         testServlet.doOptions(servletRequest, servletResponse);
@@ -132,12 +234,126 @@ public class TestJSONServlet extends BaseAssert {
         verify(servletResponse).setHeader(eq("Allow"), contains("POST"));
     }
 
+    @Test
+    public void fromJson_maxBodySize() throws Throwable {
+        JSONServlet servlet = limitedServlet();
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream("{\"name\":\"Peter\", \"id\":69}"));
+        Try<DummyData> result = servlet.fromJson(servletRequest, DummyData.class);
+        assertFailure(result);
+        assertSame(JSONServletException.PayloadTooLargeException(), result.failed().get());
+    }
+
+    @Test
+    public void fromJson_otherMethodUnlimited() throws Throwable {
+        JSONServlet servlet = limitedServlet();
+        when(servletRequest.getMethod()).thenReturn("PUT");
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream("{\"name\":\"Peter\", \"id\":69}"));
+        assertEquals(69, servlet.fromJson(servletRequest, DummyData.class).get().id);
+    }
+
+    @Test
+    public void streamJsonArray_maxBodySize() throws Throwable {
+        JSONServlet servlet = limitedServlet();
+        when(servletRequest.getContentLengthLong()).thenReturn(30L);
+        Try<Stream<DummyData>> result = servlet.streamJsonArray(servletRequest, DummyData.class);
+        assertFailure(result);
+        assertSame(JSONServletException.PayloadTooLargeException(), result.failed().get());
+    }
+
+    @Test
+    public void streamJsonArray_maxBodySizeExceededWhileStreaming() throws Throwable {
+        JSONServlet servlet = new JSONServlet() {
+            @Override
+            protected Response post(Request request) throws IOException {
+                try (Stream<DummyData> elements = request.streamJsonArray(DummyData.class).orNull()) {
+                    return ObjectResponse(elements.count());
+                }
+            }
+        };
+        ServletConfig config = Mockito.mock(ServletConfig.class);
+        when(config.getInitParameter(JSONServlet.PARAM_MAX_BODY_SIZE + ".POST")).thenReturn("1024");
+        servlet.init(config);
+        when(servletRequest.getMethod()).thenReturn("POST");
+        when(servletRequest.getContentLengthLong()).thenReturn(-1L);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 1; i <= 200; i++) {
+            json.append(i > 1 ? "," : "").append("{\"name\":\"n").append(i).append("\", \"id\":").append(i).append('}');
+        }
+        when(servletRequest.getInputStream()).thenReturn(new ShortReadInputStream(json.append(']').toString()));
+
+        servlet.doPost(servletRequest, servletResponse);
+        verify(servletResponse).setStatus(413);
+    }
+
+    private static JSONServlet streamingServlet(AtomicBoolean closed) {
+        return new JSONServlet() {
+            @Override
+            protected Response get(Request request) {
+                Response response = StreamingResponse(Stream.of(new DummyData("peter", 69)).onClose(() -> closed.set(true)));
+                response.addHeader("ETag", "\"v1\"");
+                return response;
+            }
+        };
+    }
+
+    private JSONServlet limitedServlet() throws ServletException {
+        JSONServlet servlet = new DummyServlets.NoOperationsServlet();
+        ServletConfig config = Mockito.mock(ServletConfig.class);
+        when(config.getInitParameter(JSONServlet.PARAM_MAX_BODY_SIZE + ".POST")).thenReturn("16");
+        servlet.init(config);
+        when(servletRequest.getMethod()).thenReturn("POST");
+        when(servletRequest.getContentLengthLong()).thenReturn(-1L);
+        return servlet;
+    }
+
     private void assertNotSupported(Response response) {
         assertEquals(405, response.responseCode);
     }
 
+    private void assertNotSupported(CompletionStage<Response> response) {
+        CompletableFuture<Response> future = response.toCompletableFuture();
+        assertTrue(future.isDone());
+        assertNotSupported(future.join());
+    }
+
     private void assertNotSupported(Try<Response> response) {
         assertSuccess(response);
         response.forEach(this::assertNotSupported);
     }
+
+    /**
+     * Returns at most 64 bytes per read as a network stream would, i.e. the body isn't read in one go.
+     */
+    private static final class ShortReadInputStream extends ServletInputStream {
+        private final ByteArrayInputStream in;
+
+        private ShortReadInputStream(String data) {
+            this.in = new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, Math.min(len, 64));
+        }
+
+        @Override
+        public boolean isFinished() {
+            return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
@@ -27,6 +27,45 @@ public class TestJSONServletException extends BaseAssert {
     public void missingPathException() {
         JSONServletException ex = JSONServletException.MissingPathException();
         assertEquals(400, ex.response.responseCode);
+        assertEquals("Missing path", ex.response.message);
+        assertNotSame(ex, JSONServletException.MissingPathException());
+        //the response is mutable
+        ex.response.addHeader("X-Test", "value");
+        assertEquals("value", ex.response.headers().get("X-Test"));
+    }
+
+    @Test
+    public void sharedInstancesAreStackless() {
+        JSONServletException ex = JSONServletException.PayloadTooLargeException();
+        assertEquals(0, ex.getStackTrace().length);
+        ex.addSuppressed(new IllegalStateException());
+        assertEquals(0, ex.getSuppressed().length);
+    }
+
+    @Test
+    public void keepsStackTrace() {
+        assertTrue(JSONServletException.UnauthorizedException("Invalid user/psw").getStackTrace().length > 0);
+        assertTrue(new JSONServletException(new Response(400, "Bad")).getStackTrace().length > 0);
+    }
+
+    @Test
+    public void withCause() {
+        IllegalArgumentException cause = new IllegalArgumentException("Invalid");
+        JSONServletException ex = new JSONServletException(new Response(400, "Bad"), cause);
+        assertSame(cause, ex.getCause());
+        assertTrue(ex.getStackTrace().length > 0);
+    }
+
+    @Test
+    public void missingPathFailure() {
+        assertFailure(JSONServletException.MissingPathFailure());
+        assertSame(JSONServletException.MissingPathFailure(), JSONServletException.MissingPathFailure());
+        assertSame(ResponseTemplate.MISSING_PATH, ((JSONServletException) JSONServletException.MissingPathFailure().failed().orNull()).response);
+    }
+
+    @Test
+    public void payloadTooLargeFailure() {
+        assertSame(JSONServletException.PayloadTooLargeException(), JSONServletException.PayloadTooLargeFailure().failed().orNull());
     }
 
     @Test
@@ -34,4 +73,11 @@ public class TestJSONServletException extends BaseAssert {
         JSONServletException ex = JSONServletException.UnauthorizedException("Invalid user/psw");
         assertEquals(401, ex.response.responseCode);
     }
+
+    @Test
+    public void payloadTooLargeException() {
+        JSONServletException ex = JSONServletException.PayloadTooLargeException();
+        assertEquals(413, ex.response.responseCode);
+        assertSame(ex, JSONServletException.PayloadTooLargeException());
+    }
 }
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link JsonCodecs}
+ * @author Peter Nerg
+ */
+public class TestJsonCodecs extends BaseAssert {
+
+    @Test
+    public void defaultCodec() {
+        assertTrue(JsonCodecs.defaultCodec() instanceof GsonCodec);
+        assertSame(JsonCodecs.defaultCodec(), JsonCodecs.defaultCodec());
+    }
+
+    @Test
+    public void forName() {
+        assertTrue(JsonCodecs.forName(GsonCodec.class.getName()) instanceof GsonCodec);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void forName_noSuchClass() {
+        JsonCodecs.forName("no.such.Codec");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void forName_notACodec() {
+        JsonCodecs.forName(String.class.getName());
+    }
+
+    @Test
+    public void servletWithCodec() throws ServletException {
+        JSONServlet servlet = new DummyServlets.GetOnlyServlet();
+        servlet.init(config(GsonCodec.class.getName()));
+        assertTrue(servlet.jsonCodec() instanceof GsonCodec);
+        assertNotSame(JsonCodecs.defaultCodec(), servlet.jsonCodec());
+    }
+
+    @Test
+    public void servletParsesWithCodec() throws Throwable {
+        JSONServlet servlet = new DummyServlets.GetOnlyServlet();
+        servlet.init(config(RecordingCodec.class.getName()));
+        HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn("POST");
+        when(req.getInputStream()).thenReturn(new MockServletInputStream("{\"name\":\"Peter\", \"id\":69}"));
+        int parsed = RecordingCodec.parsed.get();
+        assertEquals(69, servlet.fromJson(req, DummyData.class).get().id);
+        assertEquals(parsed + 1, RecordingCodec.parsed.get());
+    }
+
+    @Test(expected = ServletException.class)
+    public void servletWithInvalidCodec() throws ServletException {
+        new DummyServlets.GetOnlyServlet().init(config("no.such.Codec"));
+    }
+
+    /**
+     * Codec counting the parsed objects.
+     */
+    public static final class RecordingCodec implements JsonCodec {
+        private static final AtomicInteger parsed = new AtomicInteger();
+        private final JsonCodec codec = new GsonCodec();
+
+        @Override
+        public <T> T fromJson(Reader reader, Class<T> type) throws IOException {
+            parsed.incrementAndGet();
+            return codec.fromJson(reader, type);
+        }
+
+        @Override
+        public String toJson(Object object) {
+            return codec.toJson(object);
+        }
+
+        @Override
+        public void toJson(Object object, Writer writer) throws IOException {
+            codec.toJson(object, writer);
+        }
+
+        @Override
+        public <T> Spliterator<T> arrayElements(Reader reader, Class<T> type, int chunkSize) throws IOException {
+            return codec.arrayElements(reader, type, chunkSize);
+        }
+    }
+
+    private static ServletConfig config(String codec) {
+        ServletConfig config = Mockito.mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(Mockito.mock(ServletContext.class));
+        when(config.getInitParameter(JSONServlet.PARAM_JSON_CODEC)).thenReturn(codec);
+        return config;
+    }
+}
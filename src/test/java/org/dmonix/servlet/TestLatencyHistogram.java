@@ -0,0 +1,92 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link LatencyHistogram}
+ * @author Peter Nerg
+ */
+public class TestLatencyHistogram extends BaseAssert {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void snapshot_empty() {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.count);
+        assertEquals(0, snapshot.sumNanos);
+    }
+
+    @Test
+    public void bucketOf() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(0, LatencyHistogram.bucketOf(1023));
+        assertEquals(1, LatencyHistogram.bucketOf(1024));
+        assertEquals(1, LatencyHistogram.bucketOf(2047));
+        assertEquals(2, LatencyHistogram.bucketOf(2048));
+        assertEquals(LatencyHistogram.BUCKETS, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void upperBoundNanos() {
+        assertEquals(1024, LatencyHistogram.upperBoundNanos(0));
+        assertEquals(2048, LatencyHistogram.upperBoundNanos(1));
+    }
+
+    @Test
+    public void record() {
+        histogram.record(500);
+        histogram.record(1500);
+        histogram.record(1600);
+        histogram.record(-1);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(4, snapshot.count);
+        assertEquals(3600, snapshot.sumNanos);
+        assertEquals(2, snapshot.count(0));
+        assertEquals(2, snapshot.count(1));
+    }
+
+    @Test
+    public void record_overflow() {
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(1, histogram.snapshot().count(LatencyHistogram.BUCKETS));
+    }
+
+    @Test
+    public void merge() {
+        histogram.record(500);
+        LatencyHistogram other = new LatencyHistogram();
+        other.record(1500);
+        other.record(700);
+
+        LatencyHistogram.Snapshot merged = histogram.snapshot().merge(other.snapshot());
+        assertEquals(3, merged.count);
+        assertEquals(2700, merged.sumNanos);
+        assertEquals(2, merged.count(0));
+        assertEquals(1, merged.count(1));
+    }
+
+    @Test
+    public void merge_empty() {
+        histogram.record(500);
+        LatencyHistogram.Snapshot merged = LatencyHistogram.Snapshot.EMPTY.merge(histogram.snapshot());
+        assertEquals(1, merged.count);
+        assertEquals(0, LatencyHistogram.Snapshot.EMPTY.count);
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link MetricsServlet}
+ * @author Peter Nerg
+ */
+public class TestMetricsServlet extends BaseAssert {
+
+    @Test
+    public void render() {
+        ServletMetrics metrics = ServletMetrics.register("TestMetricsServlet.render");
+        metrics.record(HttpMethod.GET, 200, 1500, 0, 1000, 500);
+        String text = MetricsServlet.render();
+
+        assertThat(text, containsString("# TYPE json_servlet_request_duration_seconds histogram"));
+        assertThat(text, containsString("json_servlet_request_duration_seconds_bucket{servlet=\"TestMetricsServlet.render\",method=\"GET\",status=\"2xx\",le=\"1.024E-6\"} 0"));
+        assertThat(text, containsString("json_servlet_request_duration_seconds_bucket{servlet=\"TestMetricsServlet.render\",method=\"GET\",status=\"2xx\",le=\"2.048E-6\"} 1"));
+        assertThat(text, containsString("json_servlet_request_duration_seconds_bucket{servlet=\"TestMetricsServlet.render\",method=\"GET\",status=\"2xx\",le=\"+Inf\"} 1"));
+        assertThat(text, containsString("json_servlet_request_duration_seconds_count{servlet=\"TestMetricsServlet.render\",method=\"GET\",status=\"2xx\"} 1"));
+        assertThat(text, containsString("json_servlet_phase_duration_seconds_sum{servlet=\"TestMetricsServlet.render\",method=\"GET\",phase=\"handler\"} 1.0E-6"));
+        //nothing recorded for these
+        assertThat(text, not(containsString("servlet=\"TestMetricsServlet.render\",method=\"GET\",status=\"5xx\"")));
+        assertThat(text, not(containsString("servlet=\"TestMetricsServlet.render\",method=\"POST\"")));
+    }
+
+    @Test
+    public void render_escapesName() {
+        ServletMetrics.register("TestMetricsServlet.\"quoted\"").record(HttpMethod.GET, 200, 1, 0, 1, 0);
+        assertThat(MetricsServlet.render(), containsString("servlet=\"TestMetricsServlet.\\\"quoted\\\"\""));
+    }
+
+    @Test
+    public void doGet() throws Exception {
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        StringWriter body = new StringWriter();
+        when(resp.getWriter()).thenReturn(new PrintWriter(body));
+
+        new MetricsServlet().doGet(mock(HttpServletRequest.class), resp);
+
+        verify(resp).setStatus(200);
+        verify(resp).setContentType("text/plain; version=0.0.4; charset=UTF-8");
+        assertThat(body.toString(), containsString("# TYPE json_servlet_phase_duration_seconds histogram"));
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link PathRouter}
+ * @author Peter Nerg
+ */
+public class TestPathRouter extends BaseAssert {
+
+    private final PathRouter<String> router = new PathRouter<>();
+
+    @Test
+    public void match_static() {
+        add("/users");
+        add("/users/admins");
+        add("/user");
+        add("/orders");
+
+        assertMatch("/users", "/users");
+        assertMatch("/users/admins", "/users/admins");
+        assertMatch("/user", "/user");
+        assertMatch("/orders", "/orders");
+        assertNone(router.match("/use"));
+        assertNone(router.match("/users/"));
+        assertNone(router.match("/usersx"));
+        assertNone(router.match(""));
+        assertNone(router.match(null));
+    }
+
+    @Test
+    public void match_root() {
+        add("/");
+        assertMatch("/", "/");
+        assertNone(router.match("/x"));
+    }
+
+    @Test
+    public void match_params() {
+        add("/users/{id}/orders/{oid}");
+
+        PathRouter.Match<String> match = router.match("/users/42/orders/abc-1").orNull();
+        assertEquals("/users/{id}/orders/{oid}", match.value);
+        assertSome("42", match.param("id"));
+        assertSome("abc-1", match.param("oid"));
+        assertNone(match.param("missing"));
+
+        assertNone(router.match("/users/42/orders"));
+        assertNone(router.match("/users/42/orders/"));
+        assertNone(router.match("/users//orders/1"));
+        assertNone(router.match("/users/42/orders/1/x"));
+    }
+
+    @Test
+    public void match_staticBeforeParam() {
+        add("/users/{id}");
+        add("/users/me");
+
+        assertMatch("/users/me", "/users/me");
+        assertMatch("/users/{id}", "/users/mee");
+        assertMatch("/users/{id}", "/users/42");
+    }
+
+    @Test
+    public void match_backtracksToParam() {
+        add("/users/me/settings");
+        add("/users/{id}/orders");
+
+        assertMatch("/users/me/settings", "/users/me/settings");
+        PathRouter.Match<String> match = router.match("/users/me/orders").orNull();
+        assertEquals("/users/{id}/orders", match.value);
+        assertSome("me", match.param("id"));
+    }
+
+    @Test
+    public void match_sharedPrefixes() {
+        add("/search");
+        add("/support");
+        add("/su/{id}");
+        add("/s");
+
+        assertMatch("/search", "/search");
+        assertMatch("/support", "/support");
+        assertMatch("/su/{id}", "/su/1");
+        assertMatch("/s", "/s");
+        assertNone(router.match("/su"));
+    }
+
+    @Test
+    public void computeIfAbsent_existing() {
+        add("/users/{id}");
+        assertEquals("/users/{id}", router.computeIfAbsent("/users/{id}", () -> "other"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void computeIfAbsent_conflictingNames() {
+        add("/users/{id}");
+        add("/users/{uid}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void computeIfAbsent_noLeadingSlash() {
+        add("users");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void computeIfAbsent_partialSegment() {
+        add("/users/{id}.json");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void computeIfAbsent_emptyName() {
+        add("/users/{}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void computeIfAbsent_unclosed() {
+        add("/users/{id");
+    }
+
+    private void add(String template) {
+        assertEquals(template, router.computeIfAbsent(template, () -> template));
+    }
+
+    private void assertMatch(String expected, String path) {
+        assertEquals(expected, router.match(path).orNull().value);
+    }
+}
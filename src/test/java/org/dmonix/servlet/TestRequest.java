@@ -22,8 +22,20 @@ import org.mockito.Mockito;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -34,6 +46,20 @@ public class TestRequest extends BaseAssert {
     private final HttpServletRequest servletRequest = Mockito.mock(HttpServletRequest.class);
     private final Request request = new Request(servletRequest);
 
+    @Test
+    public void pathParam_notRouted() {
+        assertNone(request.pathParam("id"));
+    }
+
+    @Test
+    public void pathParam() {
+        PathRouter<String> router = new PathRouter<>();
+        router.computeIfAbsent("/users/{id}", () -> "users");
+        request.route(router.match("/users/42").orNull());
+        assertSome("42", request.pathParam("id"));
+        assertNone(request.pathParam("oid"));
+    }
+
     @Test
     public void request() {
         assertNotNull(request.request());
@@ -53,16 +79,89 @@ public class TestRequest extends BaseAssert {
         assertEquals(expected.getName(), cookies.iterator().next().getName());
     }
 
+    @Test
+    public void cookies_cached() {
+        when(servletRequest.getCookies()).thenReturn(new Cookie[]{new Cookie("test", "value")});
+        assertSame(request.cookies(), request.cookies());
+        verify(servletRequest, times(1)).getCookies();
+    }
+
+    @Test
+    public void cookie() {
+        Cookie first = new Cookie("test", "first");
+        when(servletRequest.getCookies()).thenReturn(new Cookie[]{first, new Cookie("other", "value"), new Cookie("test", "second")});
+        assertSome(first, request.cookie("test"));
+        assertSome("value", request.cookie("other").map(Cookie::getValue));
+        assertNone(request.cookie("missing"));
+        assertSame(request.cookie("test"), request.cookie("test"));
+    }
+
+    @Test
+    public void cookie_noCookies() {
+        assertNone(request.cookie("test"));
+    }
+
     @Test
     public void getPathInfo() {
         when(servletRequest.getPathInfo()).thenReturn("/the-path");
         assertSome("the-path", request.getPathInfo());
     }
 
+    @Test
+    public void getPathInfo_cached() {
+        when(servletRequest.getPathInfo()).thenReturn("/the-path");
+        assertSame(request.getPathInfo(), request.getPathInfo());
+        verify(servletRequest, times(1)).getPathInfo();
+    }
+
     @Test
     public void getPathInfoAsTry() {
         when(servletRequest.getPathInfo()).thenReturn("/the-path");
         assertSuccess("the-path", request.getPathInfoAsTry());
+        assertSame(request.getPathInfoAsTry(), request.getPathInfoAsTry());
+    }
+
+    @Test
+    public void getPathInfoAsTry_noPath() {
+        assertFailure(request.getPathInfoAsTry());
+    }
+
+    @Test
+    public void accept() {
+        when(servletRequest.getHeader("Accept")).thenReturn("text/html;level=1, application/*;q=0.5, APPLICATION/JSON, image/png;q=0");
+        assertEquals(Arrays.asList("text/html", "application/json", "application/*"), request.accept());
+        assertSame(request.accept(), request.accept());
+        verify(servletRequest, times(1)).getHeader("Accept");
+    }
+
+    @Test
+    public void accept_missing() {
+        assertEquals(Collections.singletonList("*/*"), request.accept());
+    }
+
+    @Test
+    public void accepts() {
+        when(servletRequest.getHeader("Accept")).thenReturn("application/*;q=0.5, text/plain, image/png;q=0");
+        assertTrue(request.accepts("application/json"));
+        assertTrue(request.accepts("application/cbor;q=1"));
+        assertTrue(request.accepts("Text/Plain"));
+        assertFalse(request.accepts("text/html"));
+        assertFalse(request.accepts("image/png"));
+    }
+
+    @Test
+    public void accepts_refused() {
+        when(servletRequest.getHeader("Accept")).thenReturn("*/*, application/json;q=0, text/*;q=0, text/plain");
+        assertFalse(request.accepts("application/json"));
+        assertTrue(request.accepts("application/x-ndjson"));
+        assertFalse(request.accepts("text/html"));
+        assertTrue(request.accepts("text/plain"));
+    }
+
+    @Test
+    public void accepts_wildcard() {
+        when(servletRequest.getHeader("Accept")).thenReturn("*/*");
+        assertTrue(request.accepts("application/x-ndjson"));
     }
 
     @Test
@@ -77,4 +176,164 @@ public class TestRequest extends BaseAssert {
         });
     }
 
+
+    @Test
+    public void streamJsonArray() throws Throwable {
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream("[{\"name\":\"Peter\", \"id\":1}, {\"name\":\"Nerg\", \"id\":2}]"));
+
+        Try<Stream<DummyData>> result = request.streamJsonArray(DummyData.class);
+        assertSuccess(result);
+        List<String> names = result.orNull().map(d -> d.name).collect(Collectors.toList());
+        assertEquals(2, names.size());
+        assertEquals("Peter", names.get(0));
+        assertEquals("Nerg", names.get(1));
+    }
+
+    @Test
+    public void streamJsonArray_empty() throws Throwable {
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream("[]"));
+        assertEquals(0, request.streamJsonArray(DummyData.class).orNull().count());
+    }
+
+    @Test
+    public void forEachJsonArrayElement() throws Throwable {
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream(jsonArray(1000)));
+        LongAdder sum = new LongAdder();
+        assertEquals(Long.valueOf(1000), request.forEachJsonArrayElement(DummyData.class, 64, 4, ForkJoinPool.commonPool(), d -> sum.add(d.id)).get());
+        assertEquals(500500, sum.sum());
+    }
+
+    @Test
+    public void forEachJsonArrayElement_boundedPendingChunks() throws Throwable {
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream(jsonArray(1000)));
+        BlockingQueue<Runnable> queued = new LinkedBlockingQueue<>();
+        AtomicInteger maxQueued = new AtomicInteger();
+        Thread worker = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(1);
+                    queued.take().run();
+                }
+            } catch (InterruptedException ex) {
+                //test done
+            }
+        });
+        worker.start();
+        try {
+            Executor slowExecutor = task -> {
+                queued.add(task);
+                maxQueued.accumulateAndGet(queued.size(), Math::max);
+            };
+            assertEquals(Long.valueOf(1000), request.forEachJsonArrayElement(DummyData.class, 10, 2, slowExecutor, d -> {}).get());
+            assertTrue(maxQueued.get() <= 2);
+        } finally {
+            worker.interrupt();
+        }
+    }
+
+    @Test
+    public void forEachJsonArrayElement_actionFails() throws Throwable {
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream(jsonArray(1000)));
+        Try<Long> result = request.forEachJsonArrayElement(DummyData.class, 10, 2, ForkJoinPool.commonPool(), d -> {
+            if (d.id == 500) {
+                throw new IllegalStateException("Failed on 500");
+            }
+        });
+        assertFailure(result);
+        assertEquals("Failed on 500", result.failed().get().getMessage());
+    }
+
+    @Test
+    public void forEachJsonArrayElement_notArray() throws Throwable {
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream("{\"name\":\"Peter\", \"id\":1}"));
+        assertFailure(request.forEachJsonArrayElement(DummyData.class, 10, 2, ForkJoinPool.commonPool(), d -> {}));
+    }
+
+    @Test
+    public void forEachJsonArrayElement_invalidChunkSize() throws Throwable {
+        assertFailure(request.forEachJsonArrayElement(DummyData.class, 0, 2, ForkJoinPool.commonPool(), d -> {}));
+    }
+
+    @Test
+    public void streamJsonArray_notArray() throws Throwable {
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream("{\"name\":\"Peter\", \"id\":1}"));
+        assertFailure(request.streamJsonArray(DummyData.class));
+    }
+
+    @Test
+    public void fromBody_json() throws Throwable {
+        when(servletRequest.getContentType()).thenReturn("application/json");
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream("{\"name\":\"Peter\", \"id\":666}"));
+        assertEquals("Peter", request.fromBody(DummyData.class).get().name);
+    }
+
+    @Test
+    public void fromBody_withoutContentType() throws Throwable {
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream("{\"name\":\"Peter\", \"id\":666}"));
+        assertEquals("Peter", request.fromBody(DummyData.class).get().name);
+    }
+
+    @Test
+    public void fromBody_format() throws Throwable {
+        when(servletRequest.getContentType()).thenReturn(DummyFormatCodec.MEDIA_TYPE);
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream("Peter;666"));
+        DummyData data = request.fromBody(DummyData.class).get();
+        assertEquals("Peter", data.name);
+        assertEquals(666, data.id);
+    }
+
+    @Test
+    public void fromBody_formatBodyTooLarge() throws Throwable {
+        when(servletRequest.getContentType()).thenReturn(DummyFormatCodec.MEDIA_TYPE);
+        when(servletRequest.getContentLengthLong()).thenReturn(-1L);
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream("Peter-Peter-Peter;666"));
+        assertPayloadTooLarge(new Request(servletRequest, 8, JsonCodecs.defaultCodec()).fromBody(DummyData.class));
+    }
+
+    @Test
+    public void responseFormat() {
+        when(servletRequest.getHeader("Accept")).thenReturn("application/x-dummy");
+        assertSome(DummyFormatCodec.MEDIA_TYPE, request.responseFormat().map(FormatCodec::mediaType));
+    }
+
+    @Test
+    public void responseFormat_json() {
+        assertNone(request.responseFormat());
+    }
+
+    @Test
+    public void fromJson_contentLengthTooLarge() throws Throwable {
+        when(servletRequest.getContentLengthLong()).thenReturn(1024L);
+        assertPayloadTooLarge(new Request(servletRequest, 16, JsonCodecs.defaultCodec()).fromJson(DummyData.class));
+    }
+
+    @Test
+    public void fromJson_bodyTooLarge() throws Throwable {
+        when(servletRequest.getContentLengthLong()).thenReturn(-1L);
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream("{\"name\":\"Peter\", \"id\":666}"));
+        assertPayloadTooLarge(new Request(servletRequest, 16, JsonCodecs.defaultCodec()).fromJson(DummyData.class));
+    }
+
+    @Test
+    public void fromJson_bodyWithinLimit() throws Throwable {
+        String json = "{\"name\":\"Peter\", \"id\":666}";
+        when(servletRequest.getContentLengthLong()).thenReturn(-1L);
+        when(servletRequest.getInputStream()).thenReturn(new MockServletInputStream(json));
+        assertSuccess(new Request(servletRequest, json.length(), JsonCodecs.defaultCodec()).fromJson(DummyData.class));
+    }
+
+    private void assertPayloadTooLarge(Try<?> result) {
+        assertFailure(result);
+        Throwable failure = result.failed().orNull();
+        assertTrue(failure instanceof JSONServletException);
+        assertEquals(413, ((JSONServletException) failure).response.responseCode);
+    }
+
+    private static String jsonArray(int size) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 1; i <= size; i++) {
+            json.append(i > 1 ? "," : "").append("{\"name\":\"n").append(i).append("\", \"id\":").append(i).append('}');
+        }
+        return json.append(']').toString();
+    }
 }
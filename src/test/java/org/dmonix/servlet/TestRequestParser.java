@@ -21,6 +21,7 @@ import org.mockito.Mockito;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.stream.Stream;
 
 import static org.mockito.Mockito.when;
 
@@ -92,4 +93,12 @@ public class TestRequestParser extends BaseAssert implements RequestParser  {
         assertFailure(result);
     }
 
+    @Test
+    public void streamJsonArray() throws Throwable {
+        when(req.getInputStream()).thenReturn(new MockServletInputStream("[{\"name\":\"Peter\", \"id\":666}]"));
+
+        Try<Stream<DummyData>> result = streamJsonArray(req, DummyData.class);
+        assertSuccess(result);
+        assertEquals(666, result.orNull().findFirst().get().id);
+    }
 }
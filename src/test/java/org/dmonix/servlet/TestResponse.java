@@ -16,10 +16,19 @@
 package org.dmonix.servlet;
 
 import org.junit.Test;
+import org.mockito.Mockito;
 
 import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
+import static javascalautils.OptionCompanion.None;
 import static javascalautils.OptionCompanion.Some;
+import static org.mockito.Mockito.verify;
 
 /**
  * Test the class {@link Response}
@@ -87,4 +96,164 @@ public class TestResponse extends BaseAssert {
         Cookie stored = response.cookies().iterator().next();
         assertEquals(expected.getName(), stored.getName());
     }
+
+    @Test
+    public void headers_replaced() {
+        response.addHeader("Token", "first");
+        response.addHeader("Other", "value");
+        response.addHeader("Token", "second");
+        assertEquals(2, response.headers().size());
+        assertEquals("second", response.header("Token"));
+        assertNull(response.header("Missing"));
+    }
+
+    @Test
+    public void headers_many() {
+        for (int i = 0; i < 20; i++) {
+            response.addHeader("X-" + i, String.valueOf(i));
+        }
+        assertEquals(20, response.headers().size());
+        assertEquals("19", response.header("X-19"));
+    }
+
+    @Test
+    public void header_ignoresCase() {
+        response.addHeader("ETag", "\"v1\"");
+        assertEquals("\"v1\"", response.header("etag"));
+        assertEquals("\"v1\"", response.header("ETAG"));
+    }
+
+    @Test
+    public void headers_cachedView() {
+        Map<String, String> headers = response.headers();
+        assertSame(headers, response.headers());
+        response.addHeader("Token", "first");
+        response.addHeader("Other", "value");
+        assertEquals(2, headers.size());
+        assertEquals("first", headers.get("Token"));
+        assertTrue(headers.containsKey("Other"));
+        assertFalse(headers.containsKey("Missing"));
+        Iterator<Map.Entry<String, String>> entries = headers.entrySet().iterator();
+        assertEquals("Token", entries.next().getKey());
+        assertEquals("Other", entries.next().getKey());
+        assertFalse(entries.hasNext());
+    }
+
+    @Test
+    public void cookies_cachedView() {
+        Set<Cookie> cookies = response.cookies();
+        assertSame(cookies, response.cookies());
+        Cookie cookie = new Cookie("test", "someval");
+        response.addCookie(cookie);
+        assertEquals(1, cookies.size());
+        assertTrue(cookies.contains(cookie));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void headers_entryUnmodifiable() {
+        response.addHeader("Token", "wohoo");
+        response.headers().entrySet().iterator().next().setValue("other");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cookies_unmodifiable() {
+        response.cookies().add(new Cookie("test", "someval"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void headers_unmodifiable() {
+        response.addHeader("Token", "wohoo");
+        response.headers().put("Other", "value");
+    }
+
+    @Test
+    public void cookies_sameCookieOnce() {
+        Cookie cookie = new Cookie("test", "someval");
+        response.addCookie(cookie);
+        response.addCookie(cookie);
+        response.addCookie(new Cookie("test2", "someval"));
+        response.addCookie(new Cookie("test3", "someval"));
+        assertEquals(3, response.cookies().size());
+    }
+
+    @Test
+    public void writeHeadersAndCookies() {
+        HttpServletResponse resp = Mockito.mock(HttpServletResponse.class);
+        Cookie cookie = new Cookie("test", "someval");
+        response.addHeader("Token", "wohoo");
+        response.addCookie(cookie);
+        response.writeHeadersAndCookies(resp);
+        verify(resp).setHeader("Token", "wohoo");
+        verify(resp).addCookie(cookie);
+    }
+
+    @Test
+    public void builder() {
+        Cookie cookie = new Cookie("test", "someval");
+        ResponseTemplate built = Response.builder()
+                .responseCode(201)
+                .message("{\"id\":1}")
+                .mediaType("application/json")
+                .charEncoding("UTF-8")
+                .header("Location", "/items/1")
+                .cookie(cookie)
+                .build();
+        cookie.setValue("changed");
+
+        assertEquals(201, built.responseCode);
+        assertEquals("{\"id\":1}", built.message);
+        assertSome("application/json", built.mediaType);
+        assertSome("UTF-8", built.charEncoding);
+        assertEquals("/items/1", built.header("Location"));
+        assertEquals("someval", built.cookies().iterator().next().getValue());
+    }
+
+    @Test
+    public void builder_defaults() {
+        ResponseTemplate built = Response.builder().build();
+        assertEquals(200, built.responseCode);
+        assertEquals("", built.message);
+        assertNone(built.mediaType);
+        assertSome("UTF-8", built.charEncoding);
+        assertTrue(built.headers().isEmpty());
+        assertTrue(built.cookies().isEmpty());
+    }
+
+    @Test
+    public void writeHeadersAndCookies_vary() {
+        HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(servletResponse.containsHeader("Vary")).thenReturn(true);
+        Response varying = new Response(200, "");
+        varying.addHeader("Vary", "Accept");
+        varying.addHeader("ETag", "\"1\"");
+        varying.writeHeadersAndCookies(servletResponse);
+        verify(servletResponse).addHeader("Vary", "Accept");
+        verify(servletResponse).setHeader("ETag", "\"1\"");
+    }
+
+    @Test
+    public void utf8Length() {
+        for (String string : new String[]{"", "peter", "n\u00e4rg", "\u20ac", "\ud83d\ude00", "a\ud83dz"}) {
+            assertEquals(string, string.getBytes(StandardCharsets.UTF_8).length, Response.utf8Length(string));
+        }
+    }
+
+    @Test
+    public void contentLength() throws IOException {
+        assertEquals(5, new Response(200, "n\u00e4rg").contentLength());
+        assertEquals(4, new Response(200, "n\u00e4rg", None(), Some("ISO-8859-1")).contentLength());
+        assertEquals(-1, new Response(200, "peter", None(), None()).contentLength());
+    }
+
+    @Test
+    public void contentLength_streamedObject() throws IOException {
+        DummyData data = new DummyData("p\u00e4ter", 69);
+        StreamedObjectResponse response = new StreamedObjectResponse(data, "UTF-8", JsonCodecs.defaultCodec());
+        assertEquals(JsonCodecs.defaultCodec().toJson(data).getBytes(StandardCharsets.UTF_8).length, response.contentLength());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void builder_immutable() {
+        Response.builder().build().addHeader("Token", "wohoo");
+    }
 }
@@ -19,11 +19,21 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static javascalautils.OptionCompanion.Some;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -69,6 +79,181 @@ public class TestResponseBuilder extends BaseAssert implements ResponseBuilder {
         assertFalse(response.message.isEmpty());
     }
 
+    @Test
+    public void streamedObjectResponse() {
+        Response response = StreamedObjectResponse(new DummyData("peter", 69));
+        assertEquals(200, response.responseCode);
+        assertSome("UTF-8", response.charEncoding);
+        assertSome("application/json;charset=UTF-8", response.mediaType);
+        assertTrue(response.message.isEmpty());
+    }
+
+    @Test
+    public void writeResponse_streamedObject() throws IOException {
+        HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream outputStream = new MockServletOutputStream();
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+
+        writeResponse(servletResponse, StreamedObjectResponse(new DummyData("peter", 69), "ISO-8859-1"));
+
+        verify(servletResponse).setStatus(200);
+        verify(servletResponse).setContentType("application/json;charset=ISO-8859-1");
+        DummyData data = gson.fromJson(outputStream.asString(), DummyData.class);
+        assertEquals("peter", data.name);
+        assertEquals(69, data.id);
+    }
+
+    @Test
+    public void negotiatedResponse_json() {
+        Request request = new Request(Mockito.mock(HttpServletRequest.class));
+        Response response = NegotiatedResponse(request, new DummyData("peter", 69));
+        assertSome("application/json;charset=UTF-8", response.mediaType);
+        assertEquals("peter", gson.fromJson(response.message, DummyData.class).name);
+        assertEquals("Accept", response.headers().get("Vary"));
+    }
+
+    @Test
+    public void negotiatedResponse_format() throws IOException {
+        HttpServletRequest servletRequest = Mockito.mock(HttpServletRequest.class);
+        when(servletRequest.getHeader("Accept")).thenReturn("application/json;q=0.9, application/x-dummy");
+        Response response = NegotiatedResponse(new Request(servletRequest), new DummyData("peter", 69));
+        assertSome(DummyFormatCodec.MEDIA_TYPE, response.mediaType);
+        assertEquals("Accept", response.headers().get("Vary"));
+
+        HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream outputStream = new MockServletOutputStream();
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+        writeResponse(servletResponse, response);
+        verify(servletResponse).setContentType(DummyFormatCodec.MEDIA_TYPE);
+        assertEquals("peter;69", outputStream.asString());
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void negotiatedResponse_formatFailure() {
+        HttpServletRequest servletRequest = Mockito.mock(HttpServletRequest.class);
+        when(servletRequest.getHeader("Accept")).thenReturn("application/x-dummy");
+        NegotiatedResponse(new Request(servletRequest), "not dummy data");
+    }
+
+    @Test
+    public void writeResponse_bytes() throws IOException {
+        HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream outputStream = new MockServletOutputStream();
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+        byte[] body = "{\"name\":\"p\u00e4ter\"}".getBytes(StandardCharsets.UTF_8);
+
+        Response response = BytesResponse(body, "application/json;charset=UTF-8");
+        assertTrue(response.message.isEmpty());
+        assertNone(response.charEncoding);
+        writeResponse(servletResponse, response);
+
+        verify(servletResponse).setStatus(200);
+        verify(servletResponse).setContentType("application/json;charset=UTF-8");
+        verify(servletResponse).setContentLength(body.length);
+        verify(servletResponse, never()).getWriter();
+        assertEquals("p\u00e4ter", gson.fromJson(outputStream.asString(), DummyData.class).name);
+    }
+
+    @Test
+    public void writeResponse_streamedNull() throws IOException {
+        HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream outputStream = new MockServletOutputStream();
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+
+        writeResponse(servletResponse, StreamedObjectResponse(null));
+        assertEquals("null", outputStream.asString());
+    }
+
+    @Test
+    public void streamingResponse() {
+        Response response = StreamingResponse(Stream.of(new DummyData("peter", 69)));
+        assertEquals(200, response.responseCode);
+        assertSome("UTF-8", response.charEncoding);
+        assertSome("application/x-ndjson", response.mediaType);
+        assertFalse(response.isBuffered());
+    }
+
+    @Test
+    public void writeResponse_streamingStream() throws IOException {
+        HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream outputStream = new MockServletOutputStream();
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+        AtomicBoolean closed = new AtomicBoolean();
+
+        Stream<DummyData> stream = IntStream.range(0, 3).mapToObj(i -> new DummyData("peter-" + i, i)).onClose(() -> closed.set(true));
+        writeResponse(servletResponse, StreamingResponse(stream));
+
+        verify(servletResponse).setContentType("application/x-ndjson");
+        String[] lines = outputStream.asString().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("peter-2", gson.fromJson(lines[2], DummyData.class).name);
+        assertTrue(outputStream.asString().endsWith("\n"));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void writeResponse_streamingIterator() throws IOException {
+        HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream outputStream = new MockServletOutputStream();
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+
+        writeResponse(servletResponse, StreamingResponse(Arrays.asList(new DummyData("peter", 1), null).iterator()));
+        assertEquals("{\"name\":\"peter\",\"id\":1}\nnull\n", outputStream.asString());
+    }
+
+    @Test
+    public void writeResponse_streamingEmpty() throws IOException {
+        HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream outputStream = new MockServletOutputStream();
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+
+        writeResponse(servletResponse, StreamingResponse(Collections.emptyIterator()));
+        assertEquals("", outputStream.asString());
+    }
+
+    @Test
+    public void writeResponse_streamingFlushesFirstElement() throws IOException {
+        HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream outputStream = new MockServletOutputStream();
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+
+        Iterator<DummyData> elements = new Iterator<DummyData>() {
+            private int count;
+
+            @Override
+            public boolean hasNext() {
+                return count < 2;
+            }
+
+            @Override
+            public DummyData next() {
+                //the first element must have reached the client before the second is produced
+                assertEquals(count > 0, outputStream.asString().contains("peter-0"));
+                return new DummyData("peter-" + count, count++);
+            }
+        };
+        writeResponse(servletResponse, StreamingResponse(elements));
+        assertTrue(outputStream.asString().contains("peter-1"));
+    }
+
+    @Test
+    public void writeResponse_streamingClosesOnFailure() throws IOException {
+        HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream outputStream = new MockServletOutputStream();
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+        AtomicBoolean closed = new AtomicBoolean();
+
+        Stream<DummyData> stream = Stream.<DummyData>generate(() -> {
+            throw new IllegalStateException("Failed to read data");
+        }).onClose(() -> closed.set(true));
+        try {
+            writeResponse(servletResponse, StreamingResponse(stream));
+            fail("Expected failure");
+        } catch (IOException | IllegalStateException ex) {
+            assertTrue(closed.get());
+        }
+    }
+
     @Test
     public void errorResponse() {
         Response response = ErrorResponse(new Exception("Error, terror!"));
@@ -0,0 +1,107 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link ResponseTemplate}
+ * @author Peter Nerg
+ */
+public class TestResponseTemplate extends BaseAssert implements ResponseBuilder {
+
+    private final ResponseTemplate template = ResponseTemplate.of(418, "I'm a teapot");
+
+    @Test
+    public void of() {
+        assertEquals(418, template.responseCode);
+        assertEquals("I'm a teapot", template.message);
+        assertSome("UTF-8", template.charEncoding);
+        assertTrue(template.headers().isEmpty());
+    }
+
+    @Test
+    public void withHeader() {
+        ResponseTemplate withHeader = template.withHeader("Retry-After", "1");
+        assertEquals("1", withHeader.headers().get("Retry-After"));
+        assertEquals(418, withHeader.responseCode);
+        assertTrue(template.headers().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void addHeader() {
+        template.addHeader("Token", "value");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void addCookie() {
+        template.addCookie(new Cookie("test", "value"));
+    }
+
+    @Test
+    public void copyOf() {
+        Response response = ObjectResponse(new DummyData("peter", 69), "ISO-8859-1");
+        response.addHeader("X-Test", "value");
+        response.addCookie(new Cookie("test", "value"));
+        ResponseTemplate copy = ResponseTemplate.copyOf(response);
+        response.addHeader("X-Other", "value");
+
+        assertEquals(200, copy.responseCode);
+        assertEquals(response.message, copy.message);
+        assertEquals(response.mediaType, copy.mediaType);
+        assertSome("ISO-8859-1", copy.charEncoding);
+        assertEquals(1, copy.headers().size());
+        assertEquals("value", copy.cookies().iterator().next().getValue());
+        assertSame(copy, ResponseTemplate.copyOf(copy));
+    }
+
+    @Test
+    public void sharedTemplates() {
+        assertSame(ResponseTemplate.MISSING_PATH, ((JSONServletException) JSONServletException.MissingPathFailure().failed().orNull()).response);
+    }
+
+    @Test
+    public void builderErrorsAreMutable() {
+        assertNotSame(ErrorResponseUnsupportedOperation(), ErrorResponseUnsupportedOperation());
+        assertFalse(ErrorResponseMissingPath() instanceof ResponseTemplate);
+        Response response = ErrorResponseUnsupportedOperation();
+        response.addHeader("Allow", "GET");
+        assertEquals(405, response.responseCode);
+        assertEquals(1, response.headers().size());
+    }
+
+    @Test
+    public void writeResponse() throws IOException {
+        HttpServletResponse servletResponse = Mockito.mock(HttpServletResponse.class);
+        MockServletOutputStream outputStream = new MockServletOutputStream();
+        when(servletResponse.getOutputStream()).thenReturn(outputStream);
+
+        writeResponse(servletResponse, template.withHeader("Token", "some-value"));
+
+        verify(servletResponse).setStatus(418);
+        verify(servletResponse).setHeader("Token", "some-value");
+        verify(servletResponse).setContentLength(12);
+        assertEquals("I'm a teapot", outputStream.asString());
+    }
+}
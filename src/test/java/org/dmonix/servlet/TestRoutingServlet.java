@@ -0,0 +1,122 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static javascalautils.TryCompanion.Success;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link RoutingServlet}
+ * @author Peter Nerg
+ */
+public class TestRoutingServlet extends BaseAssert {
+
+    /**
+     * Servlet routing on users and their orders.
+     */
+    private static final class UserServlet extends RoutingServlet {
+        private UserServlet() {
+            onGet("/users/{id}", request -> Success(ObjectResponse(new DummyData(request.pathParam("id").orNull(), 1))));
+            onDelete("/users/{id}", request -> Success(AcceptedResponse()));
+            onGet("/users/{id}/orders/{oid}", request -> Success(ObjectResponse(new DummyData(request.pathParam("id").orNull() + ":" + request.pathParam("oid").orNull(), 2))));
+            onPost("/users", request -> {
+                throw new IllegalStateException("Failed to create user");
+            });
+        }
+    }
+
+    private final HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+    private final HttpServletResponse resp = Mockito.mock(HttpServletResponse.class);
+    private final MockServletOutputStream out = new MockServletOutputStream();
+    private final UserServlet servlet = new UserServlet();
+
+    @Before
+    public void before() throws IOException {
+        when(resp.getOutputStream()).thenReturn(out);
+        when(resp.getWriter()).thenReturn(new PrintWriter(out, true));
+        when(req.getContentLengthLong()).thenReturn(-1L);
+    }
+
+    @Test
+    public void get() throws Exception {
+        Response response = servlet.getWithTry(request("/users/42")).orNull();
+        assertEquals(200, response.responseCode);
+        assertEquals("{\"name\":\"42\",\"id\":1}", response.message);
+    }
+
+    @Test
+    public void get_nested() throws Exception {
+        Response response = servlet.getWithTry(request("/users/42/orders/7")).orNull();
+        assertEquals("{\"name\":\"42:7\",\"id\":2}", response.message);
+    }
+
+    @Test
+    public void get_servletPath() throws Exception {
+        when(req.getServletPath()).thenReturn("/users/42");
+        Response response = servlet.getWithTry(new Request(req)).orNull();
+        assertEquals(200, response.responseCode);
+    }
+
+    @Test
+    public void notFound() throws Exception {
+        assertEquals(404, servlet.getWithTry(request("/orders/7")).orNull().responseCode);
+    }
+
+    @Test
+    public void methodNotAllowed() throws Exception {
+        Response response = servlet.putWithTry(request("/users/42")).orNull();
+        assertEquals(405, response.responseCode);
+        assertEquals("OPTIONS, TRACE, GET, HEAD, DELETE", response.headers().get("Allow"));
+    }
+
+    @Test
+    public void failure() {
+        assertFailure(servlet.postWithTry(request("/users")));
+    }
+
+    @Test
+    public void service() throws Exception {
+        when(req.getMethod()).thenReturn("DELETE");
+        when(req.getPathInfo()).thenReturn("/users/42");
+        servlet.service(req, resp);
+        verify(resp).setStatus(202);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateRoute() {
+        new RoutingServlet() {
+            {
+                onGet("/users/{id}", request -> Success(AcceptedResponse()));
+                onGet("/users/{id}", request -> Success(AcceptedResponse()));
+            }
+        };
+    }
+
+    private Request request(String path) {
+        when(req.getPathInfo()).thenReturn(path);
+        return new Request(req);
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+
+/**
+ * Test the classes {@link ServletMetrics} and {@link RequestTimer}
+ * @author Peter Nerg
+ */
+public class TestServletMetrics extends BaseAssert {
+
+    @Test
+    public void register_sameName() {
+        ServletMetrics metrics = ServletMetrics.register("TestServletMetrics.sameName");
+        assertSame(metrics, ServletMetrics.register("TestServletMetrics.sameName"));
+        assertTrue(ServletMetrics.registered().contains(metrics));
+    }
+
+    @Test
+    public void statusClass() {
+        assertEquals(0, ServletMetrics.statusClass(0));
+        assertEquals(0, ServletMetrics.statusClass(100));
+        assertEquals(1, ServletMetrics.statusClass(200));
+        assertEquals(3, ServletMetrics.statusClass(404));
+        assertEquals(4, ServletMetrics.statusClass(503));
+        assertEquals(4, ServletMetrics.statusClass(999));
+    }
+
+    @Test
+    public void record() {
+        ServletMetrics metrics = ServletMetrics.register("TestServletMetrics.record");
+        metrics.record(HttpMethod.POST, 201, 4000, 1000, 2000, 1000);
+
+        assertEquals(1, metrics.total(HttpMethod.POST, 1).count);
+        assertEquals(4000, metrics.total(HttpMethod.POST, 1).sumNanos);
+        assertEquals(1000, metrics.parse(HttpMethod.POST).sumNanos);
+        assertEquals(2000, metrics.handler(HttpMethod.POST).sumNanos);
+        assertEquals(1000, metrics.write(HttpMethod.POST).sumNanos);
+        assertEquals(0, metrics.total(HttpMethod.GET, 1).count);
+        assertEquals(0, metrics.total(HttpMethod.POST, 4).count);
+    }
+
+    @Test
+    public void timer() {
+        ServletMetrics metrics = ServletMetrics.register("TestServletMetrics.timer");
+        RequestTimer timer = metrics.start(HttpMethod.GET);
+        timer.parsed(timer.now());
+        timer.handled();
+        timer.completed(200);
+
+        LatencyHistogram.Snapshot total = metrics.total(HttpMethod.GET, 1);
+        assertEquals(1, total.count);
+        assertTrue(total.sumNanos >= metrics.handler(HttpMethod.GET).sumNanos + metrics.write(HttpMethod.GET).sumNanos);
+        assertEquals(1, metrics.parse(HttpMethod.GET).count);
+    }
+
+    @Test
+    public void timer_notHandled() {
+        ServletMetrics metrics = ServletMetrics.register("TestServletMetrics.notHandled");
+        metrics.start(HttpMethod.PUT).completed(405);
+
+        assertEquals(1, metrics.total(HttpMethod.PUT, 3).count);
+        assertEquals(0, metrics.handler(HttpMethod.PUT).sumNanos);
+    }
+
+    @Test
+    public void timer_none() {
+        assertEquals(0, RequestTimer.NONE.now());
+        RequestTimer.NONE.parsed(0);
+        RequestTimer.NONE.handled();
+        RequestTimer.NONE.completed(200);
+    }
+}
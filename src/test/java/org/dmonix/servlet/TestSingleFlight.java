@@ -0,0 +1,231 @@
+/**
+ * Copyright 2016 Peter Nerg
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dmonix.servlet;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletConfig;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the class {@link SingleFlight}
+ * @author Peter Nerg
+ */
+public class TestSingleFlight extends BaseAssert implements ResponseBuilder {
+
+    private final SingleFlight singleFlight = new SingleFlight(Runnable::run);
+    private final AtomicInteger invocations = new AtomicInteger();
+    private final CompletableFuture<Response> pending = new CompletableFuture<>();
+
+    /**
+     * Servlet with a <tt>GET</tt> handler completing once the test says so.
+     */
+    private final class PendingServlet extends JSONServlet {
+        @Override
+        protected CompletionStage<Response> getAsync(Request request) {
+            invocations.incrementAndGet();
+            return pending;
+        }
+    }
+
+    @Test
+    public void execute_sharesResponse() {
+        CompletableFuture<Response> leader = execute("/items/1", () -> pending);
+        CompletableFuture<Response> follower = execute("/items/1", () -> pending);
+        assertEquals(1, invocations.get());
+        assertEquals(1, singleFlight.inFlight());
+
+        Response response = ObjectResponse(new DummyData("peter", 69));
+        response.addHeader("X-Test", "value");
+        pending.complete(response);
+
+        assertSame(response, leader.join());
+        Response shared = follower.join();
+        assertTrue(shared instanceof ResponseTemplate);
+        assertEquals(response.message, shared.message);
+        assertEquals("value", shared.headers().get("X-Test"));
+        assertEquals(response.mediaType, shared.mediaType);
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    public void execute_differentKeys() {
+        execute("/items/1", () -> pending);
+        execute("/items/2", () -> pending);
+        assertEquals(2, invocations.get());
+    }
+
+    @Test
+    public void execute_keyReleased() {
+        execute("/items/1", () -> CompletableFuture.completedFuture(EmptyResponse(200)));
+        execute("/items/1", () -> CompletableFuture.completedFuture(EmptyResponse(200)));
+        assertEquals(2, invocations.get());
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    public void execute_failure() {
+        CompletableFuture<Response> leader = execute("/items/1", () -> pending);
+        CompletableFuture<Response> follower = execute("/items/1", () -> pending);
+        pending.completeExceptionally(new IllegalStateException("Failed"));
+
+        assertTrue(leader.isCompletedExceptionally());
+        assertTrue(follower.isCompletedExceptionally());
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    public void execute_handlerThrows() {
+        try {
+            execute("/items/1", () -> {
+                throw new IllegalStateException("Failed");
+            });
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException ex) {
+            assertEquals(0, singleFlight.inFlight());
+        }
+    }
+
+    @Test
+    public void execute_notBuffered() {
+        CompletableFuture<Response> follower = new CompletableFuture<>();
+        execute("/items/1", () -> pending);
+        CompletableFuture<Response> followerResult = execute("/items/1", () -> follower);
+        Response streamed = StreamedObjectResponse(new DummyData("peter", 69));
+        pending.complete(streamed);
+
+        //the follower invokes the handler itself as the streamed response can't be shared
+        assertEquals(2, invocations.get());
+        assertFalse(followerResult.isDone());
+        follower.complete(streamed);
+        assertSame(streamed, followerResult.join());
+    }
+
+    @Test(timeout = 5000)
+    public void execute_notBufferedFollowersRunConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            SingleFlight singleFlight = new SingleFlight(executor);
+            singleFlight.execute("/items/1", () -> pending);
+            //each follower waits for all followers, i.e. they only complete if invoked concurrently
+            CountDownLatch followers = new CountDownLatch(3);
+            Thread leaderThread = Thread.currentThread();
+            List<CompletableFuture<Response>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(singleFlight.execute("/items/1", () -> {
+                    followers.countDown();
+                    try {
+                        assertTrue(followers.await(4, TimeUnit.SECONDS));
+                    } catch (InterruptedException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    assertNotSame(leaderThread, Thread.currentThread());
+                    return CompletableFuture.completedFuture(EmptyResponse(200));
+                }).toCompletableFuture());
+            }
+            pending.complete(StreamedObjectResponse(new DummyData("peter", 69)));
+
+            for (CompletableFuture<Response> result : results) {
+                assertEquals(200, result.get().responseCode);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void servlet_coalescesGet() throws Exception {
+        ServletConfig config = Mockito.mock(ServletConfig.class);
+        when(config.getInitParameter(JSONServlet.PARAM_COALESCE_GET)).thenReturn("true");
+        JSONServlet servlet = new PendingServlet();
+        servlet.init(config);
+
+        MockServletOutputStream leaderOut = new MockServletOutputStream();
+        MockServletOutputStream followerOut = new MockServletOutputStream();
+        AsyncContext leader = get(servlet, leaderOut);
+        AsyncContext follower = get(servlet, followerOut);
+        assertEquals(1, invocations.get());
+
+        pending.complete(ObjectResponse(new DummyData("peter", 69)));
+
+        verify(leader).complete();
+        verify(follower).complete();
+        assertEquals("{\"name\":\"peter\",\"id\":69}", followerOut.asString());
+    }
+
+    @Test
+    public void servlet_coalescesPerAccept() throws Exception {
+        ServletConfig config = Mockito.mock(ServletConfig.class);
+        when(config.getInitParameter(JSONServlet.PARAM_COALESCE_GET)).thenReturn("true");
+        JSONServlet servlet = new PendingServlet();
+        servlet.init(config);
+
+        //format codecs are registered for the tests, thus requests accepting different formats are not coalesced
+        get(servlet, new MockServletOutputStream(), "application/json");
+        get(servlet, new MockServletOutputStream(), DummyFormatCodec.MEDIA_TYPE);
+        get(servlet, new MockServletOutputStream(), DummyFormatCodec.MEDIA_TYPE);
+        assertEquals(2, invocations.get());
+        pending.complete(ObjectResponse(new DummyData("peter", 69)));
+    }
+
+    private CompletableFuture<Response> execute(String key, Supplier<CompletionStage<Response>> handler) {
+        return singleFlight.execute(key, () -> {
+            invocations.incrementAndGet();
+            return handler.get();
+        }).toCompletableFuture();
+    }
+
+    private static AsyncContext get(JSONServlet servlet, MockServletOutputStream out) throws Exception {
+        return get(servlet, out, null);
+    }
+
+    private static AsyncContext get(JSONServlet servlet, MockServletOutputStream out, String accept) throws Exception {
+        HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+        when(req.getHeader("Accept")).thenReturn(accept);
+        HttpServletResponse resp = Mockito.mock(HttpServletResponse.class);
+        AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+        when(req.getMethod()).thenReturn("GET");
+        when(req.getRequestURI()).thenReturn("/items/1");
+        when(req.getContentLengthLong()).thenReturn(-1L);
+        when(req.isAsyncSupported()).thenReturn(true);
+        when(req.startAsync()).thenReturn(asyncContext);
+        when(asyncContext.getRequest()).thenReturn(req);
+        when(asyncContext.getResponse()).thenReturn(resp);
+        when(resp.getOutputStream()).thenReturn(out);
+        when(resp.getWriter()).thenReturn(new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), true));
+        servlet.service(req, resp);
+        return asyncContext;
+    }
+}
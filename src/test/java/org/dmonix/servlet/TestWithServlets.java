@@ -16,6 +16,8 @@
 package org.dmonix.servlet;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
 import org.dmonix.servlet.DummyServlets.*;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
@@ -25,10 +27,21 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.CoreMatchers.*;
 
@@ -55,6 +68,37 @@ public class TestWithServlets extends BaseAssert {
         context.addServlet(new ServletHolder("test", GetOnlyServlet.class),"/");
         context.addServlet(new ServletHolder("test2", ServletWithAllOps.class),"/allops");
         context.addServlet(new ServletHolder("test3", ServletWithAllTryOps.class),"/allopstry");
+        ServletHolder asyncHolder = new ServletHolder("test4", AsyncServlet.class);
+        asyncHolder.setAsyncSupported(true);
+        context.addServlet(asyncHolder,"/async");
+        ServletHolder offloadHolder = new ServletHolder("test5", ServletWithAllOps.class);
+        offloadHolder.setAsyncSupported(true);
+        offloadHolder.setInitParameter(JSONServlet.PARAM_OFFLOAD_HANDLERS, "true");
+        context.addServlet(offloadHolder,"/offload");
+        ServletHolder etagHolder = new ServletHolder("test6", GetOnlyServlet.class);
+        etagHolder.setInitParameter(JSONServlet.PARAM_ETAG, "true");
+        context.addServlet(etagHolder,"/etag");
+        ServletHolder limitHolder = new ServletHolder("test7", ParsingServlet.class);
+        limitHolder.setInitParameter(JSONServlet.PARAM_MAX_BODY_SIZE + ".POST", "64");
+        context.addServlet(limitHolder,"/limited");
+        ServletHolder meteredHolder = new ServletHolder("metered", ParsingServlet.class);
+        meteredHolder.setInitParameter(JSONServlet.PARAM_METRICS, "true");
+        context.addServlet(meteredHolder,"/metered");
+        context.addServlet(new ServletHolder("metrics", MetricsServlet.class),"/metrics");
+        ServletHolder compressedHolder = new ServletHolder("test8", ListServlet.class);
+        compressedHolder.setInitParameter(JSONServlet.PARAM_COMPRESSION, "true");
+        context.addServlet(compressedHolder,"/compressed");
+        context.addServlet(new ServletHolder("test9", StreamingServlet.class),"/ndjson");
+        ServletHolder eventHolder = new ServletHolder("test10", EventServlet.class);
+        eventHolder.setAsyncSupported(true);
+        context.addServlet(eventHolder,"/events");
+        ServletHolder itemsHolder = new ServletHolder("test11", ServletWithAllOps.class);
+        itemsHolder.setInitOrder(0);
+        context.addServlet(itemsHolder,"/items/*");
+        context.addFilter(GuardFilter.class, "/items/guarded/*", EnumSet.of(DispatcherType.REQUEST));
+        ServletHolder batchHolder = new ServletHolder("batch", BatchServlet.class);
+        batchHolder.setAsyncSupported(true);
+        context.addServlet(batchHolder,"/batch");
         server.setHandler(context);
 
         server.start();
@@ -180,6 +224,214 @@ public class TestWithServlets extends BaseAssert {
         assertEquals(202, http.getResponseCode());
     }
 
+    @Test
+    public void getAsync() throws IOException {
+        Gson gson = new Gson();
+        HttpURLConnection http = connect("GET", "/async");
+        assertEquals(200, http.getResponseCode());
+        DummyData data = gson.fromJson(new InputStreamReader(http.getInputStream()), DummyData.class);
+        assertEquals("peter", data.name);
+    }
+
+    @Test
+    public void postAsync_failure() throws IOException {
+        HttpURLConnection http = connect("POST", "/async");
+        assertEquals(500, http.getResponseCode());
+    }
+
+    @Test
+    public void putAsync_notSupported() throws IOException {
+        HttpURLConnection http = connect("PUT", "/async");
+        assertEquals(405, http.getResponseCode());
+    }
+
+    @Test
+    public void get_offloaded() throws IOException {
+        HttpURLConnection http = connect("GET", "/offload");
+        assertEquals(200, http.getResponseCode());
+    }
+
+    @Test
+    public void put_offloaded() throws IOException {
+        HttpURLConnection http = connect("PUT", "/offload");
+        assertEquals(202, http.getResponseCode());
+    }
+
+    @Test
+    public void get_withETag() throws IOException {
+        HttpURLConnection http = connect("GET", "/etag");
+        assertEquals(200, http.getResponseCode());
+        String etag = http.getHeaderField("ETag");
+        assertNotNull(etag);
+
+        HttpURLConnection conditional = (HttpURLConnection) serverURI.resolve("/etag").toURL().openConnection();
+        conditional.setRequestProperty("If-None-Match", etag);
+        assertEquals(304, conditional.getResponseCode());
+        assertEquals(etag, conditional.getHeaderField("ETag"));
+    }
+
+    @Test
+    public void post_withinBodyLimit() throws IOException {
+        HttpURLConnection http = post("/limited", "{\"name\":\"Peter\", \"id\":666}");
+        assertEquals(200, http.getResponseCode());
+    }
+
+    @Test
+    public void post_exceedingBodyLimit() throws IOException {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            name.append("Peter");
+        }
+        HttpURLConnection http = post("/limited", "{\"name\":\"" + name + "\", \"id\":666}");
+        assertEquals(413, http.getResponseCode());
+    }
+
+    @Test
+    public void metrics() throws IOException {
+        assertEquals(200, post("/metered", "{\"name\":\"Peter\", \"id\":666}").getResponseCode());
+        assertEquals(405, connect("GET", "/metered").getResponseCode());
+
+        //the response may reach the client before the server side has recorded the request
+        String getCount = "json_servlet_request_duration_seconds_count{servlet=\"metered\",method=\"GET\",status=\"4xx\"} 1";
+        String postCount = "json_servlet_request_duration_seconds_count{servlet=\"metered\",method=\"POST\",status=\"2xx\"} 1";
+        String metrics = "";
+        for (int i = 0; i < 50 && !(metrics.contains(getCount) && metrics.contains(postCount)); i++) {
+            HttpURLConnection http = connect("GET", "/metrics");
+            assertEquals(200, http.getResponseCode());
+            metrics = read(http);
+        }
+        assertThat(metrics, containsString(getCount));
+        assertThat(metrics, containsString(postCount));
+        assertThat(metrics, containsString("json_servlet_phase_duration_seconds_count{servlet=\"metered\",method=\"POST\",phase=\"parse\"} 1"));
+    }
+
+    @Test
+    public void get_compressed() throws IOException {
+        HttpURLConnection http = (HttpURLConnection) serverURI.resolve("/compressed").toURL().openConnection();
+        http.setRequestProperty("Accept-Encoding", "gzip");
+        assertEquals(200, http.getResponseCode());
+        assertEquals("gzip", http.getHeaderField("Content-Encoding"));
+        assertEquals("Accept-Encoding", http.getHeaderField("Vary"));
+        DummyData[] data = new Gson().fromJson(new InputStreamReader(new GZIPInputStream(http.getInputStream()), StandardCharsets.UTF_8), DummyData[].class);
+        assertEquals(200, data.length);
+        assertEquals("peter-199", data[199].name);
+    }
+
+    @Test
+    public void head_reportsLengthOfGet() throws IOException {
+        HttpURLConnection get = connect("GET", "/compressed");
+        int length = read(get).getBytes(StandardCharsets.UTF_8).length;
+
+        HttpURLConnection head = (HttpURLConnection) serverURI.resolve("/compressed").toURL().openConnection();
+        head.setRequestMethod("HEAD");
+        head.setRequestProperty("Accept-Encoding", "gzip");
+        assertEquals(200, head.getResponseCode());
+        assertNull(head.getHeaderField("Content-Encoding"));
+        assertEquals("Accept-Encoding", head.getHeaderField("Vary"));
+        assertEquals(length, head.getContentLengthLong());
+    }
+
+    @Test
+    public void get_compressionNotAccepted() throws IOException {
+        HttpURLConnection http = connect("GET", "/compressed");
+        assertEquals(200, http.getResponseCode());
+        assertNull(http.getHeaderField("Content-Encoding"));
+        DummyData[] data = new Gson().fromJson(new InputStreamReader(http.getInputStream(), StandardCharsets.UTF_8), DummyData[].class);
+        assertEquals(200, data.length);
+    }
+
+    @Test
+    public void get_ndjson() throws IOException {
+        HttpURLConnection http = connect("GET", "/ndjson");
+        assertEquals(200, http.getResponseCode());
+        assertThat(http.getContentType(), startsWith("application/x-ndjson"));
+        assertEquals("chunked", http.getHeaderField("Transfer-Encoding"));
+        String[] lines = read(http).split("\n");
+        assertEquals(1000, lines.length);
+        assertEquals("peter-999", new Gson().fromJson(lines[999], DummyData.class).name);
+    }
+
+    @Test(timeout = 10000)
+    public void get_events() throws Exception {
+        EventServlet.publisher.publish("missed");
+        long lastId = EventServlet.publisher.publish("resumed");
+        HttpURLConnection http = (HttpURLConnection) serverURI.resolve("/events").toURL().openConnection();
+        http.setRequestProperty("Last-Event-ID", String.valueOf(lastId - 1));
+        assertEquals(200, http.getResponseCode());
+        assertThat(http.getContentType(), startsWith("text/event-stream"));
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(http.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals("id: " + lastId, reader.readLine());
+            assertEquals("data: \"resumed\"", reader.readLine());
+            assertEquals("", reader.readLine());
+
+            EventServlet.publisher.publish("update", new DummyData("peter", 69));
+            assertEquals("id: " + (lastId + 1), reader.readLine());
+            assertEquals("event: update", reader.readLine());
+            assertEquals("data: {\"name\":\"peter\",\"id\":69}", reader.readLine());
+        }
+        http.disconnect();
+    }
+
+    @Test
+    public void post_batch() throws IOException {
+        HttpURLConnection http = post("/batch", "[{\"method\":\"GET\", \"path\":\"/items/1\"}, {\"method\":\"PUT\", \"path\":\"/items/1\", \"body\":{\"a\":1}}, {\"method\":\"GET\", \"path\":\"/batch\"}]");
+        assertEquals(200, http.getResponseCode());
+        JsonArray results = new JsonParser().parse(read(http)).getAsJsonArray();
+        assertEquals(3, results.size());
+        assertEquals(200, results.get(0).getAsJsonObject().get("status").getAsInt());
+        assertEquals("peter", results.get(0).getAsJsonObject().getAsJsonObject("body").get("name").getAsString());
+        assertEquals(202, results.get(1).getAsJsonObject().get("status").getAsInt());
+        assertEquals(400, results.get(2).getAsJsonObject().get("status").getAsInt());
+    }
+
+    @Test
+    public void post_batchGuardedTarget() throws IOException {
+        assertEquals(401, connect("GET", "/items/guarded/1").getResponseCode());
+
+        HttpURLConnection http = post("/batch", "[{\"method\":\"GET\", \"path\":\"/items/guarded/1\"}]");
+        assertEquals(200, http.getResponseCode());
+        JsonArray results = new JsonParser().parse(read(http)).getAsJsonArray();
+        assertEquals(403, results.get(0).getAsJsonObject().get("status").getAsInt());
+    }
+
+    /**
+     * Filter rejecting all requests, guarding the paths it's mapped to.
+     */
+    public static final class GuardFilter implements Filter {
+        @Override
+        public void init(FilterConfig filterConfig) {
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) {
+            ((HttpServletResponse) response).setStatus(401);
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    private static String read(HttpURLConnection http) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (InputStreamReader reader = new InputStreamReader(http.getInputStream(), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[1024];
+            for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+                sb.append(buffer, 0, read);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static HttpURLConnection post(String path, String body) throws IOException {
+        HttpURLConnection http = (HttpURLConnection) serverURI.resolve(path).toURL().openConnection();
+        http.setRequestMethod("POST");
+        http.setDoOutput(true);
+        http.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+        return http;
+    }
+
     private static HttpURLConnection connect(String operation) throws IOException {
         return connect(operation, "/");
     }